@@ -0,0 +1,108 @@
+package controllers;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.TableCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Cellule de colonne « Actions » réutilisable pour les TableView.
+ *
+ * Les boutons et leurs conteneurs sont créés une seule fois, à la construction de la cellule ;
+ * updateItem se contente ensuite d'afficher ou masquer chaque bouton selon les droits de
+ * l'utilisateur sur la ligne. Le défilement d'une grande table ne crée donc aucun nœud.
+ *
+ * @param <S> le type des lignes de la table
+ */
+public class ActionCell<S> extends TableCell<S, Void> {
+    private final VBox container;
+    private final List<HBox> rows = new ArrayList<>();
+    private final List<Button> buttons = new ArrayList<>();
+    private final List<Predicate<S>> conditions = new ArrayList<>();
+    private final double spacing;
+
+    /**
+     * @param spacing l'espacement entre les boutons et entre les lignes de boutons
+     */
+    public ActionCell(double spacing) {
+        this.spacing = spacing;
+        this.container = new VBox(spacing);
+        this.container.setAlignment(Pos.CENTER);
+        newRow();
+    }
+
+    /**
+     * Commence une nouvelle ligne de boutons sous la précédente.
+     */
+    public ActionCell<S> newRow() {
+        HBox row = new HBox(spacing);
+        row.setAlignment(Pos.CENTER);
+        rows.add(row);
+        container.getChildren().add(row);
+        return this;
+    }
+
+    /**
+     * Ajoute un bouton à la ligne courante.
+     *
+     * @param text le libellé du bouton
+     * @param styleClass la classe CSS du bouton
+     * @param action l'action exécutée avec l'élément de la ligne
+     * @param visibleIf la condition d'affichage du bouton pour une ligne, ou null s'il est toujours visible
+     * @return le bouton, pour des réglages supplémentaires (largeur...)
+     */
+    public Button addButton(String text, String styleClass, Consumer<S> action, Predicate<S> visibleIf) {
+        Button button = new Button(text);
+        button.getStyleClass().add(styleClass);
+        button.setOnAction(event -> {
+            S item = getTableRow() != null ? getTableRow().getItem() : null;
+            if (item != null) {
+                action.accept(item);
+            }
+        });
+        rows.get(rows.size() - 1).getChildren().add(button);
+        buttons.add(button);
+        conditions.add(visibleIf);
+        return button;
+    }
+
+    @Override
+    protected void updateItem(Void item, boolean empty) {
+        super.updateItem(item, empty);
+
+        S rowItem = empty || getTableRow() == null ? null : getTableRow().getItem();
+        if (rowItem == null) {
+            setGraphic(null);
+            return;
+        }
+
+        // Boucles indexées : pas d'itérateur alloué à chaque appel
+        for (int i = 0; i < buttons.size(); i++) {
+            Predicate<S> condition = conditions.get(i);
+            boolean visible = condition == null || condition.test(rowItem);
+            Button button = buttons.get(i);
+            button.setVisible(visible);
+            button.setManaged(visible);
+        }
+        // Une ligne sans bouton visible ne doit pas occuper de place
+        for (int r = 0; r < rows.size(); r++) {
+            HBox row = rows.get(r);
+            boolean anyVisible = false;
+            for (int c = 0; c < row.getChildren().size(); c++) {
+                anyVisible |= row.getChildren().get(c).isManaged();
+            }
+            row.setVisible(anyVisible);
+            row.setManaged(anyVisible);
+        }
+
+        if (getGraphic() != container) {
+            setGraphic(container);
+        }
+    }
+}
@@ -1,32 +1,35 @@
 package controllers;
 
 import dao.ExerciceDAO;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.scene.layout.HBox;
 import javafx.geometry.Insets;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import models.Exercice;
+import models.ExerciceColonnes;
 import models.Matiere;
+import utils.AppConfig;
+import utils.CancellationToken;
+import utils.CatalogueSnapshot;
 import utils.IconHelper;
+import utils.Session;
+import utils.Session.Permission;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.ArrayList;
 
 /**
  * Contrôleur pour la gestion des exercices (affichage, ajout, modification et suppression).
@@ -34,16 +37,17 @@ import java.util.ArrayList;
  * Ce contrôleur gère la vue des exercices ainsi que le formulaire d'ajout et d'édition.
  * La logique métier reste inchangée.
  */
-public class ExerciceController {
+public class ExerciceController implements Router.Leavable {
     // Logger pour le suivi des événements importants
     private static final Logger LOGGER = Logger.getLogger(ExerciceController.class.getName());
 
     // Composants FXML pour la gestion de la vue
-    @FXML private TableView<Exercice> exerciceTable;
-    @FXML private TableColumn<Exercice, String> titreColumn;
-    @FXML private TableColumn<Exercice, String> matiereColumn;
-    @FXML private TableColumn<Exercice, LocalDateTime> dateColumn;
-    @FXML private TableColumn<Exercice, Void> actionsColumn;
+    @FXML private TableView<ExerciceRow> exerciceTable;
+    @FXML private TableColumn<ExerciceRow, String> titreColumn;
+    @FXML private TableColumn<ExerciceRow, String> matiereColumn;
+    @FXML private TableColumn<ExerciceRow, RowFormat.DateLabel> dateColumn;
+    @FXML private TableColumn<ExerciceRow, Integer> nbSolutionsColumn;
+    @FXML private TableColumn<ExerciceRow, Void> actionsColumn;
     @FXML private Label titleLabel;
     @FXML private Button addExerciceButton;
     
@@ -53,8 +57,7 @@ public class ExerciceController {
     @FXML private Button submitButton;
     
     // Variables d'état
-    private int userId;
-    private String userRole;
+    private Session session;
     private Matiere matiere;
     private Exercice currentExercice;
     private boolean isEditing = false; // vrai si en mode édition
@@ -62,7 +65,9 @@ public class ExerciceController {
     
     // Accès aux données via le DAO et liste observable des exercices
     private final ExerciceDAO exerciceDAO = new ExerciceDAO();
-    private final ObservableList<Exercice> exerciceList = FXCollections.observableArrayList();
+    private final ObservableList<ExerciceRow> exerciceList = FXCollections.observableArrayList();
+    private PulseAppender<?, ExerciceRow> loading; // chargement en cours de la liste
+    private String defaultTitle; // titre du FXML, rétabli quand la vue est réutilisée
     
     /**
      * Méthode d'initialisation du contrôleur.
@@ -70,10 +75,13 @@ public class ExerciceController {
      */
     @FXML
     public void initialize() {
+        session = Session.current();
+        
         // Initialisation du TableView si présent
         if (exerciceTable != null) {
             configureTableView();
             exerciceTable.setItems(exerciceList);
+            defaultTitle = titleLabel != null ? titleLabel.getText() : null;
             
             // Ajout d'un listener pour détecter la sélection d'un exercice
             exerciceTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
@@ -101,33 +109,20 @@ public class ExerciceController {
     private void configureTableView() {
         if (exerciceTable == null) return;
         
-        // Configuration de la colonne titre
+        // Les textes affichés sont précalculés par ExerciceRow (la date est déjà formatée)
         if (titreColumn != null) {
-            titreColumn.setCellValueFactory(new PropertyValueFactory<>("titre"));
+            titreColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getTitre()));
         }
-        
-        // Configuration de la colonne matière
         if (matiereColumn != null) {
-            matiereColumn.setCellValueFactory(new PropertyValueFactory<>("matiereNom"));
+            matiereColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getMatiere()));
         }
-        
-        // Configuration de la colonne date avec format personnalisé
         if (dateColumn != null) {
-            dateColumn.setCellValueFactory(new PropertyValueFactory<>("dateCreation"));
-            dateColumn.setCellFactory(column -> new TableCell<>() {
-                private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-                
-                @Override
-                protected void updateItem(LocalDateTime date, boolean empty) {
-                    super.updateItem(date, empty);
-                    
-                    if (empty || date == null) {
-                        setText(null);
-                    } else {
-                        setText(formatter.format(date));
-                    }
-                }
-            });
+            dateColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getDate()));
+        }
+        
+        // Nombre de solutions : compteur lu avec l'exercice, sans requête par ligne
+        if (nbSolutionsColumn != null) {
+            nbSolutionsColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getNbSolutions()));
         }
         
         // Ajout des boutons d'actions (Voir, Solutions, Modifier, Supprimer) pour chaque ligne
@@ -142,103 +137,106 @@ public class ExerciceController {
      */
     private void setUpActionsColumn() {
         actionsColumn.setCellFactory(param -> {
-            return new TableCell<>() {
-                // Déclaration des boutons d'action avec leur style CSS associé
-                private final Button viewButton = new Button("Voir");
-                private final Button solutionsButton = new Button("Solutions");
-                private final Button editButton = new Button("Modifier");
-                private final Button deleteButton = new Button("Supprimer");
-                
-                {
-                    // Association des actions au clic pour chaque bouton
-                    viewButton.setOnAction(event -> showExerciseDetails(getTableRow().getItem()));
-                    solutionsButton.setOnAction(event -> openSolutionsView(getTableRow().getItem()));
-                    editButton.setOnAction(event -> openExerciseEditor(getTableRow().getItem()));
-                    deleteButton.setOnAction(event -> confirmAndDeleteExercise(getTableRow().getItem()));
-                    
-                    // Application des classes CSS pour le style
-                    viewButton.getStyleClass().add("button-blue");
-                    solutionsButton.getStyleClass().add("button-green");
-                    editButton.getStyleClass().add("button-yellow");
-                    deleteButton.getStyleClass().add("button-red");
-                    
-                    // Définition de la largeur minimale pour les boutons
-                    viewButton.setMinWidth(60);
-                    solutionsButton.setMinWidth(80);
-                    editButton.setMinWidth(70);
-                    deleteButton.setMinWidth(80);
-                    
-                    // Permet que tous les boutons aient une largeur maximum égale
-                    viewButton.setMaxWidth(Double.MAX_VALUE);
-                    solutionsButton.setMaxWidth(Double.MAX_VALUE);
-                    editButton.setMaxWidth(Double.MAX_VALUE);
-                    deleteButton.setMaxWidth(Double.MAX_VALUE);
-                }
-                
-                @Override
-                protected void updateItem(Void item, boolean empty) {
-                    super.updateItem(item, empty);
-                    
-                    if (empty) {
-                        setGraphic(null);
-                        return;
-                    }
-                    
-                    Exercice exercice = getTableRow().getItem();
-                    if (exercice == null) {
-                        setGraphic(null);
-                        return;
-                    }
-                    
-                    // Organisation des boutons dans des conteneurs HBox et VBox pour une meilleure disposition
-                    HBox viewButtonsBox = new HBox(5);
-                    viewButtonsBox.setAlignment(javafx.geometry.Pos.CENTER);
-                    viewButtonsBox.getChildren().addAll(viewButton, solutionsButton);
-                    
-                    HBox editButtonsBox = new HBox(5);
-                    editButtonsBox.setAlignment(javafx.geometry.Pos.CENTER);
-                    
-                    // Seul le créateur ou un professeur peut modifier/supprimer un exercice
-                    if (exercice.getCreateurId() == userId) {
-                        editButtonsBox.getChildren().addAll(editButton, deleteButton);
-                    }
-                    else if ("Professeur".equals(userRole)) {
-                        editButtonsBox.getChildren().addAll(editButton, deleteButton);
-                    }
-                    
-                    // Regroupement vertical des boutons pour obtenir une organisation claire
-                    javafx.scene.layout.VBox buttonContainer = new javafx.scene.layout.VBox(5);
-                    buttonContainer.setAlignment(javafx.geometry.Pos.CENTER);
-                    buttonContainer.getChildren().add(viewButtonsBox);
-                    
-                    if (!editButtonsBox.getChildren().isEmpty()) {
-                        buttonContainer.getChildren().add(editButtonsBox);
-                    }
-                    
-                    setGraphic(buttonContainer);
-                }
-            };
+            ActionCell<ExerciceRow> cell = new ActionCell<>(5);
+            
+            // Première ligne : consultation, disponible pour tous
+            Button viewButton = cell.addButton("Voir", "button-blue", row -> avecDescription(row, this::showExerciseDetails), null);
+            Button solutionsButton = cell.addButton("Solutions", "button-green", row -> openSolutionsView(row.getExercice()), null);
+            
+            // Seconde ligne : seul le créateur ou un professeur peut modifier/supprimer un exercice
+            cell.newRow();
+            Button editButton = cell.addButton("Modifier", "button-yellow", row -> avecDescription(row, this::openExerciseEditor),
+                    row -> canModify(row.getCreateurId()));
+            Button deleteButton = cell.addButton("Supprimer", "button-red", this::confirmAndDeleteExercise,
+                    row -> canModify(row.getCreateurId()));
+            
+            // Définition de la largeur minimale pour les boutons
+            viewButton.setMinWidth(60);
+            solutionsButton.setMinWidth(80);
+            editButton.setMinWidth(70);
+            deleteButton.setMinWidth(80);
+            
+            // Permet que tous les boutons aient une largeur maximum égale
+            viewButton.setMaxWidth(Double.MAX_VALUE);
+            solutionsButton.setMaxWidth(Double.MAX_VALUE);
+            editButton.setMaxWidth(Double.MAX_VALUE);
+            deleteButton.setMaxWidth(Double.MAX_VALUE);
+            return cell;
         });
         actionsColumn.getStyleClass().add("actions-column");
     }
     
     /**
-     * Définit l'ID de l'utilisateur et charge les exercices correspondants.
+     * Indique si l'utilisateur courant peut modifier ou supprimer l'exercice.
      */
-    public void setUserId(int userId) {
-        this.userId = userId;
-        loadExercises();
+    private boolean canModify(int createurId) {
+        return createurId == session.getUserId() || session.can(Permission.MODIFIER_TOUS_EXERCICES);
     }
     
     /**
-     * Définit le rôle de l'utilisateur et met à jour l'interface en conséquence.
+     * Passe à l'action l'exercice de la ligne avec sa description. Une ligne de la liste par
+     * colonnes n'a pas de description : l'exercice est alors relu par son identifiant en
+     * arrière-plan, comme la liste, et l'action s'exécute sur le thread JavaFX une fois lu.
+     * S'il ne peut pas être relu, rien n'est ouvert : l'éditeur effacerait la description.
      */
-    public void setUserRole(String userRole) {
-        this.userRole = userRole;
-        LOGGER.info("Rôle d'utilisateur défini sur : " + userRole);
-        
-        // Mise à jour de l'interface en fonction du rôle
+    private void avecDescription(ExerciceRow row, Consumer<Exercice> action) {
+        Exercice exercice = row.getExercice();
+        if (exercice.getDescription() != null) {
+            action.accept(exercice);
+            return;
+        }
+        CancellationToken token = jetonDeChargement();
+        int id = row.getId();
+        Task<Exercice> task = new Task<>() {
+            @Override
+            protected Exercice call() {
+                return token.run(() -> exerciceDAO.getExerciceById(id));
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if (task.getValue() != null) {
+                action.accept(task.getValue());
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Erreur", "Erreur de chargement",
+                        "Impossible de charger l'exercice \"" + row.getTitre() + "\".");
+            }
+        });
+        task.setOnFailed(event -> {
+            LOGGER.log(Level.WARNING, "Erreur lors du chargement de l'exercice " + id, task.getException());
+            showAlert(Alert.AlertType.ERROR, "Erreur", "Erreur de chargement",
+                    "Impossible de charger l'exercice : " + task.getException().getMessage());
+        });
+        Thread thread = new Thread(task, "exercice-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Prépare la vue (éventuellement réutilisée depuis le ViewRegistry) pour les exercices d'une matière.
+     * Les données sont chargées une seule fois, après la mise à jour de tout le contexte.
+     */
+    public void showMatiere(Matiere matiere) {
+        rebind(matiere, false);
+    }
+    
+    /**
+     * Prépare la vue (éventuellement réutilisée depuis le ViewRegistry) pour les exercices de l'utilisateur.
+     */
+    public void showUserExercises() {
+        rebind(null, true);
+    }
+    
+    private void rebind(Matiere matiere, boolean showUserExercisesOnly) {
+        this.session = Session.current();
+        this.matiere = matiere;
+        this.showUserExercisesOnly = showUserExercisesOnly;
+        if (titleLabel != null && defaultTitle != null) {
+            titleLabel.setText(defaultTitle);
+        }
+        exerciceTable.getSelectionModel().clearSelection();
+        exerciceTable.scrollTo(0);
         updateUIForUserRole();
+        loadExercises();
     }
     
     /**
@@ -250,66 +248,82 @@ public class ExerciceController {
             addExerciceButton.setVisible(true);
             
             // Mise à jour du titre selon le rôle et l'affichage filtré
-            if (titleLabel != null) {
-                if ("Etudiant".equals(userRole) && showUserExercisesOnly) {
-                    titleLabel.setText("Mes Exercices");
-                } else if ("Professeur".equals(userRole) && showUserExercisesOnly) {
-                    titleLabel.setText("Mes Exercices Créés");
-                }
+            if (titleLabel != null && showUserExercisesOnly) {
+                titleLabel.setText(session.can(Permission.MODIFIER_TOUS_EXERCICES)
+                        ? "Mes Exercices Créés" : "Mes Exercices");
             }
         }
     }
     
     /**
-     * Définit la matière utilisée pour filtrer les exercices.
+     * Charge les exercices selon les filtres actifs (créateur, matière, etc.).
+     * Si l'instantané local du catalogue est utilisable, il est affiché immédiatement ;
+     * la liste est dans tous les cas lue depuis la base au fil de l'eau, et ses lignes
+     * remplacent l'instantané dès les premières reçues.
      */
-    public void setMatiere(Matiere matiere) {
-        this.matiere = matiere;
-        loadExercises();
+    private void loadExercises() {
+        if (exerciceTable == null) {
+            return; // formulaire : pas de liste à recharger
+        }
+        // Un chargement encore en cours (ancien filtre) n'ajoute plus rien
+        if (loading != null) {
+            loading.annuler();
+        }
+        exerciceList.clear();
+        
+        CatalogueSnapshot snapshot = CatalogueSnapshot.get();
+        boolean fromSnapshot = snapshot.isUsable();
+        if (fromSnapshot) {
+            exerciceList.addAll(ExerciceRow.of(showUserExercisesOnly ? snapshot.getExercicesByCreateur(session.getUserId())
+                    : matiere != null ? snapshot.getExercicesByMatiere(matiere.getId())
+                    : snapshot.getAllExercices()));
+        }
+        
+        loading = streamExercises();
+        loading.setOnFinished(() -> LOGGER.info("Exercices chargés : " + exerciceList.size()));
+        loading.setOnFailed(error -> {
+            LOGGER.log(Level.WARNING, "Erreur lors du chargement des exercices", error);
+            if (!fromSnapshot) {
+                showAlert(Alert.AlertType.ERROR, "Erreur", "Erreur de chargement", 
+                        "Impossible de charger les exercices : " + error.getMessage());
+            }
+        });
     }
     
     /**
-     * Définit le filtre pour n'afficher que les exercices de l'utilisateur.
+     * Lance la lecture selon les filtres actifs.
+     * La liste complète, qui peut être très grande, est lue par blocs rangés par colonnes.
      */
-    public void setShowUserExercisesOnly(boolean showUserExercisesOnly) {
-        this.showUserExercisesOnly = showUserExercisesOnly;
-        loadExercises();
-        updateUIForUserRole();
+    private PulseAppender<?, ExerciceRow> streamExercises() {
+        if (!showUserExercisesOnly && matiere == null) {
+            // Tous les exercices, sans objet par ligne
+            PulseAppender<ExerciceColonnes, ExerciceRow> appender = PulseAppender.blocs(exerciceList, ExerciceRow::of);
+            appender.charger(exerciceDAO.streamAllExercicesColonnes(), jetonDeChargement());
+            return appender;
+        }
+        PulseAppender<Exercice, ExerciceRow> appender = PulseAppender.lignes(exerciceList, ExerciceRow::of);
+        appender.charger(showUserExercisesOnly
+                ? exerciceDAO.streamExercicesByCreateur(session.getUserId())
+                : exerciceDAO.streamExercicesByMatiere(matiere.getId()),
+                jetonDeChargement());
+        return appender;
     }
-    
+
     /**
-     * Charge les exercices selon les filtres actifs (créateur, matière, etc.).
+     * Délai de la requête de liste, relu à chaque chargement (configuration rechargeable).
      */
-    private void loadExercises() {
-        exerciceList.clear();
-        
-        try {
-            List<Exercice> exercises;
-            if (showUserExercisesOnly) {
-                // Récupération des exercices créés par l'utilisateur
-                exercises = exerciceDAO.getExercicesByCreateur(userId);
-                LOGGER.info("Nombre d'exercices de l'utilisateur : " + exercises.size());
-            } else if (matiere != null) {
-                // Récupération des exercices pour une matière spécifique
-                exercises = exerciceDAO.getExercicesByMatiere(matiere.getId());
-                LOGGER.info("Exercices de la matière " + matiere.getId() + " : " + exercises.size());
-            } else {
-                // Chargement de tous les exercices
-                exercises = exerciceDAO.getAllExercices();
-                LOGGER.info("Tous les exercices chargés : " + exercises.size());
-            }
-            
-            exerciceList.addAll(exercises);
-            
-            // Mise à jour du TableView si disponible
-            if (exerciceTable != null) {
-                exerciceTable.setItems(exerciceList);
-                exerciceTable.refresh();
-            }
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors du chargement des exercices", e);
-            showAlert(Alert.AlertType.ERROR, "Erreur", "Erreur de chargement", 
-                    "Impossible de charger les exercices : " + e.getMessage());
+    private static CancellationToken jetonDeChargement() {
+        return new CancellationToken(AppConfig.get().getInt(AppConfig.QUERY_LIST_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Écran abandonné : la lecture en cours est arrêtée, requête comprise.
+     */
+    @Override
+    public void onLeave() {
+        if (loading != null) {
+            loading.annuler();
+            loading = null;
         }
     }
     
@@ -359,9 +373,6 @@ public class ExerciceController {
             Parent root = loader.load();
             
             ExerciceController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            
             if (exercice != null) {
                 // Edition d'un exercice existant
                 controller.setupForEditing(exercice);
@@ -379,11 +390,8 @@ public class ExerciceController {
             // Rafraîchit la liste des exercices lors de la fermeture de la fenêtre
             stage.setOnHidden(event -> {
                 if (stage.getUserData() instanceof Exercice) {
-                    Exercice newExercice = (Exercice) stage.getUserData();
-                    exerciceList.add(newExercice);
-                    if (exerciceTable != null) {
-                        exerciceTable.refresh();
-                    }
+                    // Exercice créé ou modifié : seule sa ligne est (re)construite
+                    showExerciseRow((Exercice) stage.getUserData());
                 } else if (Boolean.TRUE.equals(stage.getUserData())) {
                     loadExercises();
                 }
@@ -402,19 +410,17 @@ public class ExerciceController {
     }
     
     /**
-     * Recherche une fenêtre existante ayant un titre donné.
-     * Utile pour éviter l'ouverture de fenêtres en double.
+     * Remplace la ligne de l'exercice s'il est affiché, sinon l'ajoute à la fin.
      */
-    private Stage findExistingWindow(String windowTitle) {
-        for (javafx.stage.Window window : javafx.stage.Window.getWindows()) {
-            if (window instanceof Stage && window.isShowing()) {
-                Stage stage = (Stage) window;
-                if (windowTitle.equals(stage.getTitle())) {
-                    return stage;
-                }
+    private void showExerciseRow(Exercice exercice) {
+        ExerciceRow row = ExerciceRow.of(exercice);
+        for (int i = 0; i < exerciceList.size(); i++) {
+            if (exerciceList.get(i).getId() == exercice.getId()) {
+                exerciceList.set(i, row);
+                return;
             }
         }
-        return null;
+        exerciceList.add(row);
     }
     
     /**
@@ -423,33 +429,8 @@ public class ExerciceController {
     @FXML
     private void openMyExercises() {
         try {
-            String windowTitle = "Mes Exercices";
-            Stage existingStage = findExistingWindow(windowTitle);
-            
-            if (existingStage != null) {
-                // Si la fenêtre existe déjà, l'afficher au premier plan
-                existingStage.toFront();
-                LOGGER.info("Réutilisation de la fenêtre existante 'Mes Exercices'");
-            } else {
-                LOGGER.info("Création d'une nouvelle fenêtre 'Mes Exercices'");
-                
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/exercice_view.fxml"));
-                Parent root = loader.load();
-                
-                ExerciceController controller = loader.getController();
-                controller.setUserId(userId);
-                controller.setUserRole(userRole);
-                controller.setShowUserExercisesOnly(true);
-                
-                Scene scene = new Scene(root);
-                scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-                
-                Stage stage = new Stage();
-                stage.setTitle(windowTitle);
-                stage.setScene(scene);
-                IconHelper.setStageIcon(stage);
-                stage.show();
-            }
+            Router.<ExerciceController>navigate(ViewRegistry.EXERCICES, "Mes Exercices",
+                    ExerciceController::showUserExercises);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Erreur lors de l'ouverture de 'Mes Exercices'", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -459,36 +440,11 @@ public class ExerciceController {
     
     /**
      * Ouvre la vue des solutions pour un exercice donné.
-     * Vérifie d'abord si une fenêtre existe déjà pour cet exercice.
      */
     private void openSolutionsView(Exercice exercice) {
         try {
-            String windowTitle = "Solutions - " + exercice.getTitre();
-            Stage existingStage = findExistingWindow(windowTitle);
-            
-            if (existingStage != null) {
-                existingStage.toFront();
-                LOGGER.info("Réutilisation de la fenêtre existante de solutions pour l'exercice : " + exercice.getTitre());
-            } else {
-                LOGGER.info("Création d'une nouvelle fenêtre de solutions pour l'exercice : " + exercice.getTitre());
-                
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/solution_view.fxml"));
-                Parent root = loader.load();
-
-                SolutionController controller = loader.getController();
-                controller.setUserId(userId);
-                controller.setUserRole(userRole);
-                controller.setExerciceId(exercice.getId());
-
-                Scene scene = new Scene(root);
-                scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-                
-                Stage stage = new Stage();
-                stage.setTitle(windowTitle);
-                stage.setScene(scene);
-                IconHelper.setStageIcon(stage);
-                stage.show();
-            }
+            Router.<SolutionController>navigate(ViewRegistry.SOLUTIONS, "Solutions - " + exercice.getTitre(),
+                    controller -> controller.showExercice(exercice.getId()));
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Erreur lors de l'ouverture de la vue des solutions", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -500,7 +456,8 @@ public class ExerciceController {
      * Demande confirmation à l'utilisateur avant de supprimer un exercice.
      * Supprime l'exercice si confirmé et affiche une alerte.
      */
-    private void confirmAndDeleteExercise(Exercice exercice) {
+    private void confirmAndDeleteExercise(ExerciceRow row) {
+        Exercice exercice = row.getExercice();
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Confirmation de suppression");
         alert.setHeaderText("Supprimer l'exercice : " + exercice.getTitre());
@@ -511,7 +468,7 @@ public class ExerciceController {
             boolean success = exerciceDAO.deleteExercice(exercice.getId());
             
             if (success) {
-                exerciceList.remove(exercice);
+                exerciceList.remove(row);
                 showAlert(Alert.AlertType.INFORMATION, "Succès", "Exercice supprimé", 
                         "L'exercice a été supprimé avec succès.");
             } else {
@@ -594,7 +551,7 @@ public class ExerciceController {
             String description = descriptionField.getText().trim();
             
             Exercice exercice = new Exercice(0, titre, description, LocalDateTime.now(), 
-                                          matiere.getId(), userId);
+                                          matiere.getId(), session.getUserId());
             
             // Utilisation du DAO pour ajouter l'exercice et récupérer l'objet avec son ID
             Exercice createdExercice = exerciceDAO.addExerciceAndReturn(exercice);
@@ -675,34 +632,14 @@ public class ExerciceController {
     
     /**
      * Retourne à la vue de sélection de matière.
-     * Ferme toutes les autres fenêtres ouvertes.
      */
     @FXML
     private void backToMatiereSelection() {
         try {
-            if (exerciceTable != null) {
-                Stage currentStage = (Stage) exerciceTable.getScene().getWindow();
-                
-                // Ferme toutes les autres fenêtres sauf celle courante
-                closeAllOtherWindows(currentStage);
-                
-                // Chargement de la vue de sélection de matière
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/matiere_view.fxml"));
-                Parent root = loader.load();
-                
-                // Configuration du contrôleur de la vue matière
-                MatiereController controller = loader.getController();
-                controller.setUserId(userId);
-                controller.setUserRole(userRole);
-                
-                // Mise à jour de la scène actuelle avec la nouvelle vue
-                Scene scene = new Scene(root);
-                scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-                
-                currentStage.setTitle("Sélection de matière");
-                currentStage.setScene(scene);
-                
-                LOGGER.info("Navigation vers la vue de sélection de matière et fermeture des autres fenêtres");
+            // Écran de sélection conservé dans l'historique, sinon rechargé depuis le cache
+            if (Router.backTo(ViewRegistry.MATIERE_SELECTION) == null) {
+                Router.<MatiereController>navigate(ViewRegistry.MATIERE_SELECTION, "Sélection de matière",
+                        MatiereController::bind);
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erreur lors du retour à la sélection de matière", e);
@@ -711,28 +648,6 @@ public class ExerciceController {
         }
     }
     
-    /**
-     * Ferme toutes les fenêtres ouvertes sauf celle spécifiée.
-     */
-    private void closeAllOtherWindows(Stage exceptStage) {
-        List<Stage> stagesToClose = new ArrayList<>();
-        
-        // Recherche de toutes les fenêtres ouvertes
-        for (javafx.stage.Window window : javafx.stage.Window.getWindows()) {
-            if (window instanceof Stage && window.isShowing() && window != exceptStage) {
-                stagesToClose.add((Stage) window);
-            }
-        }
-        
-        // Fermeture de chaque fenêtre identifiée
-        for (Stage stage : stagesToClose) {
-            LOGGER.info("Fermeture de la fenêtre : " + stage.getTitle());
-            stage.close();
-        }
-        
-        LOGGER.info("Fermeture de " + stagesToClose.size() + " fenêtre(s) supplémentaire(s)");
-    }
-    
     /**
      * Affiche une boîte de dialogue d'alerte.
      */
@@ -752,20 +667,4 @@ public class ExerciceController {
     private void refreshExercises() {
         loadExercises();
     }
-    
-    /**
-     * Définit l'identifiant d'exercice pour la vue courante.
-     * Charge l'exercice correspondant et met à jour la matière.
-     */
-    public void setExerciceId(int exerciceId) {
-        try {
-            Exercice exercice = exerciceDAO.getExerciceById(exerciceId);
-            if (exercice != null) {
-                this.matiere = new Matiere(exercice.getMatiereId(), "");
-                loadExercises();
-            }
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors de la définition de l'ID d'exercice", e);
-        }
-    }
 }
@@ -0,0 +1,101 @@
+package controllers;
+
+import models.Exercice;
+import models.ExerciceColonnes;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ligne de la table des exercices.
+ *
+ * Construite depuis un {@link Exercice}, elle garde ses textes affichés calculés une fois.
+ * Construite depuis des {@link ExerciceColonnes}, ce n'est qu'une vue (colonnes, numéro de
+ * ligne) : les textes sont lus à l'affichage, seules les lignes visibles les décodent.
+ */
+abstract class ExerciceRow {
+
+    static ExerciceRow of(Exercice exercice) {
+        return new Precalculee(exercice);
+    }
+
+    static List<ExerciceRow> of(List<Exercice> exercices) {
+        List<ExerciceRow> rows = new ArrayList<>(exercices.size());
+        for (Exercice exercice : exercices) {
+            rows.add(new Precalculee(exercice));
+        }
+        return rows;
+    }
+
+    /**
+     * Vues sur chaque ligne des colonnes, créées au fur et à mesure de la copie dans la table.
+     */
+    static List<ExerciceRow> of(ExerciceColonnes colonnes) {
+        return new AbstractList<>() {
+            @Override
+            public ExerciceRow get(int ligne) {
+                return new Colonne(colonnes, ligne);
+            }
+
+            @Override
+            public int size() {
+                return colonnes.taille();
+            }
+        };
+    }
+
+    abstract int getId();
+    abstract int getCreateurId();
+    abstract String getTitre();
+    abstract String getMatiere();
+    abstract RowFormat.DateLabel getDate();
+    abstract Integer getNbSolutions();
+
+    /**
+     * L'exercice de la ligne ; pour une ligne lue par colonnes, sa description est null.
+     */
+    abstract Exercice getExercice();
+
+    private static final class Precalculee extends ExerciceRow {
+        private final Exercice exercice;
+        private final String titre;
+        private final String matiere;
+        private final RowFormat.DateLabel date;
+        private final Integer nbSolutions;
+
+        private Precalculee(Exercice exercice) {
+            this.exercice = exercice;
+            this.titre = RowFormat.apercu(exercice.getTitre());
+            this.matiere = exercice.getMatiereNom() != null ? exercice.getMatiereNom() : "";
+            this.date = new RowFormat.DateLabel(exercice.getDateCreation());
+            this.nbSolutions = exercice.getNbSolutions();
+        }
+
+        @Override int getId() { return exercice.getId(); }
+        @Override int getCreateurId() { return exercice.getCreateurId(); }
+        @Override String getTitre() { return titre; }
+        @Override String getMatiere() { return matiere; }
+        @Override RowFormat.DateLabel getDate() { return date; }
+        @Override Integer getNbSolutions() { return nbSolutions; }
+        @Override Exercice getExercice() { return exercice; }
+    }
+
+    private static final class Colonne extends ExerciceRow {
+        private final ExerciceColonnes colonnes;
+        private final int ligne;
+
+        private Colonne(ExerciceColonnes colonnes, int ligne) {
+            this.colonnes = colonnes;
+            this.ligne = ligne;
+        }
+
+        @Override int getId() { return colonnes.getId(ligne); }
+        @Override int getCreateurId() { return colonnes.getCreateurId(ligne); }
+        @Override String getTitre() { return RowFormat.apercu(colonnes.getTitre(ligne)); }
+        @Override String getMatiere() { return colonnes.getMatiereNom(ligne); }
+        @Override RowFormat.DateLabel getDate() { return new RowFormat.DateLabel(colonnes.getDateCreation(ligne)); }
+        @Override Integer getNbSolutions() { return colonnes.getNbSolutions(ligne); }
+        @Override Exercice getExercice() { return colonnes.toExercice(ligne); }
+    }
+}
@@ -1,14 +1,13 @@
 package controllers;
 
 import dao.MatiereDAO;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.layout.GridPane;
@@ -17,9 +16,12 @@ import javafx.geometry.Pos;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import models.Matiere;
+import utils.CatalogueSnapshot;
 import utils.IconHelper;
+import utils.Session;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,38 +37,32 @@ public class MatiereController {
     // Composants FXML pour la vue de sélection de matière
     @FXML private ComboBox<Matiere> matiereComboBox;
     @FXML private Button mySolutionsButton;
+    @FXML private Button statisticsButton;
     @FXML private Button manageUsersButton;
     
     // Composants FXML pour la vue de gestion des matières
     @FXML private TableView<Matiere> matiereTable;
     @FXML private TableColumn<Matiere, Integer> idColumn;
     @FXML private TableColumn<Matiere, String> nomColumn;
+    @FXML private TableColumn<Matiere, Integer> nbExercicesColumn;
     @FXML private TableColumn<Matiere, Void> actionsColumn;
     @FXML private Label statusLabel;
     
-    private int userId;
-    private String userRole;
+    private Session session;
     private final MatiereDAO matiereDAO = new MatiereDAO();
     private final ObservableList<Matiere> matiereList = FXCollections.observableArrayList();
     
     /**
-     * Définit l'identifiant de l'utilisateur actuellement connecté.
+     * Prépare la vue (éventuellement réutilisée depuis le ViewRegistry) pour l'utilisateur connecté.
      */
-    public void setUserId(int userId) {
-        this.userId = userId;
-        LOGGER.info("User ID set to: " + userId);
-    }
-
-    /**
-     * Définit le rôle de l'utilisateur et met à jour l'interface.
-     */
-    public void setUserRole(String userRole) {
-        this.userRole = userRole;
-        LOGGER.info("User role set to: " + userRole);
-        
-        // Mise à jour de l'UI si le ComboBox est déjà initialisé
-        if (matiereComboBox != null && matiereComboBox.getScene() != null) {
-            updateUIForRole();
+    public void bind() {
+        session = Session.current();
+        updateUIForRole();
+        if (matiereComboBox != null) {
+            loadMatieres();
+        }
+        if (matiereTable != null) {
+            loadAllMatieres();
         }
     }
 
@@ -77,12 +73,11 @@ public class MatiereController {
      */
     public void initialize() {
         // Initialisation de la vue de sélection de matière
+        // (les matières sont chargées par bind, pas au chargement du FXML qui peut être anticipé)
         if (matiereComboBox != null) {
-            loadMatieres();
-            
             // Met à jour l'IU une fois la scène disponible
             matiereComboBox.sceneProperty().addListener((obs, oldScene, newScene) -> {
-                if (newScene != null && userRole != null) {
+                if (newScene != null && session != null) {
                     updateUIForRole();
                 }
             });
@@ -91,50 +86,46 @@ public class MatiereController {
         // Initialisation de la vue de gestion des matières
         if (matiereTable != null) {
             configureTableView();
-            loadAllMatieres();
         }
     }
     
     /**
-     * Met à jour l'interface en fonction du rôle de l'utilisateur.
+     * Met à jour l'interface en fonction des permissions de l'utilisateur.
      * Les étudiants voient moins d'options qu'un professeur.
      */
     public void updateUIForRole() {
-        if (userRole != null) {
-            if (!"Professeur".equals(userRole)) {
-                // Pour les étudiants : cacher certains boutons
-                if (mySolutionsButton != null) {
-                    mySolutionsButton.setVisible(false);
-                    mySolutionsButton.setManaged(false);
-                    LOGGER.info("Hiding 'Mes Solutions' button for students");
-                }
-                
-                if (manageUsersButton != null) {
-                    manageUsersButton.setVisible(false);
-                    manageUsersButton.setManaged(false);
-                    LOGGER.info("Hiding 'Gérer les utilisateurs' button for students");
-                }
-            } else {
-                // Pour les professeurs : affichage complet des boutons
-                if (mySolutionsButton != null) {
-                    mySolutionsButton.setVisible(true);
-                    mySolutionsButton.setManaged(true);
-                }
-                
-                if (manageUsersButton != null) {
-                    manageUsersButton.setVisible(true);
-                    manageUsersButton.setManaged(true);
-                }
-            }
+        if (session != null) {
+            showIf(mySolutionsButton, session.can(Session.Permission.VOIR_SOLUTIONS_RECUES));
+            showIf(manageUsersButton, session.can(Session.Permission.GERER_UTILISATEURS));
+            showIf(statisticsButton, session.can(Session.Permission.VOIR_STATISTIQUES));
+        }
+    }
+    
+    private static void showIf(Button button, boolean visible) {
+        if (button != null) {
+            button.setVisible(visible);
+            button.setManaged(visible);
         }
     }
     
     /**
      * Charge les matières depuis la base de données dans le ComboBox.
+     * Au démarrage, la liste vient d'abord de l'instantané local, puis elle est
+     * remplacée si le catalogue a changé sur le serveur entre-temps.
      */
     private void loadMatieres() {
         try {
             if (matiereComboBox != null) {
+                CatalogueSnapshot snapshot = CatalogueSnapshot.get();
+                if (snapshot.isUsable()) {
+                    showMatieres(snapshot.getMatieres());
+                    CatalogueSnapshot.refreshInBackground().thenAccept(updated -> {
+                        if (updated) {
+                            Platform.runLater(() -> showMatieres(CatalogueSnapshot.get().getMatieres()));
+                        }
+                    });
+                    return;
+                }
                 matiereComboBox.getItems().clear();
                 matiereComboBox.getItems().addAll(matiereDAO.getAllMatieres());
             }
@@ -145,6 +136,22 @@ public class MatiereController {
         }
     }
     
+    /**
+     * Remplace le contenu du ComboBox en conservant la matière sélectionnée.
+     */
+    private void showMatieres(List<Matiere> matieres) {
+        Matiere selection = matiereComboBox.getValue();
+        matiereComboBox.getItems().setAll(matieres);
+        if (selection != null) {
+            for (Matiere matiere : matieres) {
+                if (matiere.getId() == selection.getId()) {
+                    matiereComboBox.setValue(matiere);
+                    break;
+                }
+            }
+        }
+    }
+    
     /**
      * Configure le TableView pour la gestion des matières.
      * Définit les colonnes et ajoute les boutons d'action.
@@ -152,63 +159,29 @@ public class MatiereController {
     private void configureTableView() {
         // Configuration de la colonne ID
         if (idColumn != null) {
-            idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
+            idColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getId()));
         }
         
         // Configuration de la colonne nom
         if (nomColumn != null) {
-            nomColumn.setCellValueFactory(new PropertyValueFactory<>("nom"));
+            nomColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getNom()));
+        }
+        
+        // Nombre d'exercices : compteur lu avec la matière, sans requête par ligne
+        if (nbExercicesColumn != null) {
+            nbExercicesColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getNbExercices()));
         }
         
         // Ajout des boutons d'actions pour chaque ligne (Exercices, Modifier, Supprimer)
         if (actionsColumn != null) {
             actionsColumn.setCellFactory(param -> {
-                return new TableCell<>() {
-                    private final Button viewButton = new Button("Exercices");
-                    private final Button editButton = new Button("Modifier");
-                    private final Button deleteButton = new Button("Supprimer");
-                    
-                    {
-                        // Définition des actions au clic
-                        viewButton.setOnAction(event -> viewExercices(getTableRow().getItem()));
-                        editButton.setOnAction(event -> openMatiereEditor(getTableRow().getItem()));
-                        deleteButton.setOnAction(event -> confirmAndDeleteMatiere(getTableRow().getItem()));
-                        
-                        // Application des classes CSS
-                        viewButton.getStyleClass().add("button-blue");
-                        editButton.getStyleClass().add("button-yellow");
-                        deleteButton.getStyleClass().add("button-red");
-                    }
-                    
-                    @Override
-                    protected void updateItem(Void item, boolean empty) {
-                        super.updateItem(item, empty);
-                        
-                        if (empty) {
-                            setGraphic(null);
-                            return;
-                        }
-                        
-                        Matiere matiere = getTableRow().getItem();
-                        if (matiere == null) {
-                            setGraphic(null);
-                            return;
-                        }
-                        
-                        HBox buttonBox = new HBox(5);
-                        buttonBox.setAlignment(Pos.CENTER);
-                        
-                        // Toujours afficher le bouton pour voir les exercices
-                        buttonBox.getChildren().add(viewButton);
-                        
-                        // Seuls les professeurs peuvent modifier ou supprimer les matières
-                        if ("Professeur".equals(userRole)) {
-                            buttonBox.getChildren().addAll(editButton, deleteButton);
-                        }
-                        
-                        setGraphic(buttonBox);
-                    }
-                };
+                ActionCell<Matiere> cell = new ActionCell<>(5);
+                // Toujours afficher le bouton pour voir les exercices
+                cell.addButton("Exercices", "button-blue", this::viewExercices, null);
+                // Seuls les professeurs peuvent modifier ou supprimer les matières
+                cell.addButton("Modifier", "button-yellow", this::openMatiereEditor, matiere -> session.can(Session.Permission.GERER_MATIERES));
+                cell.addButton("Supprimer", "button-red", this::confirmAndDeleteMatiere, matiere -> session.can(Session.Permission.GERER_MATIERES));
+                return cell;
             });
         }
         
@@ -235,7 +208,7 @@ public class MatiereController {
     }
     
     /**
-     * Ouvre la matière sélectionnée et ferme les autres fenêtres.
+     * Ouvre la liste des exercices de la matière sélectionnée.
      */
     private void openSelectedMatiere() {
         Matiere matiere = matiereComboBox.getValue();
@@ -247,27 +220,8 @@ public class MatiereController {
         }
         
         try {
-            // Récupérer la fenêtre actuelle avant d'en créer une nouvelle
-            Stage currentStage = (Stage) matiereComboBox.getScene().getWindow();
-            
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/exercice_view.fxml"));
-            Parent root = loader.load();
-            
-            ExerciceController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            controller.setMatiere(matiere);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            // Ferme toutes les autres fenêtres sauf celle en cours
-            closeAllOtherWindows(currentStage);
-            
-            // Change la scène de la fenêtre actuelle
-            currentStage.setTitle("Exercices - " + matiere.getNom());
-            currentStage.setScene(scene);
-            IconHelper.setStageIcon(currentStage);
+            Router.<ExerciceController>navigate(ViewRegistry.EXERCICES, "Exercices - " + matiere.getNom(),
+                    controller -> controller.showMatiere(matiere));
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening exercise view", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -280,23 +234,8 @@ public class MatiereController {
      */
     private void viewExercices(Matiere matiere) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/exercice_view.fxml"));
-            Parent root = loader.load();
-            
-            ExerciceController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            controller.setMatiere(matiere);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Exercices - " + matiere.getNom());
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
-            
+            Router.<ExerciceController>navigate(ViewRegistry.EXERCICES, "Exercices - " + matiere.getNom(),
+                    controller -> controller.showMatiere(matiere));
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening exercise view", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -306,31 +245,12 @@ public class MatiereController {
     
     /**
      * Ouvre la vue "Mes Exercices".
-     * Change la scène de la fenêtre actuelle et ferme les autres fenêtres.
      */
     @FXML
     private void showMyExercises() {
         try {
-            Stage currentStage = (Stage) matiereComboBox.getScene().getWindow();
-            
-            // Ferme toutes les autres fenêtres
-            closeAllOtherWindows(currentStage);
-            
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/exercice_view.fxml"));
-            Parent root = loader.load();
-            
-            ExerciceController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            controller.setShowUserExercisesOnly(true);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            // Modification de la scène de la fenêtre actuelle
-            currentStage.setTitle("Mes Exercices");
-            currentStage.setScene(scene);
-            IconHelper.setStageIcon(currentStage);
+            Router.<ExerciceController>navigate(ViewRegistry.EXERCICES, "Mes Exercices",
+                    controller -> controller.showUserExercises());
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening my exercises view", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -343,30 +263,15 @@ public class MatiereController {
      */
     @FXML
     private void showMySolutions() {
-        if (!"Professeur".equals(userRole)) {
+        if (!session.can(Session.Permission.VOIR_SOLUTIONS_RECUES)) {
             showAlert(Alert.AlertType.WARNING, "Accès refusé", "Permission insuffisante", 
                      "Seuls les professeurs peuvent accéder aux solutions.");
             return;
         }
         
         try {
-            Stage currentStage = (Stage) matiereComboBox.getScene().getWindow();
-            closeAllOtherWindows(currentStage);
-            
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/solution_view.fxml"));
-            Parent root = loader.load();
-            
-            SolutionController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            controller.setShowUserSolutionsOnly(true);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            currentStage.setTitle("Mes Solutions");
-            currentStage.setScene(scene);
-            IconHelper.setStageIcon(currentStage);
+            Router.<SolutionController>navigate(ViewRegistry.SOLUTIONS, "Mes Solutions",
+                    controller -> controller.showUserSolutions());
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening my solutions view", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -374,6 +279,27 @@ public class MatiereController {
         }
     }
     
+    /**
+     * Ouvre le tableau de bord des statistiques (accessible uniquement aux professeurs).
+     */
+    @FXML
+    private void showStatistics() {
+        if (!session.can(Session.Permission.VOIR_STATISTIQUES)) {
+            showAlert(Alert.AlertType.WARNING, "Accès refusé", "Permission insuffisante", 
+                     "Seuls les professeurs peuvent accéder aux statistiques.");
+            return;
+        }
+        
+        try {
+            Router.<StatistiquesController>navigate(ViewRegistry.STATISTICS, "Statistiques",
+                    StatistiquesController::bind);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error opening statistics view", e);
+            showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
+                     "Impossible d'afficher les statistiques: " + e.getMessage());
+        }
+    }
+    
     /**
      * Ouvre l'éditeur pour ajouter ou modifier une matière.
      * Crée une boîte de dialogue directement via JavaFX plutôt que d'utiliser un FXML séparé.
@@ -542,27 +468,15 @@ public class MatiereController {
      */
     @FXML
     private void manageUsers() {
-        if (!"Professeur".equals(userRole)) {
+        if (!session.can(Session.Permission.GERER_UTILISATEURS)) {
             showAlert(Alert.AlertType.WARNING, "Accès refusé", "Permission insuffisante", 
                      "Seuls les professeurs peuvent gérer les utilisateurs.");
             return;
         }
         
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/user_management.fxml"));
-            Parent root = loader.load();
-            
-            UserManagementController controller = loader.getController();
-            controller.setAdminId(userId);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Gestion des utilisateurs");
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
+            Router.<UserManagementController>navigate(ViewRegistry.USER_MANAGEMENT, "Gestion des utilisateurs",
+                    UserManagementController::bind);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening user management view", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -576,23 +490,8 @@ public class MatiereController {
     @FXML
     private void manageMatieres() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/matiere_management.fxml"));
-            Parent root = loader.load();
-            
-            MatiereController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Gestion des matières");
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
-            
-            closeCurrentStage();
+            Router.<MatiereController>navigate(ViewRegistry.MATIERE_MANAGEMENT, "Gestion des matières",
+                    MatiereController::bind);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening matiere management view", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -614,23 +513,14 @@ public class MatiereController {
     @FXML
     private void handleBack() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/matiere_view.fxml"));
-            Parent root = loader.load();
-            
-            MatiereController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Sélection de matière");
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
-            
-            closeCurrentStage();
+            MatiereController selection = Router.backTo(ViewRegistry.MATIERE_SELECTION);
+            if (selection != null) {
+                // Les matières ont pu changer dans la vue de gestion
+                selection.loadMatieres();
+            } else {
+                Router.<MatiereController>navigate(ViewRegistry.MATIERE_SELECTION, "Sélection de matière",
+                        MatiereController::bind);
+            }
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error returning to matiere selection", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible", 
@@ -644,22 +534,7 @@ public class MatiereController {
     @FXML
     private void handleLogout() {
         try {
-            Stage currentStage = (Stage) matiereComboBox.getScene().getWindow();
-            closeAllOtherWindows(currentStage);
-            
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/login.fxml"));
-            Parent root = loader.load();
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Connexion");
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
-            
-            closeCurrentStage();
+            Router.showLogin();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error logging out", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Déconnexion impossible", 
@@ -667,23 +542,6 @@ public class MatiereController {
         }
     }
     
-    /**
-     * Ferme la fenêtre actuelle.
-     */
-    private void closeCurrentStage() {
-        if (matiereComboBox != null) {
-            Stage stage = (Stage) matiereComboBox.getScene().getWindow();
-            if (stage != null) {
-                stage.close();
-            }
-        } else if (matiereTable != null) {
-            Stage stage = (Stage) matiereTable.getScene().getWindow();
-            if (stage != null) {
-                stage.close();
-            }
-        }
-    }
-    
     /**
      * Affiche une boîte de dialogue d'alerte.
      */
@@ -738,24 +596,4 @@ public class MatiereController {
     private void handleRetour() {
         handleLogout();
     }
-    
-    /**
-     * Ferme toutes les fenêtres ouvertes, à l'exception de celle spécifiée.
-     */
-    private void closeAllOtherWindows(Stage exceptStage) {
-        java.util.List<Stage> stagesToClose = new java.util.ArrayList<>();
-        
-        for (javafx.stage.Window window : javafx.stage.Window.getWindows()) {
-            if (window instanceof Stage && window.isShowing() && window != exceptStage) {
-                stagesToClose.add((Stage) window);
-            }
-        }
-        
-        for (Stage stage : stagesToClose) {
-            LOGGER.info("Closing window: " + stage.getTitle());
-            stage.close();
-        }
-        
-        LOGGER.info("Closed " + stagesToClose.size() + " additional windows");
-    }
 }
@@ -0,0 +1,199 @@
+package controllers;
+
+import javafx.animation.AnimationTimer;
+import javafx.collections.ObservableList;
+import utils.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Abonné qui ajoute à une liste affichée les éléments publiés au fil de l'eau par un DAO.
+ *
+ * Les lignes sont construites sur le thread de publication et mises en attente ; à chaque
+ * impulsion d'animation, tout ce qui est arrivé depuis la précédente est ajouté en une seule
+ * fois à la liste, donc une seule mise à jour de la table par image. Le premier ajout remplace
+ * le contenu de la liste (lignes d'un instantané affichées en attendant, par exemple).
+ *
+ * La demande reste bornée : quand trop de lignes attendent l'affichage, la lecture est
+ * suspendue jusqu'à l'impulsion suivante. {@link #annuler()} arrête aussi la requête en cours
+ * sur le serveur.
+ */
+final class PulseAppender<T, R> implements Flow.Subscriber<T> {
+    private static final int DEMANDE_INITIALE = 256;
+    private static final int ATTENTE_MAX = 4096;
+
+    private final ObservableList<R> cible;
+    private final Function<? super T, ? extends Collection<? extends R>> convertir;
+    private final AnimationTimer timer;
+    private CancellationToken token;
+    private Flow.Subscription subscription;
+    private Runnable onFinished = () -> { };
+    private Consumer<Throwable> onFailed = erreur -> { };
+
+    // Partagé entre le thread de publication et le thread JavaFX, sous le verrou de l'instance
+    private List<R> enAttente = new ArrayList<>();
+    private long demandeRetenue;
+    private boolean termine;
+    private Throwable erreur;
+    private boolean annule;
+
+    private boolean premierAjout = true; // thread JavaFX uniquement
+
+    private PulseAppender(ObservableList<R> cible, Function<? super T, ? extends Collection<? extends R>> convertir) {
+        this.cible = cible;
+        this.convertir = convertir;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                vider();
+            }
+        };
+    }
+
+    /**
+     * Une ligne par élément publié.
+     */
+    static <T, R> PulseAppender<T, R> lignes(ObservableList<R> cible, Function<? super T, ? extends R> convertir) {
+        return new PulseAppender<>(cible, element -> List.of(convertir.apply(element)));
+    }
+
+    /**
+     * Plusieurs lignes par élément publié (bloc de lignes).
+     */
+    static <T, R> PulseAppender<T, R> blocs(ObservableList<R> cible,
+                                           Function<? super T, ? extends Collection<? extends R>> convertir) {
+        return new PulseAppender<>(cible, convertir);
+    }
+
+    /** Appelé sur le thread JavaFX une fois toutes les lignes ajoutées. */
+    void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+
+    /** Appelé sur le thread JavaFX si la lecture échoue ; les lignes déjà reçues restent affichées. */
+    void setOnFailed(Consumer<Throwable> onFailed) {
+        this.onFailed = onFailed;
+    }
+
+    /**
+     * Abonne cette liste à la publication. À appeler sur le thread JavaFX.
+     *
+     * @param token délai d'exécution de la requête ; annulé par {@link #annuler()}
+     */
+    void charger(Flow.Publisher<T> publisher, CancellationToken token) {
+        this.token = token;
+        timer.start();
+        token.run(() -> publisher.subscribe(this));
+    }
+
+    /**
+     * Arrête la lecture (autre filtre choisi, par exemple) ; les lignes en attente sont
+     * abandonnées. À appeler sur le thread JavaFX.
+     */
+    void annuler() {
+        Flow.Subscription s;
+        synchronized (this) {
+            annule = true;
+            enAttente = new ArrayList<>();
+            s = subscription;
+        }
+        timer.stop();
+        if (s != null) {
+            s.cancel();
+        }
+        if (token != null) {
+            token.cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        boolean dejaAnnule;
+        synchronized (this) {
+            this.subscription = subscription;
+            dejaAnnule = annule;
+        }
+        if (dejaAnnule) {
+            subscription.cancel();
+        } else {
+            subscription.request(DEMANDE_INITIALE);
+        }
+    }
+
+    @Override
+    public void onNext(T element) {
+        Collection<? extends R> lignes = convertir.apply(element);
+        boolean renouveler;
+        synchronized (this) {
+            if (annule) {
+                return;
+            }
+            enAttente.addAll(lignes);
+            renouveler = enAttente.size() < ATTENTE_MAX;
+            if (!renouveler) {
+                demandeRetenue++;
+            }
+        }
+        if (renouveler) {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        erreur = throwable;
+        termine = true;
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        termine = true;
+    }
+
+    /**
+     * Impulsion d'animation : ajoute les lignes arrivées, relance la lecture suspendue et
+     * signale la fin.
+     */
+    private void vider() {
+        List<R> lot;
+        long demande;
+        boolean fini;
+        Throwable echec;
+        synchronized (this) {
+            if (annule) {
+                return;
+            }
+            lot = enAttente;
+            enAttente = new ArrayList<>();
+            demande = demandeRetenue;
+            demandeRetenue = 0;
+            fini = termine;
+            echec = erreur;
+        }
+        // Une lecture terminée sans ligne vide la liste ; un échec laisse l'instantané affiché
+        if (!lot.isEmpty() || (fini && echec == null && premierAjout)) {
+            if (premierAjout) {
+                cible.setAll(lot);
+                premierAjout = false;
+            } else {
+                cible.addAll(lot);
+            }
+        }
+        if (demande > 0) {
+            subscription.request(demande);
+        }
+        if (fini) {
+            timer.stop();
+            if (echec != null) {
+                onFailed.accept(echec);
+            } else {
+                onFinished.run();
+            }
+        }
+    }
+}
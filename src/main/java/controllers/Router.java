@@ -0,0 +1,257 @@
+package controllers;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import utils.CircuitBreaker;
+import utils.DatabaseConnection;
+import utils.Session;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Navigation entre les écrans principaux dans une fenêtre unique.
+ *
+ * L'application n'a qu'une fenêtre principale et une seule scène : naviguer remplace la racine
+ * de la scène par celle de la vue demandée (fournie par le {@link ViewRegistry}), sans créer
+ * de fenêtre. Les écrans quittés sont gardés dans un historique borné ; un retour réaffiche
+ * l'écran précédent tel quel, sans recharger ses données. Les formulaires et boîtes de
+ * dialogue modales restent des fenêtres séparées.
+ *
+ * Un contrôleur {@link Leavable} est prévenu quand son écran est abandonné (retour, historique
+ * plein, déconnexion) pour arrêter ses chargements en cours ; il ne l'est pas quand l'écran
+ * passe dans l'historique, puisqu'il sera réaffiché tel quel.
+ *
+ * Au-dessus de l'écran, un bandeau signale le mode dégradé tant que le disjoncteur de la
+ * base ({@link CircuitBreaker}) est ouvert : les écrans affichent alors la copie locale.
+ */
+public final class Router {
+    private static final Logger LOGGER = Logger.getLogger(Router.class.getName());
+    private static final String LOGIN = "/fxml/login.fxml";
+    private static final String LOGIN_TITLE = "Education Management System";
+    private static final String STYLESHEET = "/css/styles.css";
+    private static final int MAX_HISTORY = 6;
+    private static final String DEGRADED_MESSAGE =
+            "Base de données injoignable : données locales affichées, certaines actions sont indisponibles.";
+
+    private static Stage stage;
+    private static Scene scene;
+    private static BorderPane frame; // racine de la scène : bandeau en haut, écran courant au centre
+    private static Label degradedBanner;
+    private static Screen current;
+    private static final Deque<Screen> history = new ArrayDeque<>();
+
+    /**
+     * Un écran affiché ou en historique : sa vue en cache (null pour la connexion) et son titre.
+     */
+    private static final class Screen {
+        private final String fxml;
+        private final Parent root;
+        private final ViewRegistry.View<?> view;
+        private final String title;
+
+        private Screen(String fxml, Parent root, ViewRegistry.View<?> view, String title) {
+            this.fxml = fxml;
+            this.root = root;
+            this.view = view;
+            this.title = title;
+        }
+    }
+
+    /**
+     * Contrôleur à prévenir quand son écran est quitté sans qu'on puisse y revenir.
+     */
+    public interface Leavable {
+        /** Appelé sur le thread JavaFX ; annule typiquement les requêtes encore en cours. */
+        void onLeave();
+    }
+
+    private Router() {
+    }
+
+    /**
+     * Installe le routeur sur la fenêtre principale et y affiche l'écran de connexion.
+     */
+    public static void init(Stage primaryStage, double width, double height) throws IOException {
+        stage = primaryStage;
+        Parent login = loadLogin();
+        degradedBanner = new Label(DEGRADED_MESSAGE);
+        degradedBanner.getStyleClass().add("degraded-banner");
+        degradedBanner.setMaxWidth(Double.MAX_VALUE);
+        frame = new BorderPane(login);
+        frame.setTop(degradedBanner);
+        scene = new Scene(frame, width, height);
+        scene.getStylesheets().add(Router.class.getResource(STYLESHEET).toExternalForm());
+        current = new Screen(LOGIN, login, null, LOGIN_TITLE);
+        stage.setTitle(LOGIN_TITLE);
+        stage.setScene(scene);
+
+        CircuitBreaker breaker = DatabaseConnection.getCircuitBreaker();
+        showDegraded(breaker.getState() != CircuitBreaker.State.CLOSED);
+        breaker.addListener(state -> Platform.runLater(
+                () -> showDegraded(state != CircuitBreaker.State.CLOSED)));
+    }
+
+    public static Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * Affiche un écran principal ; l'écran courant est placé dans l'historique.
+     *
+     * @param fxml la vue à afficher (constante de {@link ViewRegistry})
+     * @param title le titre de la fenêtre
+     * @param binder reçoit le contrôleur pour lui transmettre le contexte (utilisateur, matière...)
+     * @return le contrôleur de la vue affichée, ou null si la session a expiré (retour à la connexion)
+     */
+    public static <C> C navigate(String fxml, String title, Consumer<C> binder) throws IOException {
+        Session session = Session.current();
+        if (session == null || session.isExpired()) {
+            LOGGER.info("Session expired, back to login");
+            showLogin();
+            return null;
+        }
+        session.touch();
+        ViewRegistry.View<C> view = ViewRegistry.acquire(fxml);
+        view.retain();
+        binder.accept(view.getController());
+        if (current != null && current.view != null) {
+            history.push(current);
+            if (history.size() > MAX_HISTORY) {
+                release(history.removeLast());
+            }
+        } else if (current != null) {
+            // L'écran de connexion n'est pas gardé : on n'y revient que par une déconnexion
+            history.clear();
+        }
+        show(new Screen(fxml, view.getRoot(), view, title));
+        return view.getController();
+    }
+
+    /**
+     * Affiche un écran principal en vidant l'historique (après la connexion).
+     */
+    public static <C> C reset(String fxml, String title, Consumer<C> binder) throws IOException {
+        releaseHistory();
+        return navigate(fxml, title, binder);
+    }
+
+    /**
+     * Réaffiche l'écran précédent, sans recharger ses données.
+     *
+     * @return false s'il n'y a pas d'écran précédent
+     */
+    public static boolean back() {
+        if (history.isEmpty()) {
+            return false;
+        }
+        releaseCurrent();
+        show(history.pop());
+        return true;
+    }
+
+    /**
+     * Revient au dernier écran de l'historique affichant cette vue, en abandonnant ceux qui suivent.
+     *
+     * @return le contrôleur de l'écran retrouvé, ou null s'il n'est pas dans l'historique
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> C backTo(String fxml) {
+        boolean found = false;
+        for (Screen screen : history) {
+            if (screen.fxml.equals(fxml)) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            return null;
+        }
+        releaseCurrent();
+        Screen screen = history.pop();
+        while (!screen.fxml.equals(fxml)) {
+            release(screen);
+            screen = history.pop();
+        }
+        show(screen);
+        return (C) screen.view.getController();
+    }
+
+    /**
+     * Revient à l'écran de connexion : l'historique et les vues en cache, qui contiennent
+     * les données de l'utilisateur, sont oubliés.
+     */
+    public static void showLogin() throws IOException {
+        Parent root = loadLogin();
+        Session.close();
+        releaseHistory();
+        releaseCurrent();
+        ViewRegistry.clear();
+        show(new Screen(LOGIN, root, null, LOGIN_TITLE));
+        // Prêt pour la prochaine connexion, une fois l'écran de connexion affiché
+        Platform.runLater(() -> ViewRegistry.preload(ViewRegistry.MATIERE_SELECTION));
+    }
+
+    private static void show(Screen screen) {
+        current = screen;
+        frame.setCenter(screen.root);
+        stage.setTitle(screen.title);
+        LOGGER.fine("Showing " + screen.fxml + " (" + history.size() + " screen(s) in history)");
+    }
+
+    private static void showDegraded(boolean degraded) {
+        degradedBanner.setVisible(degraded);
+        degradedBanner.setManaged(degraded);
+    }
+
+    private static void releaseCurrent() {
+        if (current != null && current.view != null) {
+            release(current);
+        }
+    }
+
+    private static void releaseHistory() {
+        for (Iterator<Screen> it = history.iterator(); it.hasNext(); ) {
+            Screen screen = it.next();
+            it.remove();
+            release(screen);
+        }
+    }
+
+    /**
+     * Libère la vue d'un écran abandonné et prévient son contrôleur, sauf si la même vue
+     * est encore affichée ou dans l'historique.
+     */
+    private static void release(Screen screen) {
+        Object controller = screen.view.getController();
+        if (controller instanceof Leavable && !stillShown(screen)) {
+            ((Leavable) controller).onLeave();
+        }
+        screen.view.release();
+    }
+
+    private static boolean stillShown(Screen leaving) {
+        if (current != leaving && current != null && current.view == leaving.view) {
+            return true;
+        }
+        for (Screen screen : history) {
+            if (screen != leaving && screen.view == leaving.view) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Parent loadLogin() throws IOException {
+        return new FXMLLoader(Router.class.getResource(LOGIN)).load();
+    }
+}
@@ -0,0 +1,78 @@
+package controllers;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Mises en forme partagées par les lignes de tables ({@link SolutionRow}, {@link ExerciceRow},
+ * {@link UtilisateurRow}). Elles sont appliquées une seule fois, à la construction de la ligne,
+ * et non à chaque affichage d'une cellule.
+ */
+final class RowFormat {
+    static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    /** Longueur maximale d'un aperçu de texte dans une cellule. */
+    static final int APERCU_MAX = 120;
+
+    private RowFormat() {
+    }
+
+    /**
+     * Aperçu d'un texte sur une seule ligne : les blancs (retours à la ligne compris) sont
+     * réduits à un espace et le texte est coupé à {@link #APERCU_MAX} caractères.
+     * Seul le début du texte est parcouru, quelle que soit sa longueur.
+     */
+    static String apercu(String texte) {
+        if (texte == null) {
+            return "";
+        }
+        StringBuilder apercu = new StringBuilder(Math.min(texte.length(), APERCU_MAX + 1));
+        boolean blanc = false;
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (Character.isWhitespace(c)) {
+                blanc = apercu.length() > 0;
+                continue;
+            }
+            if (blanc) {
+                apercu.append(' ');
+                blanc = false;
+            }
+            if (apercu.length() >= APERCU_MAX) {
+                apercu.setLength(APERCU_MAX);
+                return apercu.append('…').toString();
+            }
+            apercu.append(c);
+        }
+        return apercu.toString();
+    }
+
+    /**
+     * Date affichée dans une colonne : le texte est formaté une fois, au premier affichage,
+     * et le tri se fait sur la date sans jamais la formater.
+     */
+    static final class DateLabel implements Comparable<DateLabel> {
+        private final LocalDateTime date;
+        private String texte;
+
+        DateLabel(LocalDateTime date) {
+            this.date = date;
+        }
+
+        @Override
+        public int compareTo(DateLabel other) {
+            if (date == null || other.date == null) {
+                return date == null ? (other.date == null ? 0 : -1) : 1;
+            }
+            return date.compareTo(other.date);
+        }
+
+        @Override
+        public String toString() {
+            if (texte == null) {
+                texte = date == null ? "" : DATE.format(date);
+            }
+            return texte;
+        }
+    }
+}
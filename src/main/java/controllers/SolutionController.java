@@ -1,29 +1,33 @@
 package controllers;
 
+import dao.ExerciceDAO;
 import dao.SolutionDAO;
-import dao.UtilisateurDAO;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import models.Exercice;
+import models.Matiere;
 import models.Solution;
-import models.Utilisateur;
+import utils.AppConfig;
+import utils.CancellationToken;
 import utils.IconHelper;
+import utils.Session;
+import utils.Session.Permission;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Flow;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,16 +39,16 @@ import java.util.logging.Logger;
  * Remarque : La logique métier n'est pas modifiée, seul les commentaires
  * importants en français ont été ajoutés pour clarifier le fonctionnement.
  */
-public class SolutionController {
+public class SolutionController implements Router.Leavable {
     // Logger pour suivre les opérations et afficher les informations importantes
     private static final Logger LOGGER = Logger.getLogger(SolutionController.class.getName());
 
     // Composants FXML pour la vue liste des solutions
-    @FXML private TableView<Solution> solutionTable;
-    @FXML private TableColumn<Solution, String> contenuColumn;
-    @FXML private TableColumn<Solution, LocalDateTime> dateColumn;
-    @FXML private TableColumn<Solution, String> auteurColumn;
-    @FXML private TableColumn<Solution, Void> actionsColumn;
+    @FXML private TableView<SolutionRow> solutionTable;
+    @FXML private TableColumn<SolutionRow, String> contenuColumn;
+    @FXML private TableColumn<SolutionRow, RowFormat.DateLabel> dateColumn;
+    @FXML private TableColumn<SolutionRow, String> auteurColumn;
+    @FXML private TableColumn<SolutionRow, Void> actionsColumn;
     @FXML private Button addSolutionButton;
     
     // Composants FXML pour le formulaire de solution
@@ -52,8 +56,7 @@ public class SolutionController {
     @FXML private Button submitButton;
     
     // Variables d'état
-    private int userId;
-    private String userRole;
+    private Session session;
     private int exerciceId;
     private Solution currentSolution;
     private boolean isEditing = false;
@@ -61,7 +64,8 @@ public class SolutionController {
     
     // Accès aux données via le DAO et liste observable pour le TableView
     private final SolutionDAO solutionDAO = new SolutionDAO();
-    private final ObservableList<Solution> solutionList = FXCollections.observableArrayList();
+    private final ObservableList<SolutionRow> solutionList = FXCollections.observableArrayList();
+    private PulseAppender<Solution, SolutionRow> loading; // chargement en cours de la liste
 
     /**
      * Méthode d'initialisation du contrôleur.
@@ -69,6 +73,7 @@ public class SolutionController {
      */
     @FXML
     public void initialize() {
+        session = Session.current();
         configureTableView();
         
         // Lie le texte du bouton de soumission à l'état d'édition (Modifier/Ajouter)
@@ -97,156 +102,110 @@ public class SolutionController {
     private void configureTableView() {
         if (solutionTable == null) return;
         
-        // Attribution des valeurs des colonnes aux propriétés de l'objet Solution
-        contenuColumn.setCellValueFactory(new PropertyValueFactory<>("contenu"));
-        dateColumn.setCellValueFactory(new PropertyValueFactory<>("dateCreation"));
-        auteurColumn.setCellValueFactory(new PropertyValueFactory<>("auteurNom"));
-        
-        // Formatage de la colonne date
-        dateColumn.setCellFactory(column -> new TableCell<>() {
-            @Override
-            protected void updateItem(LocalDateTime item, boolean empty) {
-                super.updateItem(item, empty);
-                setText(empty || item == null ? null :
-                        item.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
-            }
-        });
+        // Les textes affichés (aperçu du contenu, date, auteur) sont précalculés par SolutionRow
+        contenuColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getApercu()));
+        dateColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getDate()));
+        auteurColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getAuteur()));
         
         // Attribution de boutons d'action pour chaque ligne de solution
         actionsColumn.setCellFactory(param -> createActionButtons());
+        solutionTable.setItems(solutionList);
     }
     
     /**
      * Crée les boutons d'action (Voir, Modifier, Supprimer) pour chaque ligne du TableView.
      * Seuls les professeurs ou l'auteur de la solution peuvent modifier ou supprimer.
      */
-    private TableCell<Solution, Void> createActionButtons() {
-        return new TableCell<>() {
-            // Déclaration et configuration des boutons
-            private final Button viewButton = new Button("Voir");
-            private final Button editButton = new Button("Modifier");
-            private final Button deleteButton = new Button("Supprimer");
-            
-            {
-                // Définition des actions lors du clic sur chaque bouton
-                viewButton.setOnAction(event -> showSolutionDetails(getTableRow().getItem()));
-                editButton.setOnAction(event -> openSolutionEditor(getTableRow().getItem()));
-                deleteButton.setOnAction(event -> confirmAndDeleteSolution(getTableRow().getItem()));
-                
-                // Application des styles CSS personnalisés
-                viewButton.getStyleClass().add("button-blue");
-                editButton.getStyleClass().add("button-yellow");
-                deleteButton.getStyleClass().add("button-red");
-            }
-            
-            @Override
-            protected void updateItem(Void item, boolean empty) {
-                super.updateItem(item, empty);
-                
-                if (empty) {
-                    setGraphic(null);
-                    return;
-                }
-                
-                // Récupération de la solution associée à la ligne
-                Solution solution = getTableRow().getItem();
-                if (solution == null) {
-                    setGraphic(null);
-                    return;
-                }
-                
-                // Création d'un conteneur HBox pour organiser les boutons horizontalement
-                HBox buttonBox = new HBox(5);
-                buttonBox.setAlignment(javafx.geometry.Pos.CENTER);
-                
-                // Bouton Vue disponible pour tous
-                buttonBox.getChildren().add(viewButton);
-                
-                // Seuls les professeurs ou l'auteur de la solution peuvent modifier ou supprimer
-                boolean canModify = "Professeur".equals(userRole) || solution.getAuteurId() == userId;
-                if (canModify) {
-                    buttonBox.getChildren().addAll(editButton, deleteButton);
-                }
-                
-                setGraphic(buttonBox);
-            }
-        };
+    private TableCell<SolutionRow, Void> createActionButtons() {
+        ActionCell<SolutionRow> cell = new ActionCell<>(5);
+        cell.addButton("Voir", "button-blue", row -> showSolutionDetails(row.getSolution()), null);
+        cell.addButton("Modifier", "button-yellow", row -> openSolutionEditor(row.getSolution()),
+                row -> canModify(row.getSolution()));
+        cell.addButton("Supprimer", "button-red", this::confirmAndDeleteSolution,
+                row -> canModify(row.getSolution()));
+        return cell;
     }
     
     /**
-     * Définit l'ID de l'utilisateur et charge les solutions correspondantes.
+     * Indique si l'utilisateur courant peut modifier ou supprimer la solution.
      */
-    public void setUserId(int userId) {
-        this.userId = userId;
-        loadSolutions();
+    private boolean canModify(Solution solution) {
+        return session.can(Permission.MODIFIER_TOUTES_SOLUTIONS) || solution.getAuteurId() == session.getUserId();
     }
     
     /**
-     * Définit le rôle de l'utilisateur.
-     * Pour les étudiants, le bouton d'ajout de solution est caché.
+     * Prépare la vue (éventuellement réutilisée depuis le ViewRegistry) pour les solutions d'un exercice.
+     * Les solutions sont chargées une seule fois, après la mise à jour de tout le contexte.
      */
-    public void setUserRole(String userRole) {
-        this.userRole = userRole;
-        LOGGER.info("User role set to: " + userRole);
-        
-        if (addSolutionButton != null && "Étudiant".equals(userRole)) {
-            addSolutionButton.setVisible(false);
-            addSolutionButton.setManaged(false);
-        }
-        
-        updateUIPermissions();
+    public void showExercice(int exerciceId) {
+        rebind(exerciceId, false);
     }
     
     /**
-     * Définit l'ID de l'exercice pour filtrer les solutions.
+     * Prépare la vue (éventuellement réutilisée depuis le ViewRegistry) pour les solutions de l'utilisateur.
      */
-    public void setExerciceId(int exerciceId) {
-        this.exerciceId = exerciceId;
-        loadSolutions();
+    public void showUserSolutions() {
+        rebind(0, true);
     }
     
-    /**
-     * Détermine si seuls les solutions de l'utilisateur doivent être affichées.
-     */
-    public void setShowUserSolutionsOnly(boolean showUserSolutionsOnly) {
+    private void rebind(int exerciceId, boolean showUserSolutionsOnly) {
+        this.session = Session.current();
+        this.exerciceId = exerciceId;
         this.showUserSolutionsOnly = showUserSolutionsOnly;
+        if (addSolutionButton != null) {
+            // Rétabli puis éventuellement masqué selon le nouveau rôle
+            addSolutionButton.setVisible(true);
+            addSolutionButton.setManaged(true);
+        }
+        updateUIPermissions();
+        solutionTable.getSelectionModel().clearSelection();
+        solutionTable.scrollTo(0);
         loadSolutions();
     }
     
     /**
      * Charge les solutions selon les filtres actuels (par créateur ou par exercice).
+     * Les solutions sont lues au fil de l'eau et leurs lignes construites en arrière-plan ;
+     * les premières s'affichent sans attendre la fin de la requête.
      */
     private void loadSolutions() {
+        if (solutionTable == null) {
+            return; // formulaire : pas de liste à recharger
+        }
+        // Un chargement encore en cours (autre exercice) n'ajoute plus rien
+        if (loading != null) {
+            loading.annuler();
+            loading = null;
+        }
         solutionList.clear();
+        Flow.Publisher<Solution> solutions;
+        if (showUserSolutionsOnly) {
+            // Uniquement les solutions des exercices créés par l'utilisateur
+            solutions = solutionDAO.streamSolutionsByCreateur(session.getUserId());
+        } else if (exerciceId > 0) {
+            solutions = solutionDAO.streamSolutionsByExercice(exerciceId);
+        } else {
+            return;
+        }
         
-        try {
-            List<Solution> solutions = new ArrayList<>();
-            
-            if (showUserSolutionsOnly) {
-                // Récupère uniquement les solutions créées par l'utilisateur
-                try {
-                    solutions = solutionDAO.getSolutionsByCreateur(userId);
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Error loading solutions by creator, falling back to solutions by author", e);
-                    solutions = solutionDAO.getSolutionsByAuteur(userId);
-                }
-            } else if (exerciceId > 0) {
-                // Récupère les solutions pour un exercice spécifique
-                solutions = solutionDAO.getSolutionsByExercice(exerciceId);
-            }
-            
-            solutionList.addAll(solutions);
-            
-            if (solutionTable != null) {
-                solutionTable.setItems(solutionList);
-                solutionTable.refresh();
-            }
-            
-            LOGGER.info("Loaded " + solutionList.size() + " solutions");
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error loading solutions", e);
+        loading = PulseAppender.lignes(solutionList, SolutionRow.fabrique());
+        loading.setOnFinished(() -> LOGGER.info("Loaded " + solutionList.size() + " solutions"));
+        loading.setOnFailed(error -> {
+            LOGGER.log(Level.SEVERE, "Error loading solutions", error);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Erreur de chargement", 
-                    "Impossible de charger les solutions: " + e.getMessage());
+                    "Impossible de charger les solutions: " + error.getMessage());
+        });
+        loading.charger(solutions, new CancellationToken(AppConfig.get().getInt(AppConfig.QUERY_LIST_TIMEOUT_SECONDS)));
+    }
+
+    /**
+     * Écran abandonné : la lecture en cours est arrêtée, requête comprise.
+     */
+    @Override
+    public void onLeave() {
+        if (loading != null) {
+            loading.annuler();
+            loading = null;
         }
     }
     
@@ -264,8 +223,7 @@ public class SolutionController {
         authorLabel.setStyle("-fx-font-weight: bold;");
         
         // Affiche la date de création au format personnalisé
-        Label dateLabel = new Label("Date: " + solution.getDateCreation().format(
-            java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+        Label dateLabel = new Label("Date: " + RowFormat.DATE.format(solution.getDateCreation()));
         
         // Zone de texte pour afficher le contenu de la solution (non éditable)
         TextArea contenuArea = new TextArea(solution.getContenu());
@@ -298,7 +256,6 @@ public class SolutionController {
             
             // Récupère le contrôleur de l'éditeur de solution
             SolutionController controller = loader.getController();
-            controller.setUserId(userId);
             
             if (solution != null) {
                 // Mode édition
@@ -319,12 +276,8 @@ public class SolutionController {
             // À la fermeture de la fenêtre, rafraîchit la liste des solutions
             stage.setOnHidden(event -> {
                 if (stage.getUserData() instanceof Solution) {
-                    // Une solution a été créée et est ajoutée directement à la liste
-                    Solution newSolution = (Solution) stage.getUserData();
-                    solutionList.add(newSolution);
-                    if (solutionTable != null) {
-                        solutionTable.refresh();
-                    }
+                    // Une solution a été créée ou modifiée : seule sa ligne est (re)construite
+                    showSolution((Solution) stage.getUserData());
                 } else if (Boolean.TRUE.equals(stage.getUserData())) {
                     // Sinon, recharge toutes les solutions
                     loadSolutions();
@@ -339,6 +292,20 @@ public class SolutionController {
         }
     }
     
+    /**
+     * Remplace la ligne de la solution si elle est affichée, sinon l'ajoute à la fin.
+     */
+    private void showSolution(Solution solution) {
+        SolutionRow row = SolutionRow.of(solution);
+        for (int i = 0; i < solutionList.size(); i++) {
+            if (solutionList.get(i).getSolution().getId() == solution.getId()) {
+                solutionList.set(i, row);
+                return;
+            }
+        }
+        solutionList.add(row);
+    }
+    
     /**
      * Prépare le formulaire pour l'ajout d'une nouvelle solution.
      */
@@ -407,20 +374,25 @@ public class SolutionController {
             solution.setContenu(contenu);
             solution.setDateCreation(LocalDateTime.now());
             solution.setExerciceId(exerciceId);
-            solution.setAuteurId(userId);
-            
-            // Récupère le nom de l'auteur pour un meilleur affichage
-            try {
-                String authorName = getUserName(userId);
-                solution.setAuteurNom(authorName != null ? authorName : "Utilisateur " + userId);
-            } catch (Exception e) {
-                solution.setAuteurNom("Utilisateur " + userId);
-            }
+            solution.setAuteurId(session.getUserId());
+            // Nom de l'auteur déjà connu par la session, sans requête supplémentaire
+            solution.setAuteurNom(session.getUtilisateur().getNom());
             
             // Ajoute la solution et récupère l'objet créé (avec ID attribué)
             Solution createdSolution = solutionDAO.addSolutionAndReturn(solution);
             
-            if (createdSolution != null) {
+            if (createdSolution != null && createdSolution.getId() < 0) {
+                // Base injoignable : la solution est gardée localement
+                showAlert(Alert.AlertType.INFORMATION, "Hors ligne", "Solution enregistrée localement", 
+                        "Le serveur est injoignable. La solution sera synchronisée dès le retour de la connexion.");
+                
+                Stage currentStage = (Stage) contenuField.getScene().getWindow();
+                currentStage.setUserData(createdSolution);
+                
+                if (solutionList != null) {
+                    loadSolutions();
+                }
+            } else if (createdSolution != null) {
                 showAlert(Alert.AlertType.INFORMATION, "Succès", "Solution ajoutée", 
                         "La solution a été ajoutée avec succès.");
                 
@@ -456,20 +428,6 @@ public class SolutionController {
         }
     }
     
-    /**
-     * Méthode d'assistance pour obtenir le nom de l'utilisateur à partir de son ID.
-     */
-    private String getUserName(int userId) {
-        try {
-            UtilisateurDAO utilisateurDAO = new UtilisateurDAO();
-            Utilisateur user = utilisateurDAO.getById(userId);
-            return user != null ? user.getNom() : null;
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error getting user name", e);
-            return null;
-        }
-    }
-    
     /**
      * Met à jour une solution existante.
      */
@@ -506,7 +464,8 @@ public class SolutionController {
     /**
      * Demande confirmation et supprime une solution.
      */
-    private void confirmAndDeleteSolution(Solution solution) {
+    private void confirmAndDeleteSolution(SolutionRow row) {
+        Solution solution = row != null ? row.getSolution() : null;
         if (solution == null) {
             LOGGER.warning("Attempted to delete a null solution");
             return;
@@ -524,10 +483,7 @@ public class SolutionController {
                 
                 if (success) {
                     // Supprime la solution de la liste et rafraîchit le TableView
-                    solutionList.remove(solution);
-                    if (solutionTable != null) {
-                        solutionTable.refresh();
-                    }
+                    solutionList.remove(row);
                     
                     showAlert(Alert.AlertType.INFORMATION, "Succès", "Solution supprimée", 
                             "La solution a été supprimée avec succès.");
@@ -551,7 +507,7 @@ public class SolutionController {
      */
     @FXML
     private void openAddSolutionForm() {
-        if ("Étudiant".equals(userRole)) {
+        if (!session.can(Permission.AJOUTER_SOLUTION)) {
             showAlert(Alert.AlertType.WARNING, "Action impossible", "Permission refusée", 
                     "Seuls les professeurs peuvent ajouter des solutions.");
             return;
@@ -571,32 +527,25 @@ public class SolutionController {
      */
     @FXML
     private void handleBack() {
+        // L'écran précédent est réaffiché tel quel, sans nouvelle requête
+        if (Router.back()) {
+            return;
+        }
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/exercice_view.fxml"));
-            Parent root = loader.load();
-            
-            ExerciceController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(userRole);
-            
-            if (exerciceId > 0) {
-                controller.setExerciceId(exerciceId);
-            } else if (showUserSolutionsOnly) {
-                controller.setShowUserExercisesOnly(true);
+            if (showUserSolutionsOnly) {
+                Router.<ExerciceController>navigate(ViewRegistry.EXERCICES, "Exercices",
+                        ExerciceController::showUserExercises);
+            } else {
+                // Revient aux exercices de la matière de l'exercice affiché
+                Exercice exercice = exerciceId > 0 ? new ExerciceDAO().getExerciceById(exerciceId) : null;
+                Matiere matiere = exercice != null ? new Matiere(exercice.getMatiereId(), "") : null;
+                Router.<ExerciceController>navigate(ViewRegistry.EXERCICES, "Exercices",
+                        controller -> controller.showMatiere(matiere));
             }
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Exercices");
-            stage.setScene(scene);
-            stage.show();
-            
-            closeCurrentStage();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error returning to exercise view", e);
-            closeCurrentStage();
+            showAlert(Alert.AlertType.ERROR, "Erreur", "Navigation impossible",
+                    "Impossible de revenir aux exercices: " + e.getMessage());
         }
     }
     
@@ -620,18 +569,6 @@ public class SolutionController {
         }
     }
     
-    /**
-     * Ferme la fenêtre ou le stage courant.
-     */
-    private void closeCurrentStage() {
-        if (solutionTable != null) {
-            Stage stage = (Stage) solutionTable.getScene().getWindow();
-            if (stage != null) {
-                stage.close();
-            }
-        }
-    }
-    
     /**
      * Affiche une boîte de dialogue d'alerte avec le type, titre, en-tête et contenu spécifiés.
      */
@@ -657,7 +594,7 @@ public class SolutionController {
      * Pour les étudiants, le bouton d'ajout de solution est masqué.
      */
     private void updateUIPermissions() {
-        if (!"Étudiant".equals(userRole)) {
+        if (session.can(Permission.AJOUTER_SOLUTION)) {
             return;
         }
         
@@ -667,22 +604,24 @@ public class SolutionController {
             return;
         }
         
-        // Si le bouton n'est pas directement référencé, recherche dans la hiérarchie de la scène
-        if (solutionTable != null && solutionTable.getScene() != null) {
-            BorderPane root = (BorderPane) solutionTable.getScene().getRoot();
-            if (root.getTop() instanceof VBox) {
-                VBox topBox = (VBox) root.getTop();
-                for (javafx.scene.Node node : topBox.getChildren()) {
-                    if (node instanceof HBox) {
-                        HBox hbox = (HBox) node;
-                        for (javafx.scene.Node hboxChild : hbox.getChildren()) {
-                            if (hboxChild instanceof Button) {
-                                Button btn = (Button) hboxChild;
-                                if ("Ajouter une solution".equals(btn.getText())) {
-                                    btn.setVisible(false);
-                                    btn.setManaged(false);
-                                    return;
-                                }
+        // Si le bouton n'est pas directement référencé, recherche dans la hiérarchie de la vue
+        // (la racine de la scène est le cadre du Router, pas celle de la vue)
+        javafx.scene.Parent parent = solutionTable != null ? solutionTable.getParent() : null;
+        while (parent != null && !(parent instanceof BorderPane && ((BorderPane) parent).getTop() instanceof VBox)) {
+            parent = parent.getParent();
+        }
+        if (parent != null) {
+            VBox topBox = (VBox) ((BorderPane) parent).getTop();
+            for (javafx.scene.Node node : topBox.getChildren()) {
+                if (node instanceof HBox) {
+                    HBox hbox = (HBox) node;
+                    for (javafx.scene.Node hboxChild : hbox.getChildren()) {
+                        if (hboxChild instanceof Button) {
+                            Button btn = (Button) hboxChild;
+                            if ("Ajouter une solution".equals(btn.getText())) {
+                                btn.setVisible(false);
+                                btn.setManaged(false);
+                                return;
                             }
                         }
                     }
@@ -0,0 +1,63 @@
+package controllers;
+
+import models.Solution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ligne de la table des solutions : les textes affichés sont calculés une fois,
+ * hors du thread JavaFX, et les cellules les lisent sans réflexion ni mise en forme.
+ */
+final class SolutionRow {
+    private final Solution solution;
+    private final String apercu;
+    private final RowFormat.DateLabel date;
+    private final String auteur;
+
+    private SolutionRow(Solution solution, String auteur) {
+        this.solution = solution;
+        this.apercu = RowFormat.apercu(solution.getContenu());
+        this.date = new RowFormat.DateLabel(solution.getDateCreation());
+        this.auteur = auteur;
+    }
+
+    static SolutionRow of(Solution solution) {
+        return new SolutionRow(solution, libelleAuteur(solution));
+    }
+
+    /**
+     * Construit les lignes d'une liste ; le libellé d'un auteur est partagé par toutes ses solutions.
+     */
+    static List<SolutionRow> of(List<Solution> solutions) {
+        Function<Solution, SolutionRow> fabrique = fabrique();
+        List<SolutionRow> rows = new ArrayList<>(solutions.size());
+        for (Solution solution : solutions) {
+            rows.add(fabrique.apply(solution));
+        }
+        return rows;
+    }
+
+    /**
+     * Construit les lignes une à une (lecture au fil de l'eau) ; comme pour une liste,
+     * le libellé d'un auteur est partagé par toutes les lignes construites par la fabrique.
+     */
+    static Function<Solution, SolutionRow> fabrique() {
+        Map<Integer, String> auteurs = new HashMap<>();
+        return solution -> new SolutionRow(solution,
+                auteurs.computeIfAbsent(solution.getAuteurId(), id -> libelleAuteur(solution)));
+    }
+
+    private static String libelleAuteur(Solution solution) {
+        String nom = solution.getAuteurNom();
+        return nom != null && !nom.isBlank() ? nom : "Utilisateur #" + solution.getAuteurId();
+    }
+
+    Solution getSolution() { return solution; }
+    String getApercu() { return apercu; }
+    RowFormat.DateLabel getDate() { return date; }
+    String getAuteur() { return auteur; }
+}
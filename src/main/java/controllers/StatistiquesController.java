@@ -0,0 +1,165 @@
+package controllers;
+
+import dao.StatistiqueDAO;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import models.TableauDeBord;
+import utils.AppConfig;
+import utils.CancellationToken;
+import utils.Session;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Contrôleur du tableau de bord des professeurs : activité de dépôt des solutions sur
+ * leurs exercices (par jour, par exercice), meilleurs contributeurs et exercices sans solution.
+ *
+ * Les données viennent des agrégats tenus par {@link StatistiqueDAO} et sont lues en
+ * arrière-plan ; le coût d'un affichage ne dépend pas de l'historique des solutions.
+ */
+public class StatistiquesController implements Router.Leavable {
+    private static final Logger LOGGER = Logger.getLogger(StatistiquesController.class.getName());
+    private static final DateTimeFormatter FORMAT_JOUR = DateTimeFormatter.ofPattern("dd/MM");
+    private static final String PERIODE_7 = "7 derniers jours";
+    private static final String PERIODE_30 = "30 derniers jours";
+    private static final String PERIODE_90 = "90 derniers jours";
+
+    @FXML private ComboBox<String> periodeComboBox;
+    @FXML private Label resumeLabel;
+    @FXML private LineChart<String, Number> parJourChart;
+    @FXML private BarChart<String, Number> parExerciceChart;
+    @FXML private ListView<String> contributeursList;
+    @FXML private ListView<String> sansSolutionList;
+
+    private final StatistiqueDAO statistiqueDAO = new StatistiqueDAO();
+    private Session session;
+    private int loadGeneration; // incrémenté à chaque chargement pour ignorer les réponses périmées
+    private CancellationToken loadToken; // requêtes du chargement en cours
+
+    @FXML
+    public void initialize() {
+        periodeComboBox.getItems().addAll(PERIODE_7, PERIODE_30, PERIODE_90);
+        periodeComboBox.setValue(PERIODE_30);
+        periodeComboBox.valueProperty().addListener((obs, oldValue, newValue) -> loadStatistiques());
+    }
+
+    /**
+     * Prépare la vue (éventuellement réutilisée depuis le ViewRegistry) pour l'utilisateur connecté.
+     */
+    public void bind() {
+        session = Session.current();
+        loadStatistiques();
+    }
+
+    @FXML
+    private void refreshStatistiques() {
+        loadStatistiques();
+    }
+
+    @FXML
+    private void handleBack() {
+        Router.back();
+    }
+
+    /**
+     * Écran abandonné : les requêtes du tableau de bord encore en cours sont annulées.
+     */
+    @Override
+    public void onLeave() {
+        loadGeneration++;
+        if (loadToken != null) {
+            loadToken.cancel();
+            loadToken = null;
+        }
+    }
+
+    /**
+     * Lit le tableau de bord en arrière-plan puis remplit les graphiques.
+     */
+    private void loadStatistiques() {
+        if (session == null) {
+            return;
+        }
+        int generation = ++loadGeneration;
+        // Les requêtes de la période précédente ne servent plus
+        if (loadToken != null) {
+            loadToken.cancel();
+        }
+        CancellationToken token = new CancellationToken(AppConfig.get().getInt(AppConfig.QUERY_STATISTICS_TIMEOUT_SECONDS));
+        loadToken = token;
+        int createurId = session.getUserId();
+        int jours = joursDeLaPeriode(periodeComboBox.getValue());
+        resumeLabel.setText("Chargement...");
+
+        Task<TableauDeBord> task = new Task<>() {
+            @Override
+            protected TableauDeBord call() {
+                return token.run(() -> statistiqueDAO.getTableauDeBord(createurId, jours));
+            }
+        };
+        task.setOnSucceeded(event -> {
+            // Une autre période a pu être choisie entre-temps
+            if (generation == loadGeneration) {
+                afficher(task.getValue());
+            }
+        });
+        task.setOnFailed(event -> {
+            if (generation != loadGeneration) {
+                return; // chargement annulé
+            }
+            LOGGER.log(Level.WARNING, "Erreur lors du chargement des statistiques", task.getException());
+            resumeLabel.setText("Impossible de charger les statistiques.");
+        });
+        Thread thread = new Thread(task, "statistiques-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void afficher(TableauDeBord tableau) {
+        int total = 0;
+        XYChart.Series<String, Number> parJour = new XYChart.Series<>();
+        for (Map.Entry<LocalDate, Integer> entry : tableau.getSolutionsParJour().entrySet()) {
+            parJour.getData().add(new XYChart.Data<>(FORMAT_JOUR.format(entry.getKey()), entry.getValue()));
+            total += entry.getValue();
+        }
+        parJourChart.getData().setAll(List.of(parJour));
+
+        XYChart.Series<String, Number> parExercice = new XYChart.Series<>();
+        for (Map.Entry<String, Integer> entry : tableau.getSolutionsParExercice().entrySet()) {
+            parExercice.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
+        }
+        parExerciceChart.getData().setAll(List.of(parExercice));
+
+        List<String> contributeurs = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : tableau.getMeilleursContributeurs().entrySet()) {
+            contributeurs.add(entry.getKey() + " — " + entry.getValue() + " solution(s)");
+        }
+        contributeursList.getItems().setAll(contributeurs);
+        sansSolutionList.getItems().setAll(tableau.getExercicesSansSolution());
+
+        resumeLabel.setText(total + " solution(s) déposée(s) sur la période, environ "
+                + tableau.getAuteursDistincts() + " auteur(s) distinct(s) depuis le début.");
+    }
+
+    private static int joursDeLaPeriode(String periode) {
+        if (PERIODE_7.equals(periode)) {
+            return 7;
+        }
+        if (PERIODE_90.equals(periode)) {
+            return 90;
+        }
+        return 30;
+    }
+}
@@ -1,21 +1,33 @@
 package controllers;
 
 import dao.UtilisateurDAO;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import models.Utilisateur;
+import utils.AppConfig;
+import utils.CancellationToken;
+import utils.CatalogueExporter;
+import utils.CatalogueImporter;
+import utils.Session;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,27 +35,32 @@ import java.util.logging.Logger;
 /**
  * Controller for user management (admin only)
  */
-public class UserManagementController {
+public class UserManagementController implements Router.Leavable {
     private static final Logger LOGGER = Logger.getLogger(UserManagementController.class.getName());
     
-    @FXML private TableView<Utilisateur> userTable;
-    @FXML private TableColumn<Utilisateur, Integer> idColumn;
-    @FXML private TableColumn<Utilisateur, String> nomColumn;
-    @FXML private TableColumn<Utilisateur, String> emailColumn;
-    @FXML private TableColumn<Utilisateur, String> roleColumn;
-    @FXML private TableColumn<Utilisateur, Void> actionsColumn;
+    @FXML private TableView<UtilisateurRow> userTable;
+    @FXML private TableColumn<UtilisateurRow, Integer> idColumn;
+    @FXML private TableColumn<UtilisateurRow, String> nomColumn;
+    @FXML private TableColumn<UtilisateurRow, String> emailColumn;
+    @FXML private TableColumn<UtilisateurRow, String> roleColumn;
+    @FXML private TableColumn<UtilisateurRow, Void> actionsColumn;
     @FXML private Label statusLabel;
     
-    private int adminId;
+    private static final String EXPORT_CSV = "CSV";
+    private static final String EXPORT_CSV_GZ = "CSV (gzip)";
+    private static final String EXPORT_JSONL = "JSON Lines";
+    private static final String EXPORT_JSONL_GZ = "JSON Lines (gzip)";
+    
+    private Session session;
     private final UtilisateurDAO utilisateurDAO = new UtilisateurDAO();
-    private final ObservableList<Utilisateur> userList = FXCollections.observableArrayList();
+    private final ObservableList<UtilisateurRow> userList = FXCollections.observableArrayList();
+    private CancellationToken loadToken; // query of the user list load in progress
     
     /**
-     * Sets the admin ID and loads all users.
+     * Binds the view to the logged-in administrator and loads all users.
      */
-    public void setAdminId(int adminId) {
-        this.adminId = adminId;
-        LOGGER.info("Admin ID set to: " + adminId);
+    public void bind() {
+        session = Session.current();
         loadUsers();
     }
     
@@ -57,58 +74,66 @@ public class UserManagementController {
      * Configure the table view columns and cell factories.
      */
     private void configureTableView() {
-        idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        nomColumn.setCellValueFactory(new PropertyValueFactory<>("nom"));
-        emailColumn.setCellValueFactory(new PropertyValueFactory<>("email"));
-        roleColumn.setCellValueFactory(new PropertyValueFactory<>("role"));
+        // Typed accessors on precomputed rows, no reflective property lookup
+        idColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getId()));
+        nomColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getNom()));
+        emailColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getEmail()));
+        roleColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getRole()));
         
-        // Add action buttons
+        // Add action buttons (an admin cannot delete themselves)
         actionsColumn.setCellFactory(param -> {
-            return new TableCell<>() {
-                private final Button viewButton = new Button("Voir");
-                private final Button deleteButton = new Button("Supprimer");
-                
-                {
-                    viewButton.getStyleClass().add("button-blue");
-                    deleteButton.getStyleClass().add("button-red");
-                    
-                    viewButton.setOnAction(event -> showUserDetails(getTableRow().getItem()));
-                    deleteButton.setOnAction(event -> confirmAndDeleteUser(getTableRow().getItem()));
-                }
-                
-                @Override
-                protected void updateItem(Void item, boolean empty) {
-                    super.updateItem(item, empty);
-                    
-                    if (empty) {
-                        setGraphic(null);
-                        return;
-                    }
-                    
-                    Utilisateur user = getTableRow().getItem();
-                    if (user == null) {
-                        setGraphic(null);
-                        return;
-                    }
-                    
-                    // Don't allow admin to delete themselves
-                    if (user.getId() == adminId) {
-                        setGraphic(new HBox(10, viewButton));
-                    } else {
-                        setGraphic(new HBox(10, viewButton, deleteButton));
-                    }
-                }
-            };
+            ActionCell<UtilisateurRow> cell = new ActionCell<>(10);
+            cell.addButton("Voir", "button-blue", row -> showUserDetails(row.getUtilisateur()), null);
+            cell.addButton("Supprimer", "button-red", this::confirmAndDeleteUser,
+                    row -> row.getUtilisateur().getId() != session.getUserId());
+            return cell;
         });
+        userTable.setItems(userList);
     }
     
     /**
-     * Load all users from the database.
+     * Cancel the user list query still running when the screen is left.
+     */
+    @Override
+    public void onLeave() {
+        if (loadToken != null) {
+            loadToken.cancel();
+            loadToken = null;
+        }
+    }
+    
+    /**
+     * Load all users from the database; the query and the rows are built off the FX thread.
+     * A load still running is cancelled first.
      */
     private void loadUsers() {
         userList.clear();
-        userList.addAll(utilisateurDAO.getAllUsers());
-        userTable.setItems(userList);
+        if (loadToken != null) {
+            loadToken.cancel();
+        }
+        CancellationToken token = new CancellationToken(AppConfig.get().getInt(AppConfig.QUERY_LIST_TIMEOUT_SECONDS));
+        loadToken = token;
+        Task<List<UtilisateurRow>> task = new Task<>() {
+            @Override
+            protected List<UtilisateurRow> call() {
+                return token.run(() -> UtilisateurRow.of(utilisateurDAO.getAllUsers()));
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if (!token.isCancelled()) {
+                userList.setAll(task.getValue());
+            }
+        });
+        task.setOnFailed(event -> {
+            if (token.isCancelled()) {
+                return;
+            }
+            LOGGER.log(Level.SEVERE, "Error loading users", task.getException());
+            showStatus("Erreur: " + task.getException().getMessage(), true);
+        });
+        Thread thread = new Thread(task, "users-load");
+        thread.setDaemon(true);
+        thread.start();
     }
     
     /**
@@ -136,8 +161,9 @@ public class UserManagementController {
     /**
      * Confirm and delete a user.
      */
-    private void confirmAndDeleteUser(Utilisateur user) {
-        if (user.getId() == adminId) {
+    private void confirmAndDeleteUser(UtilisateurRow row) {
+        Utilisateur user = row.getUtilisateur();
+        if (user.getId() == session.getUserId()) {
             showStatus("Vous ne pouvez pas supprimer votre propre compte.", true);
             return;
         }
@@ -145,24 +171,201 @@ public class UserManagementController {
         Alert confirmation = new Alert(Alert.AlertType.CONFIRMATION);
         confirmation.setTitle("Confirmation");
         confirmation.setHeaderText("Supprimer cet utilisateur ?");
-        confirmation.setContentText("Cette action est irréversible.");
+        confirmation.setContentText("Cette action est irréversible. Ses exercices et toutes les solutions associées seront également supprimés.");
         
         Optional<ButtonType> result = confirmation.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            try {
-                boolean success = utilisateurDAO.deleteUser(user.getId());
-                
-                if (success) {
-                    userList.remove(user);
+            // The cascade runs in small batches and may take a while: keep it off the FX thread
+            Task<Boolean> deleteTask = new Task<>() {
+                @Override
+                protected Boolean call() {
+                    return utilisateurDAO.deleteUserCascade(user.getId(), 0);
+                }
+            };
+            
+            deleteTask.setOnSucceeded(event -> {
+                if (deleteTask.getValue()) {
+                    userList.remove(row);
                     showStatus("Utilisateur supprimé avec succès.", false);
                 } else {
                     showStatus("Erreur lors de la suppression de l'utilisateur.", true);
                 }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Error deleting user", e);
-                showStatus("Erreur: " + e.getMessage(), true);
+            });
+            deleteTask.setOnFailed(event -> {
+                LOGGER.log(Level.SEVERE, "Error deleting user", deleteTask.getException());
+                showStatus("Erreur: " + deleteTask.getException().getMessage(), true);
+            });
+            
+            showStatus("Suppression en cours...", false);
+            Thread thread = new Thread(deleteTask, "user-delete");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+    
+    /**
+     * Export the whole exercise and solution catalogue to a directory.
+     * Rows are streamed from the database to disk; a progress window shows the throughput.
+     */
+    @FXML
+    private void exportCatalogue() {
+        ChoiceDialog<String> formatDialog = new ChoiceDialog<>(EXPORT_CSV, EXPORT_CSV, EXPORT_CSV_GZ, EXPORT_JSONL, EXPORT_JSONL_GZ);
+        formatDialog.setTitle("Exporter le catalogue");
+        formatDialog.setHeaderText("Choisissez le format d'export");
+        formatDialog.setContentText("Format :");
+        Optional<String> choice = formatDialog.showAndWait();
+        if (choice.isEmpty()) {
+            return;
+        }
+        
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Dossier de destination");
+        File directory = chooser.showDialog(userTable.getScene().getWindow());
+        if (directory == null) {
+            return;
+        }
+        
+        CatalogueExporter.Format format = choice.get().startsWith("JSON")
+                ? CatalogueExporter.Format.JSON_LINES : CatalogueExporter.Format.CSV;
+        boolean gzip = choice.get().endsWith("(gzip)");
+        Path exercicesFile = directory.toPath().resolve(CatalogueExporter.fileName("exercices", format, gzip));
+        Path solutionsFile = directory.toPath().resolve(CatalogueExporter.fileName("solutions", format, gzip));
+        
+        Task<Long> exportTask = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                CatalogueExporter exporter = new CatalogueExporter();
+                CatalogueExporter.ProgressListener listener = (table, rows, rowsPerSecond) ->
+                        updateMessage(String.format("Table %s : %,d lignes (%,.0f lignes/s)", table, rows, rowsPerSecond));
+                return exporter.exportExercices(exercicesFile, format, gzip, listener)
+                        + exporter.exportSolutions(solutionsFile, format, gzip, listener);
             }
+        };
+        
+        Stage progressStage = createProgressStage(exportTask);
+        exportTask.setOnSucceeded(event -> {
+            progressStage.close();
+            showStatus("Export terminé : " + exportTask.getValue() + " lignes dans " + directory, false);
+        });
+        exportTask.setOnFailed(event -> {
+            progressStage.close();
+            LOGGER.log(Level.SEVERE, "Error exporting catalogue", exportTask.getException());
+            showStatus("Erreur lors de l'export: " + exportTask.getException().getMessage(), true);
+        });
+        exportTask.setOnCancelled(event -> {
+            progressStage.close();
+            showStatus("Export annulé.", true);
+        });
+        
+        Thread thread = new Thread(exportTask, "catalogue-export");
+        thread.setDaemon(true);
+        thread.start();
+        progressStage.show();
+    }
+    
+    /**
+     * Import a catalogue previously exported with {@link #exportCatalogue()}.
+     * The directory must contain an exercices.* and/or a solutions.* file.
+     */
+    @FXML
+    private void importCatalogue() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Dossier à importer");
+        File directory = chooser.showDialog(userTable.getScene().getWindow());
+        if (directory == null) {
+            return;
         }
+        
+        Path exercicesFile = findCatalogueFile(directory.toPath(), "exercices");
+        Path solutionsFile = findCatalogueFile(directory.toPath(), "solutions");
+        if (exercicesFile == null && solutionsFile == null) {
+            showStatus("Aucun fichier exercices.* ou solutions.* dans " + directory, true);
+            return;
+        }
+        
+        Task<String> importTask = new Task<>() {
+            @Override
+            protected String call() throws Exception {
+                CatalogueImporter importer = new CatalogueImporter();
+                CatalogueExporter.ProgressListener listener = (table, rows, rowsPerSecond) ->
+                        updateMessage(String.format("Table %s : %,d lignes (%,.0f lignes/s)", table, rows, rowsPerSecond));
+                long imported = 0;
+                long rejected = 0;
+                // Exercises first, so that the solutions can be attached to the new exercise ids
+                if (exercicesFile != null) {
+                    CatalogueImporter.Result result = importer.importExercices(exercicesFile, listener);
+                    imported += result.getImported();
+                    rejected += result.getRejected();
+                }
+                if (solutionsFile != null) {
+                    CatalogueImporter.Result result = importer.importSolutions(solutionsFile, listener);
+                    imported += result.getImported();
+                    rejected += result.getRejected();
+                }
+                return "Import terminé : " + imported + " lignes importées, " + rejected + " rejetées.";
+            }
+        };
+        
+        Stage progressStage = createProgressStage(importTask);
+        progressStage.setTitle("Import en cours");
+        importTask.setOnSucceeded(event -> {
+            progressStage.close();
+            showStatus(importTask.getValue(), false);
+        });
+        importTask.setOnFailed(event -> {
+            progressStage.close();
+            LOGGER.log(Level.SEVERE, "Error importing catalogue", importTask.getException());
+            showStatus("Erreur lors de l'import: " + importTask.getException().getMessage(), true);
+        });
+        importTask.setOnCancelled(event -> {
+            progressStage.close();
+            showStatus("Import annulé : les lots déjà validés sont conservés.", true);
+        });
+        
+        Thread thread = new Thread(importTask, "catalogue-import");
+        thread.setDaemon(true);
+        thread.start();
+        progressStage.show();
+    }
+    
+    /**
+     * Find the export file of a table in a directory, whatever its format.
+     */
+    private Path findCatalogueFile(Path directory, String table) {
+        for (CatalogueExporter.Format format : CatalogueExporter.Format.values()) {
+            for (boolean gzip : new boolean[] {false, true}) {
+                Path file = directory.resolve(CatalogueExporter.fileName(table, format, gzip));
+                if (Files.isRegularFile(file)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Build a small modal window that follows the message of a running task.
+     */
+    private Stage createProgressStage(Task<?> task) {
+        Label messageLabel = new Label();
+        messageLabel.textProperty().bind(task.messageProperty());
+        ProgressIndicator indicator = new ProgressIndicator();
+        Button cancelButton = new Button("Annuler");
+        cancelButton.getStyleClass().add("button-red");
+        cancelButton.setOnAction(event -> task.cancel(true));
+        
+        VBox content = new VBox(15, indicator, messageLabel, cancelButton);
+        content.setAlignment(Pos.CENTER);
+        content.setPadding(new Insets(20));
+        
+        Stage stage = new Stage();
+        stage.setTitle("Export en cours");
+        stage.initModality(Modality.APPLICATION_MODAL);
+        Scene scene = new Scene(content, 400, 180);
+        scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
+        stage.setScene(scene);
+        stage.setOnCloseRequest(event -> task.cancel(true));
+        return stage;
     }
     
     /**
@@ -198,10 +401,7 @@ public class UserManagementController {
      */
     @FXML
     private void handleBack() {
-        Stage stage = (Stage) userTable.getScene().getWindow();
-        if (stage != null) {
-            stage.close();
-        }
+        Router.back();
     }
     
     /**
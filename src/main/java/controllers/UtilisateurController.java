@@ -1,6 +1,7 @@
 package controllers;
 
-import dao.UtilisateurDAO;
+import dao.AuthenticationService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -10,8 +11,13 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import models.Utilisateur;
 import utils.IconHelper;
+import utils.LoginThrottle;
+import utils.Session;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,17 +38,10 @@ public class UtilisateurController {
     @FXML private Label statusLabel;
     
     // === Attributs principaux ===
-    private final UtilisateurDAO utilisateurDAO = new UtilisateurDAO();
-    private Stage currentStage;
+    private final AuthenticationService authenticationService = new AuthenticationService();
+    private boolean loginEnCours;
     
     // === Constructeur et initialisation ===
-    /**
-     * Définit la fenêtre courante pour la navigation.
-     */
-    public void setCurrentStage(Stage stage) {
-        this.currentStage = stage;
-    }
-
     @FXML
     /**
      * Initialise la vue : configure le ComboBox et vide le statut.
@@ -74,19 +73,39 @@ public class UtilisateurController {
             return;
         }
 
+        if (loginEnCours) {
+            return; // Double clic : la première tentative est toujours en cours
+        }
+        loginEnCours = true;
+        showStatus("Connexion en cours...", false);
+
+        // Vérification du mot de passe hors du thread de l'interface
+        CompletableFuture<Utilisateur> resultat;
         try {
-            Utilisateur utilisateur = utilisateurDAO.findByEmailAndPasswordAndRole(email, password, role);
-            
-            if (utilisateur != null) {
-                int userId = utilisateur.getId();
-                openMatiereSelection(userId, role);
+            resultat = authenticationService.authenticate(email, password, role);
+        } catch (RejectedExecutionException e) {
+            loginEnCours = false;
+            showStatus("Trop de connexions simultanées. Veuillez réessayer dans un instant.", true);
+            return;
+        }
+        resultat.whenComplete((utilisateur, erreur) -> Platform.runLater(() -> {
+            loginEnCours = false;
+            Throwable cause = erreur instanceof CompletionException ? erreur.getCause() : erreur;
+            if (cause instanceof LoginThrottle.ThrottledException) {
+                long attente = ((LoginThrottle.ThrottledException) cause).getRetryAfterSeconds();
+                showStatus("Trop de tentatives de connexion. Réessayez dans " + attente + " s.", true);
+            } else if (cause instanceof AuthenticationService.DatabaseUnavailableException) {
+                LOGGER.log(Level.WARNING, "Database unreachable during login", cause);
+                showStatus("Base de données injoignable. Veuillez réessayer dans un instant.", true);
+            } else if (erreur != null) {
+                LOGGER.log(Level.SEVERE, "Error during login", erreur);
+                showStatus("Erreur de connexion: " + erreur.getMessage(), true);
+            } else if (utilisateur != null) {
+                openMatiereSelection(utilisateur);
             } else {
                 showStatus("Identifiants incorrects. Veuillez vérifier votre email et mot de passe.", true);
             }
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error during login", e);
-            showStatus("Erreur de connexion: " + e.getMessage(), true);
-        }
+        }));
     }
     
     /**
@@ -130,25 +149,11 @@ public class UtilisateurController {
     /**
      * Ouvre l'écran de sélection de matière après connexion.
      */
-    private void openMatiereSelection(int userId, String role) {
+    private void openMatiereSelection(Utilisateur utilisateur) {
+        Session.open(utilisateur);
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/matiere_view.fxml"));
-            Parent root = loader.load();
-
-            MatiereController controller = loader.getController();
-            controller.setUserId(userId);
-            controller.setUserRole(role);
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Sélection de matière");
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
-            
-            closeCurrentStage();
+            Router.<MatiereController>reset(ViewRegistry.MATIERE_SELECTION, "Sélection de matière",
+                    MatiereController::bind);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error opening matiere selection", e);
             showStatus("Impossible d'ouvrir l'écran de sélection de matière: " + e.getMessage(), true);
@@ -161,39 +166,13 @@ public class UtilisateurController {
     @FXML
     private void handleLogout() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/login.fxml"));
-            Parent root = loader.load();
-            
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-            
-            Stage stage = new Stage();
-            stage.setTitle("Connexion");
-            stage.setScene(scene);
-            IconHelper.setStageIcon(stage);
-            stage.show();
-            
-            closeCurrentStage();
+            Router.showLogin();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error logging out", e);
             showAlert(Alert.AlertType.ERROR, "Erreur", "Déconnexion impossible", e.getMessage());
         }
     }
     
-    /**
-     * Ferme la fenêtre courante.
-     */
-    private void closeCurrentStage() {
-        if (currentStage != null) {
-            currentStage.close();
-        } else if (emailField != null) {
-            Stage stage = (Stage) emailField.getScene().getWindow();
-            if (stage != null) {
-                stage.close();
-            }
-        }
-    }
-    
     /**
      * Affiche une boîte de dialogue d'alerte.
      */
@@ -0,0 +1,39 @@
+package controllers;
+
+import models.Utilisateur;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ligne de la table des utilisateurs, avec ses textes affichés calculés une fois.
+ */
+final class UtilisateurRow {
+    private final Utilisateur utilisateur;
+    private final Integer id;
+    private final String nom;
+    private final String email;
+    private final String role;
+
+    private UtilisateurRow(Utilisateur utilisateur) {
+        this.utilisateur = utilisateur;
+        this.id = utilisateur.getId();
+        this.nom = utilisateur.getNom() != null ? utilisateur.getNom() : "";
+        this.email = utilisateur.getEmail();
+        this.role = utilisateur.getRole();
+    }
+
+    static List<UtilisateurRow> of(List<Utilisateur> utilisateurs) {
+        List<UtilisateurRow> rows = new ArrayList<>(utilisateurs.size());
+        for (Utilisateur utilisateur : utilisateurs) {
+            rows.add(new UtilisateurRow(utilisateur));
+        }
+        return rows;
+    }
+
+    Utilisateur getUtilisateur() { return utilisateur; }
+    Integer getId() { return id; }
+    String getNom() { return nom; }
+    String getEmail() { return email; }
+    String getRole() { return role; }
+}
@@ -0,0 +1,121 @@
+package controllers;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registre des vues principales de l'application.
+ *
+ * Chaque fichier FXML n'est analysé qu'une fois : le graphe de nœuds et son contrôleur sont
+ * gardés en mémoire et réutilisés à chaque navigation, le contrôleur recevant simplement les
+ * nouvelles données (utilisateur, matière, exercice...). Une vue déjà utilisée par le
+ * {@link Router} (affichée ou dans l'historique) ne peut pas être partagée : dans ce cas une
+ * instance supplémentaire est chargée.
+ *
+ * Les vues contiennent des données propres à l'utilisateur : {@link #clear()} doit être
+ * appelé à la déconnexion.
+ */
+public final class ViewRegistry {
+    private static final Logger LOGGER = Logger.getLogger(ViewRegistry.class.getName());
+
+    public static final String MATIERE_SELECTION = "/fxml/matiere_view.fxml";
+    public static final String MATIERE_MANAGEMENT = "/fxml/matiere_management.fxml";
+    public static final String EXERCICES = "/fxml/exercice_view.fxml";
+    public static final String SOLUTIONS = "/fxml/solution_view.fxml";
+    public static final String USER_MANAGEMENT = "/fxml/user_management.fxml";
+    public static final String STATISTICS = "/fxml/statistiques_view.fxml";
+
+    private static final Map<String, View<?>> CACHE = new HashMap<>();
+
+    /**
+     * Une vue chargée : sa racine et son contrôleur.
+     *
+     * @param <C> le type du contrôleur
+     */
+    public static final class View<C> {
+        private final Parent root;
+        private final C controller;
+        private boolean retained;
+
+        private View(Parent root, C controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+
+        public Parent getRoot() {
+            return root;
+        }
+
+        public C getController() {
+            return controller;
+        }
+
+        void retain() {
+            retained = true;
+        }
+
+        void release() {
+            retained = false;
+        }
+
+        private boolean isInUse() {
+            return retained || root.getScene() != null;
+        }
+    }
+
+    private ViewRegistry() {
+    }
+
+    /**
+     * Renvoie la vue en cache pour ce FXML, ou la charge si elle n'existe pas encore
+     * (ou si elle est déjà utilisée).
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> View<C> acquire(String fxml) throws IOException {
+        View<?> cached = CACHE.get(fxml);
+        if (cached != null && !cached.isInUse()) {
+            return (View<C>) cached;
+        }
+        View<C> view = load(fxml);
+        if (cached == null) {
+            CACHE.put(fxml, view);
+        }
+        return view;
+    }
+
+    /**
+     * Charge à l'avance les vues indiquées pour que leur première ouverture soit immédiate.
+     */
+    public static void preload(String... fxmls) {
+        for (String fxml : fxmls) {
+            if (!CACHE.containsKey(fxml)) {
+                try {
+                    CACHE.put(fxml, load(fxml));
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not preload " + fxml, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Oublie toutes les vues en cache (à la déconnexion).
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static <C> View<C> load(String fxml) throws IOException {
+        long start = System.nanoTime();
+        FXMLLoader loader = new FXMLLoader(ViewRegistry.class.getResource(fxml));
+        Parent root = loader.load();
+        LOGGER.fine("Loaded " + fxml + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new View<>(root, loader.getController());
+    }
+}
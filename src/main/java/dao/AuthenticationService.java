@@ -0,0 +1,124 @@
+package dao;
+
+import models.Utilisateur;
+import utils.DatabaseConnection;
+import utils.LoginThrottle;
+import utils.PasswordHasher;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentification des utilisateurs hors du thread de l'interface.
+ *
+ * La vérification d'un mot de passe (PBKDF2) coûte volontairement cher : elle s'exécute sur
+ * un petit pool de threads dédié et borné. Lors d'une rafale de connexions en début de séance,
+ * au plus VERIFICATEURS tentatives occupent une connexion JDBC en même temps ; les suivantes
+ * attendent dans une file limitée, puis sont refusées immédiatement si la file est pleine.
+ * L'interface et les autres requêtes ne sont donc jamais affamées.
+ *
+ * Avant d'arriver au pool, chaque tentative passe par {@link LoginThrottle} : limitation par
+ * compte et par poste, refus d'une seconde tentative simultanée sur le même compte, et
+ * pas de requête pour un email récemment reconnu comme inconnu. Ces limites sont locales
+ * au processus : elles bornent ce que chaque poste envoie à la base.
+ *
+ * Un email inconnu coûte le même calcul PBKDF2 qu'un mauvais mot de passe (vérification contre
+ * un hachage fictif) : le temps de réponse ne révèle pas si le compte existe. Seule une requête
+ * exécutée sans trouver de compte le fait retenir comme inconnu ; une base injoignable fait
+ * échouer la tentative avec {@link DatabaseUnavailableException}.
+ */
+public class AuthenticationService {
+    private static final int VERIFICATEURS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int FILE_ATTENTE = 64;
+
+    private static final ThreadPoolExecutor EXECUTEUR = new ThreadPoolExecutor(
+            VERIFICATEURS, VERIFICATEURS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(FILE_ATTENTE),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-verifier");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    static {
+        EXECUTEUR.allowCoreThreadTimeOut(true);
+    }
+
+    // Nom du poste, clé de limitation pour les tentatives faites depuis cette application
+    private static final String POSTE_LOCAL = nomDuPoste();
+
+    /**
+     * La base n'a pas pu être interrogée : rien n'est connu des identifiants saisis.
+     */
+    public static final class DatabaseUnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        DatabaseUnavailableException(SQLException cause) {
+            super("Base de données injoignable", cause);
+        }
+    }
+
+    private final UtilisateurDAO utilisateurDAO = new UtilisateurDAO();
+    private final LoginThrottle throttle = LoginThrottle.get();
+
+    /**
+     * Lance l'authentification en arrière-plan.
+     *
+     * @return un future complété avec l'utilisateur, ou null si les identifiants sont incorrects ;
+     *         il échoue avec {@link LoginThrottle.ThrottledException} si la tentative est refusée,
+     *         avec {@link DatabaseUnavailableException} si la base est injoignable
+     * @throws java.util.concurrent.RejectedExecutionException si trop de connexions sont déjà en attente
+     */
+    public CompletableFuture<Utilisateur> authenticate(String email, String password, String role) {
+        try {
+            throttle.begin(email, POSTE_LOCAL);
+        } catch (LoginThrottle.ThrottledException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> verifier(email, password, role), EXECUTEUR);
+        } catch (RejectedExecutionException e) {
+            throttle.finish(email, false);
+            throw e;
+        }
+    }
+
+    private Utilisateur verifier(String email, String password, String role) {
+        boolean succes = false;
+        try {
+            Utilisateur user;
+            try {
+                user = throttle.isKnownUnknown(email, role) ? null
+                        : utilisateurDAO.findByEmailAndRole(email, role);
+            } catch (SQLException e) {
+                if (DatabaseConnection.isConnectionFailure(e)) {
+                    throw new DatabaseUnavailableException(e);
+                }
+                throw new CompletionException(e);
+            }
+            if (user == null) {
+                PasswordHasher.verifyUnknown(password);
+                throttle.rememberUnknown(email, role);
+                return null;
+            }
+            succes = utilisateurDAO.verifierMotDePasse(user, password);
+            return succes ? user : null;
+        } finally {
+            throttle.finish(email, succes);
+        }
+    }
+
+    private static String nomDuPoste() {
+        String nom = System.getenv("COMPUTERNAME"); // Windows
+        if (nom == null || nom.isEmpty()) {
+            nom = System.getenv("HOSTNAME");
+        }
+        return nom == null || nom.isEmpty() ? "localhost" : nom;
+    }
+}
@@ -0,0 +1,138 @@
+package dao;
+
+import models.Exercice;
+import models.Matiere;
+import utils.CatalogueSnapshot;
+import utils.DatabaseConnection;
+import utils.LocalReplica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compteur de modifications du catalogue (matières et exercices) côté serveur.
+ *
+ * Chaque écriture faite par les DAO incrémente la ligne unique de la table catalogue_version ;
+ * le client compare ce numéro à celui de son instantané local pour savoir s'il doit le recharger.
+ * La table et sa ligne sont créées par la migration V4__catalogue_version.sql.
+ */
+public class CatalogueVersionDAO {
+    private static final Logger LOGGER = Logger.getLogger(CatalogueVersionDAO.class.getName());
+
+    /**
+     * Renvoie la version actuelle du catalogue sur le serveur.
+     *
+     * @throws SQLException si la base est injoignable
+     */
+    public static long getVersion() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT version FROM catalogue_version WHERE id = 1");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Résumé du catalogue servant à construire l'instantané local.
+     */
+    public static final class Resume {
+        private final long version;
+        private final List<Matiere> matieres;
+        private final List<Exercice> exercices;
+
+        private Resume(long version, List<Matiere> matieres, List<Exercice> exercices) {
+            this.version = version;
+            this.matieres = matieres;
+            this.exercices = exercices;
+        }
+
+        public long getVersion() { return version; }
+        public List<Matiere> getMatieres() { return matieres; }
+        public List<Exercice> getExercices() { return exercices; }
+    }
+
+    /**
+     * Lit la version du catalogue, les matières avec leur nombre d'exercices et le résumé des
+     * exercices (sans description) dans une même transaction en lecture seule : les lignes
+     * renvoyées sont exactement celles de la version renvoyée. La lecture va toujours au
+     * serveur, jamais à la réplique locale.
+     *
+     * @throws SQLException si la base est injoignable
+     */
+    public static Resume lireResume() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int isolation = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ); // Un seul instantané pour les trois lectures
+            conn.setAutoCommit(false);
+            try {
+                long version;
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT version FROM catalogue_version WHERE id = 1");
+                     ResultSet rs = stmt.executeQuery()) {
+                    version = rs.next() ? rs.getLong(1) : 0;
+                }
+                List<Matiere> matieres = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT id, nom, nb_exercices FROM matiere ORDER BY nom");
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Matiere matiere = new Matiere(rs.getInt(1), rs.getString(2));
+                        matiere.setNbExercices(rs.getInt(3));
+                        matieres.add(matiere);
+                    }
+                }
+                List<Exercice> exercices = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT id, titre, date_creation, matiere_id, createur_id FROM exercice");
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp date = rs.getTimestamp(3);
+                        exercices.add(new Exercice(rs.getInt(1), rs.getString(2), null,
+                                date != null ? date.toLocalDateTime() : LocalDateTime.now(),
+                                rs.getInt(4), rs.getInt(5)));
+                    }
+                }
+                conn.commit();
+                return new Resume(version, matieres, exercices);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(isolation);
+            }
+        }
+    }
+
+    /**
+     * Signale une modification du catalogue : les portées de la réplique locale sont invalidées,
+     * l'instantané est marqué périmé et la version serveur est incrémentée.
+     * À appeler après la validation de l'écriture ; un échec ici n'annule pas l'écriture.
+     *
+     * @param conn la connexion ayant servi à l'écriture
+     * @param scopes les portées de LocalReplica touchées
+     */
+    static void signalerModification(Connection conn, String... scopes) {
+        for (String scope : scopes) {
+            LocalReplica.get().invalidate(scope);
+        }
+        CatalogueSnapshot.get().markOutdated();
+        try {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE catalogue_version SET version = version + 1 WHERE id = 1")) {
+                stmt.executeUpdate();
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not increment the catalogue version", e);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package dao;
+
+import utils.DatabaseConnection;
+import utils.LocalReplica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compteurs matérialisés : nombre d'exercices par matière (matiere.nb_exercices) et nombre
+ * de solutions par exercice (exercice.nb_solutions).
+ *
+ * Le nombre d'exercices est mis à jour dans la même transaction que l'insertion ou la
+ * suppression, après avoir écrit la ligne enfant : la ligne parente reste verrouillée jusqu'à
+ * la validation, donc deux écritures concurrentes ne perdent pas d'incrément. Il reste exact
+ * à tout instant, ce dont MatiereDAO.deleteMatiere a besoin (nb_exercices = 0).
+ *
+ * Le nombre de solutions, lui, change à chaque dépôt : verrouiller l'exercice à chaque fois en
+ * ferait un point de contention pendant un examen. Chaque écriture insère seulement une ligne
+ * de variation dans exercice_solutions_delta (table en ajout seul, sans verrou partagé), et
+ * une consolidation toutes les quelques secondes reporte les variations sur exercice.nb_solutions
+ * par exercice, puis les supprime. Le total affiché peut donc retarder de quelques secondes.
+ *
+ * Une réconciliation périodique corrige les écarts laissés par les écritures faites hors de
+ * l'application (console SQL, scripts) : un agrégat sans verrou repère les lignes fausses,
+ * puis chacune est recomptée et corrigée sous verrou, variations en attente déduites. Les
+ * colonnes sont créées par V3__compteurs.sql, la table des variations par V7.
+ */
+public class CompteurDAO {
+    private static final Logger LOGGER = Logger.getLogger(CompteurDAO.class.getName());
+
+    private static final Compteur EXERCICES_PAR_MATIERE =
+            new Compteur("matiere", "nb_exercices", "exercice", "matiere_id", null);
+    private static final Compteur SOLUTIONS_PAR_EXERCICE =
+            new Compteur("exercice", "nb_solutions", "solution", "exercice_id", "exercice_solutions_delta");
+    // Variations reportées par transaction de consolidation
+    private static final int TAILLE_CONSOLIDATION = 1000;
+    private static final long PERIODE_CONSOLIDATION_SECONDES = 5;
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Un compteur : la colonne de la table parente, la clé étrangère de la table enfant et,
+     * s'il est tenu par variations, la table de celles-ci (même clé étrangère, colonne delta).
+     * Les noms sont des constantes, jamais des saisies, et peuvent donc entrer dans le SQL.
+     */
+    private static final class Compteur {
+        private final String parent;
+        private final String colonne;
+        private final String enfant;
+        private final String cle;
+        private final String variations;
+
+        private Compteur(String parent, String colonne, String enfant, String cle, String variations) {
+            this.parent = parent;
+            this.colonne = colonne;
+            this.enfant = enfant;
+            this.cle = cle;
+            this.variations = variations;
+        }
+    }
+
+    /**
+     * Ajoute delta au nombre d'exercices d'une matière.
+     * À appeler dans la transaction qui a inséré ou supprimé les exercices.
+     */
+    static void ajusterExercices(Connection conn, int matiereId, int delta) throws SQLException {
+        ajuster(conn, EXERCICES_PAR_MATIERE, matiereId, delta);
+    }
+
+    /**
+     * Enregistre une variation du nombre de solutions d'un exercice, reportée sur l'exercice
+     * à la prochaine consolidation. À appeler dans la transaction qui a inséré ou supprimé
+     * les solutions ; la ligne de l'exercice n'est pas verrouillée.
+     */
+    static void ajusterSolutions(Connection conn, int exerciceId, int delta) throws SQLException {
+        ajuster(conn, SOLUTIONS_PAR_EXERCICE, exerciceId, delta);
+    }
+
+    /**
+     * Lit l'identifiant d'une ligne parente en verrouillant la ligne enfant, avant de la
+     * supprimer ou de la déplacer (par exemple "SELECT matiere_id FROM exercice WHERE id = ? FOR UPDATE").
+     *
+     * @return l'identifiant lu, ou 0 si la ligne n'existe pas
+     */
+    static int lireParent(Connection conn, String sql, int id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Recompte les compteurs faux et les corrige.
+     *
+     * @return le nombre de lignes corrigées (0 si la base est injoignable)
+     */
+    public static int reconcilier() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return reconcilier(conn);
+        } catch (SQLException e) {
+            if (!DatabaseConnection.isConnectionFailure(e)) {
+                LOGGER.log(Level.WARNING, "Counter reconciliation failed", e);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Reporte les variations en attente sur les compteurs : une transaction courte par lot,
+     * un UPDATE par exercice touché quel que soit le nombre de dépôts.
+     *
+     * @return le nombre de variations reportées (0 si la base est injoignable)
+     */
+    public static int consolider() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int total = 0;
+            int lot;
+            do {
+                lot = consolider(conn, SOLUTIONS_PAR_EXERCICE);
+                total += lot;
+            } while (lot == TAILLE_CONSOLIDATION);
+            if (total > 0) {
+                LocalReplica.get().invalidate(LocalReplica.SCOPE_EXERCICES); // Anciens totaux
+            }
+            return total;
+        } catch (SQLException e) {
+            if (!DatabaseConnection.isConnectionFailure(e)) {
+                LOGGER.log(Level.WARNING, "Counter consolidation failed", e);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Démarre la consolidation des variations et des dépôts en attente des statistiques
+     * (toutes les quelques secondes) et la réconciliation périodique ; sans effet si elles
+     * tournent déjà.
+     */
+    public static synchronized void demarrerReconciliation(long periode, TimeUnit unite) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "counter-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(CompteurDAO::consolider,
+                PERIODE_CONSOLIDATION_SECONDES, PERIODE_CONSOLIDATION_SECONDES, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(StatistiqueDAO::consolider,
+                PERIODE_CONSOLIDATION_SECONDES, PERIODE_CONSOLIDATION_SECONDES, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(CompteurDAO::reconcilier, periode, periode, unite);
+    }
+
+    /**
+     * Arrête la consolidation et la réconciliation périodiques.
+     */
+    public static synchronized void arreterReconciliation() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static int reconcilier(Connection conn) throws SQLException {
+        int corriges = reconcilier(conn, EXERCICES_PAR_MATIERE) + reconcilier(conn, SOLUTIONS_PAR_EXERCICE);
+        if (corriges > 0) {
+            LOGGER.warning("Counter reconciliation corrected " + corriges + " row(s)");
+            // Les copies locales portent les anciens totaux
+            LocalReplica.get().invalidate(LocalReplica.SCOPE_MATIERES);
+            LocalReplica.get().invalidate(LocalReplica.SCOPE_EXERCICES);
+        }
+        return corriges;
+    }
+
+    private static int reconcilier(Connection conn, Compteur compteur) throws SQLException {
+        // Repérage sans verrou : un écart peut venir d'une écriture en cours, il est revérifié ensuite
+        String enAttente = compteur.variations == null ? "0" : "COALESCE(d.n, 0)";
+        String reperage = "SELECT p.id FROM " + compteur.parent + " p LEFT JOIN (SELECT " + compteur.cle
+                + " AS parent_id, COUNT(*) AS n FROM " + compteur.enfant + " GROUP BY " + compteur.cle
+                + ") c ON c.parent_id = p.id"
+                + (compteur.variations == null ? "" : " LEFT JOIN (SELECT " + compteur.cle
+                        + " AS parent_id, SUM(delta) AS n FROM " + compteur.variations + " GROUP BY " + compteur.cle
+                        + ") d ON d.parent_id = p.id")
+                + " WHERE p." + compteur.colonne + " + " + enAttente + " <> COALESCE(c.n, 0)";
+        List<Integer> suspects = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(reperage);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                suspects.add(rs.getInt(1));
+            }
+        }
+        if (suspects.isEmpty()) {
+            return 0;
+        }
+
+        String verrou = "SELECT " + compteur.colonne + " FROM " + compteur.parent + " WHERE id = ? FOR UPDATE";
+        String comptage = "SELECT COUNT(*) FROM " + compteur.enfant + " WHERE " + compteur.cle + " = ?";
+        String attente = compteur.variations == null ? null
+                : "SELECT COALESCE(SUM(delta), 0) FROM " + compteur.variations + " WHERE " + compteur.cle + " = ?";
+        String correction = "UPDATE " + compteur.parent + " SET " + compteur.colonne + " = ? WHERE id = ?";
+        int corriges = 0;
+        conn.setAutoCommit(false);
+        try {
+            for (int id : suspects) {
+                // Le verrou sur la ligne parente attend les écritures en cours ; le comptage qui suit les voit.
+                // Comptage et variations en attente sont lus dans le même instantané : un dépôt validé
+                // figure dans les deux ou dans aucun, et la consolidation attend ce verrou.
+                Integer stocke = null;
+                try (PreparedStatement stmt = conn.prepareStatement(verrou)) {
+                    stmt.setInt(1, id);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            stocke = rs.getInt(1);
+                        }
+                    }
+                }
+                int reel = stocke != null ? lireParent(conn, comptage, id) : 0;
+                if (stocke != null && attente != null) {
+                    reel -= lireParent(conn, attente, id);
+                }
+                if (stocke != null && stocke != reel) {
+                    try (PreparedStatement stmt = conn.prepareStatement(correction)) {
+                        stmt.setInt(1, reel);
+                        stmt.setInt(2, id);
+                        stmt.executeUpdate();
+                    }
+                    corriges++;
+                }
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return corriges;
+    }
+
+    private static void ajuster(Connection conn, Compteur compteur, int id, int delta) throws SQLException {
+        if (delta == 0) {
+            return;
+        }
+        String sql = compteur.variations != null
+                ? "INSERT INTO " + compteur.variations + " (delta, " + compteur.cle + ") VALUES (?, ?)"
+                : "UPDATE " + compteur.parent + " SET " + compteur.colonne + " = " + compteur.colonne + " + ? WHERE id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, delta);
+            stmt.setInt(2, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reporte un lot de variations, les plus anciennes d'abord, et les supprime.
+     * En READ COMMITTED, la lecture verrouillante ne pose pas de verrou d'intervalle : les dépôts
+     * continuent d'ajouter des variations pendant la consolidation. Seules les lignes lues sont
+     * supprimées, par identifiant ; une variation validée entre-temps attend la suivante.
+     *
+     * @return le nombre de variations reportées
+     */
+    private static int consolider(Connection conn, Compteur compteur) throws SQLException {
+        String lecture = "SELECT id, " + compteur.cle + ", delta FROM " + compteur.variations
+                + " ORDER BY id LIMIT " + TAILLE_CONSOLIDATION + " FOR UPDATE";
+        String report = "UPDATE " + compteur.parent + " SET " + compteur.colonne + " = "
+                + compteur.colonne + " + ? WHERE id = ?";
+        String suppression = "DELETE FROM " + compteur.variations + " WHERE id = ?";
+        int isolation = conn.getTransactionIsolation();
+        conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        conn.setAutoCommit(false);
+        try {
+            List<Long> lues = new ArrayList<>();
+            Map<Integer, Integer> parParent = new TreeMap<>(); // Ordre des identifiants : ordre des verrous
+            try (PreparedStatement stmt = conn.prepareStatement(lecture);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lues.add(rs.getLong(1));
+                    parParent.merge(rs.getInt(2), rs.getInt(3), Integer::sum);
+                }
+            }
+            if (lues.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(report)) {
+                for (Map.Entry<Integer, Integer> entry : parParent.entrySet()) {
+                    if (entry.getValue() != 0) {
+                        stmt.setInt(1, entry.getValue());
+                        stmt.setInt(2, entry.getKey());
+                        stmt.addBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(suppression)) {
+                for (long id : lues) {
+                    stmt.setLong(1, id);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+            return lues.size();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            conn.setTransactionIsolation(isolation);
+        }
+    }
+}
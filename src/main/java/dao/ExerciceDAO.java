@@ -1,26 +1,47 @@
 package dao;
 
 import models.Exercice;
+import models.ExerciceColonnes;
 import utils.DatabaseConnection;
+import utils.LocalReplica;
+import utils.RetryPolicy;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * DAO pour la gestion des exercices.
  * Cette classe fournit des méthodes pour interagir avec la table "exercice" de la base de données.
+ *
+ * Les écritures sont rejouées par la {@link RetryPolicy} quand la transaction est annulée par
+ * un interblocage ou un délai d'attente de verrou sur les compteurs d'une matière.
  */
 public class ExerciceDAO {
+    private static final RetryPolicy RETRY = DatabaseConnection.getRetryPolicy();
+    /** Nombre d'exercices par bloc publié par {@link #streamAllExercicesColonnes()}. */
+    private static final int TAILLE_BLOC = 1024;
 
     /**
      * Récupère la liste des exercices filtrés par l'identifiant de la matière.
+     * La copie locale est utilisée tant qu'elle est récente, et en secours si la base est injoignable.
      *
      * @param matiereId l'identifiant de la matière
      * @return une liste d'objets Exercice correspondant à la matière
      */
     public List<Exercice> getExercicesByMatiere(int matiereId) {
+        String scope = LocalReplica.SCOPE_EXERCICES + ":matiere:" + matiereId;
+        Predicate<Exercice> filtre = exercice -> exercice.getMatiereId() == matiereId;
+        LocalReplica replica = LocalReplica.get();
+        if (replica.isFresh(scope)) {
+            return replica.findExercices(filtre);
+        }
         List<Exercice> exercices = new ArrayList<>();
         String sql = "SELECT e.*, m.nom as matiere_nom FROM exercice e " +
                      "JOIN matiere m ON e.matiere_id = m.id " +
@@ -30,45 +51,52 @@ public class ExerciceDAO {
             // Définir le paramètre de requête pour le matiereId
             stmt.setInt(1, matiereId);
             ResultSet rs = stmt.executeQuery();
+            RowMapper<Exercice> mapper = RowMappers.exercice(rs);
             while (rs.next()) {
-                // Récupérer le timestamp de création et le convertir en LocalDateTime
-                Timestamp timestamp = rs.getTimestamp("date_creation");
-                LocalDateTime dateCreation = timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now();
-                // Création de l'objet Exercice avec les données extraites
-                Exercice exercice = new Exercice(
-                        rs.getInt("id"),
-                        rs.getString("titre"),
-                        rs.getString("description"),
-                        dateCreation,
-                        rs.getInt("matiere_id"),
-                        rs.getInt("createur_id")
-                );
-                // Définir le nom de la matière récupéré depuis la jointure
-                exercice.setMatiereNom(rs.getString("matiere_nom"));
-                exercices.add(exercice);
+                exercices.add(mapper.map(rs));
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return replica.findExercices(filtre); // Hors ligne : dernière copie connue
+            }
             e.printStackTrace();
+            return exercices;
         }
+        replica.replaceExercices(scope, filtre, exercices);
         return exercices;
     }
 
     /**
      * Ajoute un nouvel exercice dans la base de données.
+     * Le nombre d'exercices de la matière est incrémenté dans la même transaction.
      *
      * @param exercice l'objet Exercice à ajouter
      * @return true si l'ajout est réussi, false sinon
      */
     public boolean addExercice(Exercice exercice) {
         String sql = "INSERT INTO exercice (titre, description, date_creation, matiere_id, createur_id) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, exercice.getTitre());
-            stmt.setString(2, exercice.getDescription());
-            stmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
-            stmt.setInt(4, exercice.getMatiereId());
-            stmt.setInt(5, exercice.getCreateurId());
-            stmt.executeUpdate();
+        try {
+            RETRY.run(false, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        stmt.setString(1, exercice.getTitre());
+                        stmt.setString(2, exercice.getDescription());
+                        stmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
+                        stmt.setInt(4, exercice.getMatiereId());
+                        stmt.setInt(5, exercice.getCreateurId());
+                        stmt.executeUpdate();
+                        CompteurDAO.ajusterExercices(conn, exercice.getMatiereId(), 1);
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                    CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
+                }
+            });
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -78,21 +106,50 @@ public class ExerciceDAO {
 
     /**
      * Met à jour un exercice existant dans la base de données.
+     * Si l'exercice change de matière, les compteurs des deux matières sont ajustés
+     * dans la même transaction.
      *
      * @param exercice l'objet Exercice contenant les nouvelles valeurs
      * @return true si la mise à jour a réussi, false sinon
      */
     public boolean updateExercice(Exercice exercice) {
         String sql = "UPDATE exercice SET titre = ?, description = ?, date_creation = ?, matiere_id = ?, createur_id = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, exercice.getTitre());
-            stmt.setString(2, exercice.getDescription());
-            stmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
-            stmt.setInt(4, exercice.getMatiereId());
-            stmt.setInt(5, exercice.getCreateurId());
-            stmt.setInt(6, exercice.getId());
-            stmt.executeUpdate();
+        try {
+            // Rejouée après une coupure, la matière relue est déjà la nouvelle : pas de second ajustement
+            RETRY.run(true, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        int ancienneMatiere = CompteurDAO.lireParent(conn,
+                                "SELECT matiere_id FROM exercice WHERE id = ? FOR UPDATE", exercice.getId());
+                        stmt.setString(1, exercice.getTitre());
+                        stmt.setString(2, exercice.getDescription());
+                        stmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
+                        stmt.setInt(4, exercice.getMatiereId());
+                        stmt.setInt(5, exercice.getCreateurId());
+                        stmt.setInt(6, exercice.getId());
+                        stmt.executeUpdate();
+                        int nouvelleMatiere = exercice.getMatiereId();
+                        if (ancienneMatiere != 0 && ancienneMatiere != nouvelleMatiere) {
+                            // Toujours dans l'ordre des identifiants, pour que deux déplacements croisés ne s'interbloquent pas
+                            if (ancienneMatiere < nouvelleMatiere) {
+                                CompteurDAO.ajusterExercices(conn, ancienneMatiere, -1);
+                                CompteurDAO.ajusterExercices(conn, nouvelleMatiere, 1);
+                            } else {
+                                CompteurDAO.ajusterExercices(conn, nouvelleMatiere, 1);
+                                CompteurDAO.ajusterExercices(conn, ancienneMatiere, -1);
+                            }
+                        }
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                    CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
+                }
+            });
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -113,44 +170,42 @@ public class ExerciceDAO {
         // Deuxième étape : suppression de l'exercice lui-même
         String deleteExercice = "DELETE FROM exercice WHERE id = ?";
         
-        Connection conn = null;
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Démarrage d'une transaction
-            
-            // Suppression des solutions associées
-            try (PreparedStatement stmt = conn.prepareStatement(deleteSolutions)) {
-                stmt.setInt(1, id);
-                stmt.executeUpdate();
-            }
-            
-            // Suppression de l'exercice
-            try (PreparedStatement stmt = conn.prepareStatement(deleteExercice)) {
-                stmt.setInt(1, id);
-                int rowsAffected = stmt.executeUpdate();
-                conn.commit(); // Valider la transaction
-                return rowsAffected > 0;
-            }
-        } catch (SQLException e) {
-            // En cas d'erreur, annuler la transaction
-            try {
-                if (conn != null) {
-                    conn.rollback();
+            return RETRY.call(false, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false); // Démarrage d'une transaction
+                    try {
+                        // Matière de l'exercice, dont le compteur sera décrémenté (la ligne reste verrouillée)
+                        int matiereId = CompteurDAO.lireParent(conn, "SELECT matiere_id FROM exercice WHERE id = ? FOR UPDATE", id);
+                        
+                        // Suppression des solutions associées
+                        try (PreparedStatement stmt = conn.prepareStatement(deleteSolutions)) {
+                            stmt.setInt(1, id);
+                            stmt.executeUpdate();
+                        }
+                        
+                        // Suppression de l'exercice
+                        try (PreparedStatement stmt = conn.prepareStatement(deleteExercice)) {
+                            stmt.setInt(1, id);
+                            int rowsAffected = stmt.executeUpdate();
+                            if (rowsAffected > 0) {
+                                CompteurDAO.ajusterExercices(conn, matiereId, -1);
+                            }
+                            conn.commit(); // Valider la transaction
+                            CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
+                            return rowsAffected > 0;
+                        }
+                    } catch (SQLException e) {
+                        conn.rollback(); // En cas d'erreur, annuler la transaction
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true); // Réinitialisation du mode automatique
+                    }
                 }
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
+            });
+        } catch (SQLException e) {
             e.printStackTrace();
             return false;
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true); // Réinitialisation du mode automatique
-                    conn.close();
-                }
-            } catch (SQLException closeEx) {
-                closeEx.printStackTrace();
-            }
         }
     }
 
@@ -169,21 +224,13 @@ public class ExerciceDAO {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                Timestamp timestamp = rs.getTimestamp("date_creation");
-                LocalDateTime dateCreation = timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now();
-                Exercice exercice = new Exercice(
-                        rs.getInt("id"),
-                        rs.getString("titre"),
-                        rs.getString("description"),
-                        dateCreation,
-                        rs.getInt("matiere_id"),
-                        rs.getInt("createur_id")
-                );
-                // Affecte le nom de la matière à l'exercice
-                exercice.setMatiereNom(rs.getString("matiere_nom"));
-                return exercice;
+                return RowMappers.exercice(rs).map(rs);
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                List<Exercice> copie = LocalReplica.get().findExercices(exercice -> exercice.getId() == id);
+                return copie.isEmpty() ? null : copie.get(0);
+            }
             e.printStackTrace();
         }
         return null;
@@ -191,11 +238,18 @@ public class ExerciceDAO {
 
     /**
      * Récupère la liste des exercices créés par un utilisateur spécifique.
+     * Même stratégie de copie locale que getExercicesByMatiere.
      *
      * @param createurId l'identifiant du créateur
      * @return une liste d'exercices créés par cet utilisateur
      */
     public List<Exercice> getExercicesByCreateur(int createurId) {
+        String scope = LocalReplica.SCOPE_EXERCICES + ":createur:" + createurId;
+        Predicate<Exercice> filtre = exercice -> exercice.getCreateurId() == createurId;
+        LocalReplica replica = LocalReplica.get();
+        if (replica.isFresh(scope)) {
+            return replica.findExercices(filtre);
+        }
         List<Exercice> exercices = new ArrayList<>();
         String sql = "SELECT e.*, m.nom as matiere_nom FROM exercice e " +
                      "JOIN matiere m ON e.matiere_id = m.id " +
@@ -204,58 +258,282 @@ public class ExerciceDAO {
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, createurId);
             ResultSet rs = stmt.executeQuery();
+            RowMapper<Exercice> mapper = RowMappers.exercice(rs);
             while (rs.next()) {
-                Timestamp timestamp = rs.getTimestamp("date_creation");
-                LocalDateTime dateCreation = timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now();
-                Exercice exercice = new Exercice(
-                        rs.getInt("id"),
-                        rs.getString("titre"),
-                        rs.getString("description"),
-                        dateCreation,
-                        rs.getInt("matiere_id"),
-                        rs.getInt("createur_id")
-                );
-                // Affecte le nom de la matière récupéré
-                exercice.setMatiereNom(rs.getString("matiere_nom"));
-                exercices.add(exercice);
+                exercices.add(mapper.map(rs));
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return replica.findExercices(filtre); // Hors ligne : dernière copie connue
+            }
             e.printStackTrace();
+            return exercices;
         }
+        replica.replaceExercices(scope, filtre, exercices);
         return exercices;
     }
 
     /**
      * Récupère la liste de tous les exercices présents dans la base de données.
+     * Même stratégie de copie locale que getExercicesByMatiere.
      *
      * @return une liste de tous les exercices
      */
     public List<Exercice> getAllExercices() {
+        String scope = LocalReplica.SCOPE_EXERCICES + ":all";
+        Predicate<Exercice> filtre = exercice -> true;
+        LocalReplica replica = LocalReplica.get();
+        if (replica.isFresh(scope)) {
+            return replica.findExercices(filtre);
+        }
         List<Exercice> exercices = new ArrayList<>();
         String sql = "SELECT e.*, m.nom as matiere_nom FROM exercice e " +
                      "JOIN matiere m ON e.matiere_id = m.id";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
+            RowMapper<Exercice> mapper = RowMappers.exercice(rs);
             while (rs.next()) {
-                Timestamp timestamp = rs.getTimestamp("date_creation");
-                LocalDateTime dateCreation = timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now();
-                Exercice exercice = new Exercice(
-                        rs.getInt("id"),
-                        rs.getString("titre"),
-                        rs.getString("description"),
-                        dateCreation,
-                        rs.getInt("matiere_id"),
-                        rs.getInt("createur_id")
-                );
-                exercice.setMatiereNom(rs.getString("matiere_nom"));
-                exercices.add(exercice);
+                exercices.add(mapper.map(rs));
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return replica.findExercices(filtre); // Hors ligne : dernière copie connue
+            }
             e.printStackTrace();
+            return exercices;
         }
+        replica.replaceExercices(scope, filtre, exercices);
         return exercices;
     }
+
+    /**
+     * Récupère tous les exercices rangés par colonnes, pour la liste complète : aucun objet
+     * n'est créé par ligne et la description n'est pas lue. Les noms des matières sont lus
+     * une fois par matière et non joints à chaque ligne.
+     * Hors ligne, les colonnes sont construites depuis la copie locale.
+     *
+     * @return les exercices, sans description
+     */
+    public ExerciceColonnes getAllExercicesColonnes() {
+        String sqlMatieres = "SELECT id, nom FROM matiere";
+        String sql = "SELECT id, titre, date_creation, matiere_id, createur_id, nb_solutions FROM exercice";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            ExerciceColonnes colonnes = new ExerciceColonnes(compterExercices(conn));
+            try (PreparedStatement stmt = conn.prepareStatement(sqlMatieres);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    colonnes.ajouterMatiere(rs.getInt(1), rs.getString(2));
+                }
+            }
+            // Colonnes lues par position : la liste des colonnes est fixée par la requête
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp timestamp = rs.getTimestamp(3);
+                    colonnes.ajouter(rs.getInt(1), rs.getString(2),
+                            timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now(),
+                            rs.getInt(4), rs.getInt(5), rs.getInt(6));
+                }
+            }
+            colonnes.ajuster();
+            return colonnes;
+        } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                // Hors ligne : dernière copie connue
+                return ExerciceColonnes.de(LocalReplica.get().findExercices(exercice -> true));
+            }
+            e.printStackTrace();
+            return new ExerciceColonnes(0);
+        }
+    }
+
+    /**
+     * Publie au fil de l'eau les exercices d'une matière, pour un affichage progressif.
+     * Même stratégie de copie locale que getExercicesByMatiere.
+     *
+     * @param matiereId l'identifiant de la matière
+     */
+    public Flow.Publisher<Exercice> streamExercicesByMatiere(int matiereId) {
+        String sql = "SELECT e.*, m.nom as matiere_nom FROM exercice e " +
+                     "JOIN matiere m ON e.matiere_id = m.id " +
+                     "WHERE e.matiere_id = ? AND e.id > ?";
+        return publierExercices(LocalReplica.SCOPE_EXERCICES + ":matiere:" + matiereId,
+                exercice -> exercice.getMatiereId() == matiereId, sql, stmt -> stmt.setInt(1, matiereId));
+    }
+
+    /**
+     * Publie au fil de l'eau les exercices d'un créateur, pour un affichage progressif.
+     *
+     * @param createurId l'identifiant du créateur
+     */
+    public Flow.Publisher<Exercice> streamExercicesByCreateur(int createurId) {
+        String sql = "SELECT e.*, m.nom as matiere_nom FROM exercice e " +
+                     "JOIN matiere m ON e.matiere_id = m.id " +
+                     "WHERE e.createur_id = ? AND e.id > ?";
+        return publierExercices(LocalReplica.SCOPE_EXERCICES + ":createur:" + createurId,
+                exercice -> exercice.getCreateurId() == createurId, sql, stmt -> stmt.setInt(1, createurId));
+    }
+
+    /**
+     * Publie au fil de l'eau tous les exercices, par blocs rangés par colonnes
+     * (sans description, comme getAllExercicesColonnes). Le nom d'une matière n'est lu
+     * qu'à sa première ligne dans chaque bloc.
+     */
+    public Flow.Publisher<ExerciceColonnes> streamAllExercicesColonnes() {
+        String sql = "SELECT e.id, e.titre, e.date_creation, e.matiere_id, e.createur_id, e.nb_solutions, m.nom " +
+                     "FROM exercice e LEFT JOIN matiere m ON e.matiere_id = m.id WHERE e.id > ?";
+        return new RowPublisher<ExerciceColonnes>(DatabaseConnection::getConnection, sql, "e.id", stmt -> { },
+                rs -> () -> lireBloc(rs), bloc -> bloc.getId(bloc.taille() - 1))
+                .secours(() -> List.of(ExerciceColonnes.de(LocalReplica.get().findExercices(exercice -> true))));
+    }
+
+    private static Flow.Publisher<Exercice> publierExercices(String scope, Predicate<Exercice> filtre, String sql,
+                                                             RowPublisher.Parametres parametres) {
+        LocalReplica replica = LocalReplica.get();
+        return new RowPublisher<>(DatabaseConnection::getConnection, sql, "e.id", parametres,
+                RowPublisher.lignes(RowMappers::exercice), Exercice::getId)
+                .copieRecente(() -> replica.isFresh(scope) ? replica.findExercices(filtre) : null)
+                .secours(() -> replica.findExercices(filtre))
+                .fin(exercices -> {
+                    replica.replaceExercices(scope, filtre, exercices);
+                    return List.of();
+                });
+    }
+
+    /**
+     * Lit jusqu'à TAILLE_BLOC lignes de la requête de streamAllExercicesColonnes.
+     *
+     * @return le bloc, ou null à la fin du résultat
+     */
+    private static ExerciceColonnes lireBloc(ResultSet rs) throws SQLException {
+        ExerciceColonnes bloc = new ExerciceColonnes(TAILLE_BLOC);
+        while (bloc.taille() < TAILLE_BLOC && rs.next()) {
+            int matiereId = rs.getInt(4);
+            if (!bloc.contientMatiere(matiereId)) {
+                bloc.ajouterMatiere(matiereId, rs.getString(7));
+            }
+            Timestamp timestamp = rs.getTimestamp(3);
+            bloc.ajouter(rs.getInt(1), rs.getString(2),
+                    timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now(),
+                    matiereId, rs.getInt(5), rs.getInt(6));
+        }
+        if (bloc.taille() == 0) {
+            return null;
+        }
+        bloc.ajuster();
+        return bloc;
+    }
+
+    private static int compterExercices(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM exercice");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Parcourt tous les exercices sans jamais les charger tous en mémoire.
+     * Ils sont lus par pages de RowPublisher.TAILLE_PAGE dans l'ordre des identifiants
+     * (id > dernier lu), chaque page sur une connexion empruntée le temps de sa lecture
+     * seulement : un export long, ralenti par l'écriture du fichier, ne garde pas une
+     * connexion du pool.
+     *
+     * @param consumer le traitement appliqué à chaque exercice
+     * @return le nombre d'exercices parcourus
+     * @throws SQLException si la lecture échoue (un export ne doit pas être tronqué en silence)
+     */
+    public long forEachExercice(Consumer<Exercice> consumer) throws SQLException {
+        long count = 0;
+        int dernier = 0;
+        List<Exercice> page;
+        do {
+            int apres = dernier;
+            page = RETRY.call(true, () -> lirePageExercices(apres));
+            for (Exercice exercice : page) {
+                consumer.accept(exercice);
+                dernier = exercice.getId();
+            }
+            count += page.size();
+        } while (page.size() == RowPublisher.TAILLE_PAGE);
+        return count;
+    }
+
+    private List<Exercice> lirePageExercices(int apres) throws SQLException {
+        String sql = "SELECT e.*, m.nom as matiere_nom FROM exercice e " +
+                     "JOIN matiere m ON e.matiere_id = m.id WHERE e.id > ? ORDER BY e.id LIMIT " + RowPublisher.TAILLE_PAGE;
+        List<Exercice> page = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, apres);
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<Exercice> mapper = RowMappers.exercice(rs);
+                while (rs.next()) {
+                    page.add(mapper.map(rs));
+                }
+            }
+        }
+        return page;
+    }
+    
+    /**
+     * Insère une liste d'exercices en un seul lot JDBC, dans une seule transaction.
+     * Utilisé par l'import en masse : un aller-retour par lot au lieu d'un par exercice.
+     *
+     * @param exercices les exercices à insérer
+     * @return les identifiants générés, dans l'ordre de la liste
+     * @throws SQLException si le lot échoue (la transaction est alors annulée)
+     */
+    public int[] addExercicesBatch(List<Exercice> exercices) throws SQLException {
+        return RETRY.call(false, () -> insererLot(exercices));
+    }
+
+    private int[] insererLot(List<Exercice> exercices) throws SQLException {
+        String sql = "INSERT INTO exercice (titre, description, date_creation, matiere_id, createur_id) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Exercice exercice : exercices) {
+                    stmt.setString(1, exercice.getTitre());
+                    stmt.setString(2, exercice.getDescription());
+                    stmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
+                    stmt.setInt(4, exercice.getMatiereId());
+                    stmt.setInt(5, exercice.getCreateurId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                
+                // Récupération des identifiants générés, dans l'ordre d'insertion
+                int[] ids = new int[exercices.size()];
+                int lus = 0;
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    while (lus < ids.length && keys.next()) {
+                        ids[lus++] = keys.getInt(1);
+                    }
+                }
+                if (lus < ids.length) {
+                    // Sans tous les identifiants, les solutions importées ne peuvent être rattachées
+                    throw new SQLException(lus + " identifiants générés pour " + ids.length + " exercices insérés");
+                }
+                // Un ajustement par matière, dans l'ordre des identifiants
+                Map<Integer, Integer> parMatiere = new TreeMap<>();
+                for (Exercice exercice : exercices) {
+                    parMatiere.merge(exercice.getMatiereId(), 1, Integer::sum);
+                }
+                for (Map.Entry<Integer, Integer> entry : parMatiere.entrySet()) {
+                    CompteurDAO.ajusterExercices(conn, entry.getKey(), entry.getValue());
+                }
+                conn.commit();
+                CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
+                return ids;
+            } catch (SQLException e) {
+                conn.rollback(); // Annuler tout le lot en cas d'erreur
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
     
     /**
      * Ajoute un exercice à la base de données et renvoie l'exercice créé avec son identifiant.
@@ -267,31 +545,42 @@ public class ExerciceDAO {
         String insertSql = "INSERT INTO exercice (titre, description, date_creation, matiere_id, createur_id) VALUES (?, ?, ?, ?, ?)";
         String getLastIdSql = "SELECT LAST_INSERT_ID()";
         
-        Connection conn = null;
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
-            
-            // Insertion de l'exercice dans la base
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                insertStmt.setString(1, exercice.getTitre());
-                insertStmt.setString(2, exercice.getDescription());
-                insertStmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
-                insertStmt.setInt(4, exercice.getMatiereId());
-                insertStmt.setInt(5, exercice.getCreateurId());
-                insertStmt.executeUpdate();
-            }
-            
-            int lastInsertId = 0;
-            // Récupération de l'identifiant généré pour l'exercice inséré
-            try (PreparedStatement idStmt = conn.prepareStatement(getLastIdSql);
-                 ResultSet rs = idStmt.executeQuery()) {
-                if (rs.next()) {
-                    lastInsertId = rs.getInt(1);
+            int lastInsertId = RETRY.call(false, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        // Insertion de l'exercice dans la base
+                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                            insertStmt.setString(1, exercice.getTitre());
+                            insertStmt.setString(2, exercice.getDescription());
+                            insertStmt.setTimestamp(3, Timestamp.valueOf(exercice.getDateCreation()));
+                            insertStmt.setInt(4, exercice.getMatiereId());
+                            insertStmt.setInt(5, exercice.getCreateurId());
+                            insertStmt.executeUpdate();
+                        }
+                        
+                        int id = 0;
+                        // Récupération de l'identifiant généré pour l'exercice inséré
+                        try (PreparedStatement idStmt = conn.prepareStatement(getLastIdSql);
+                             ResultSet rs = idStmt.executeQuery()) {
+                            if (rs.next()) {
+                                id = rs.getInt(1);
+                            }
+                        }
+                        
+                        CompteurDAO.ajusterExercices(conn, exercice.getMatiereId(), 1);
+                        conn.commit();
+                        CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
+                        return id;
+                    } catch (SQLException e) {
+                        conn.rollback(); // Annuler la transaction en cas d'erreur
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true); // Réinitialiser le mode auto-commit
+                    }
                 }
-            }
-            
-            conn.commit();
+            });
             
             if (lastInsertId > 0) {
                 // Récupère et renvoie l'exercice inséré via son ID
@@ -300,24 +589,8 @@ public class ExerciceDAO {
             
             return null;
         } catch (SQLException e) {
-            try {
-                if (conn != null) {
-                    conn.rollback(); // Annuler la transaction en cas d'erreur
-                }
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
             e.printStackTrace();
             return null;
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true); // Réinitialiser le mode auto-commit
-                    conn.close();
-                }
-            } catch (SQLException closeEx) {
-                closeEx.printStackTrace();
-            }
         }
     }
 }
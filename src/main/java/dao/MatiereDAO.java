@@ -2,6 +2,7 @@ package dao;
 
 import models.Matiere;
 import utils.DatabaseConnection;
+import utils.LocalReplica;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -14,26 +15,34 @@ import java.util.List;
 public class MatiereDAO {
 
     /**
-     * Récupère toutes les matières triées par nom.
+     * Récupère toutes les matières triées par nom, avec leur nombre d'exercices.
+     * La copie locale est utilisée tant qu'elle est récente, et en secours si la base est injoignable.
      *
      * @return une liste de matières.
      */
     public List<Matiere> getAllMatieres() {
+        LocalReplica replica = LocalReplica.get();
+        if (replica.isFresh(LocalReplica.SCOPE_MATIERES)) {
+            return replica.getMatieres();
+        }
         List<Matiere> matieres = new ArrayList<>();
-        String sql = "SELECT id, nom FROM matiere ORDER BY nom";
+        String sql = "SELECT * FROM matiere ORDER BY nom";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             // Parcours des résultats de la requête
+            RowMapper<Matiere> mapper = RowMappers.matiere(rs);
             while (rs.next()) {
-                matieres.add(new Matiere(
-                        rs.getInt("id"),
-                        rs.getString("nom")
-                ));
+                matieres.add(mapper.map(rs));
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return replica.getMatieres(); // Hors ligne : dernière copie connue
+            }
             e.printStackTrace();
+            return matieres;
         }
+        replica.replaceMatieres(matieres);
         return matieres;
     }
 
@@ -44,18 +53,23 @@ public class MatiereDAO {
      * @return la matière correspondante, ou null si non trouvée.
      */
     public Matiere getMatiereById(int id) {
-        String sql = "SELECT id, nom FROM matiere WHERE id = ?";
+        String sql = "SELECT * FROM matiere WHERE id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return new Matiere(
-                        rs.getInt("id"),
-                        rs.getString("nom")
-                );
+                return RowMappers.matiere(rs).map(rs);
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                for (Matiere matiere : LocalReplica.get().getMatieres()) {
+                    if (matiere.getId() == id) {
+                        return matiere;
+                    }
+                }
+                return null;
+            }
             e.printStackTrace();
         }
         return null;
@@ -73,6 +87,7 @@ public class MatiereDAO {
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, matiere.getNom());
             int rowsAffected = stmt.executeUpdate();
+            CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES);
             return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -93,6 +108,8 @@ public class MatiereDAO {
             stmt.setString(1, matiere.getNom());
             stmt.setInt(2, matiere.getId());
             int rowsAffected = stmt.executeUpdate();
+            // Le nom de la matière est aussi recopié dans les exercices
+            CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
             return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -102,50 +119,27 @@ public class MatiereDAO {
     
     /**
      * Supprime une matière de la base de données en fonction de son identifiant.
-     * Avant la suppression, vérifie s'il existe des exercices dépendants.
+     * Une matière qui a des exercices n'est pas supprimée : la condition porte sur le compteur
+     * nb_exercices dans la requête de suppression elle-même, sans COUNT préalable.
      *
      * @param id l'identifiant de la matière à supprimer.
-     * @return true si la suppression réussit, false sinon.
+     * @return true si la suppression réussit, false sinon (exercices associés ou erreur).
      */
     public boolean deleteMatiere(int id) {
-        // Vérifier s'il y a des exercices liés à cette matière
-        if (hasDependentExercices(id)) {
-            // Ne peut pas supprimer une matière qui a des exercices associés
-            return false;
-        }
-        
-        String sql = "DELETE FROM matiere WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-    
-    /**
-     * Vérifie si une matière possède des exercices associés.
-     *
-     * @param matiereId l'identifiant de la matière.
-     * @return true si des exercices existent, false sinon.
-     */
-    private boolean hasDependentExercices(int matiereId) {
-        String sql = "SELECT COUNT(*) FROM exercice WHERE matiere_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, matiereId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            String sql = "DELETE FROM matiere WHERE id = ? AND nb_exercices = 0";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, id);
+                int rowsAffected = stmt.executeUpdate();
+                if (rowsAffected > 0) {
+                    CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES);
+                }
+                return rowsAffected > 0;
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
         }
-        // En cas d'erreur, on part sur qu'il y a des dépendances pour éviter une suppression accidentelle
-        return true;
     }
     
     /**
@@ -179,6 +173,7 @@ public class MatiereDAO {
             }
             
             conn.commit();
+            CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES);
             
             if (lastInsertId > 0) {
                 matiere.setId(lastInsertId);
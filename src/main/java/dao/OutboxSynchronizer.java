@@ -0,0 +1,187 @@
+package dao;
+
+import models.Solution;
+import utils.DatabaseConnection;
+import utils.LocalReplica;
+import utils.SyncOutbox;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rejoue sur le serveur les écritures de solutions faites hors ligne.
+ *
+ * Un thread de fond vérifie périodiquement la file d'attente ; dès que la base répond,
+ * les opérations sont envoyées par lots, chaque lot dans une transaction. Une modification
+ * ou une suppression n'est appliquée que si la ligne a encore la version lue avant la coupure
+ * (colonne version, incrémentée à chaque modification) : sinon il y a conflit, l'opération est
+ * écartée et tracée dans le journal des conflits. Un ajout déjà présent sur le serveur (même
+ * clé d'ajout, validé juste avant la coupure) n'est pas inséré une seconde fois.
+ */
+public class OutboxSynchronizer {
+    private static final Logger LOGGER = Logger.getLogger(OutboxSynchronizer.class.getName());
+    private static final long PERIOD_SECONDS = 15;
+    private static final int BATCH_SIZE = 100;
+
+    // L'ajout n'a lieu que si l'exercice existe encore
+    private static final String SQL_AJOUT = "INSERT INTO solution (contenu, date_creation, exercice_id, auteur_id, cle_ajout) " +
+            "SELECT ?, ?, ?, ?, ? FROM exercice WHERE id = ?";
+    private static final String SQL_DEJA_AJOUTEE = "SELECT id FROM solution WHERE cle_ajout = ?";
+    private static final String SQL_MODIFICATION = "UPDATE solution SET contenu = ?, date_creation = ?, version = version + 1 " +
+            "WHERE id = ? AND version = ?";
+    private static final String SQL_SUPPRESSION = "DELETE FROM solution WHERE id = ? AND version = ?";
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Démarre la synchronisation périodique (sans effet si elle tourne déjà).
+     */
+    public static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(OutboxSynchronizer::synchronize, 0, PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Arrête la synchronisation périodique.
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Envoie toutes les opérations en attente, lot par lot.
+     *
+     * @return le nombre d'opérations traitées (appliquées ou en conflit)
+     */
+    public static synchronized int synchronize() {
+        SyncOutbox outbox = SyncOutbox.get();
+        int processed = 0;
+        while (!outbox.isEmpty()) {
+            List<SyncOutbox.Entry> batch = outbox.peek(BATCH_SIZE);
+            List<SyncOutbox.Entry> conflicts = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    for (SyncOutbox.Entry entry : batch) {
+                        if (!apply(conn, entry)) {
+                            conflicts.add(entry);
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (DatabaseConnection.isConnectionFailure(e)) {
+                    LOGGER.fine("Database still unreachable, " + outbox.size() + " offline write(s) pending");
+                } else {
+                    LOGGER.log(Level.WARNING, "Offline synchronization failed", e);
+                }
+                return processed;
+            }
+
+            for (SyncOutbox.Entry entry : conflicts) {
+                outbox.recordConflict(entry, entry.getOperation() != SyncOutbox.Operation.AJOUT && entry.getBaseVersion() == 0
+                        ? "version de la ligne sur le serveur inconnue"
+                        : "la ligne a été modifiée ou supprimée sur le serveur");
+            }
+            outbox.remove(batch);
+            processed += batch.size();
+
+            // Les solutions temporaires seront relues depuis le serveur
+            LocalReplica replica = LocalReplica.get();
+            for (SyncOutbox.Entry entry : batch) {
+                if (entry.getSolution().getId() < 0) {
+                    replica.removeSolution(entry.getSolution().getId());
+                }
+            }
+        }
+        if (processed > 0) {
+            LOGGER.info("Synchronized " + processed + " offline write(s)");
+        }
+        return processed;
+    }
+
+    /**
+     * Applique une opération ; renvoie false si elle est en conflit avec l'état du serveur.
+     * Sans version connue (solution jamais lue avant la coupure, ou file d'un format antérieur),
+     * une modification ou une suppression est toujours en conflit : rien ne dit que la ligne
+     * n'a pas changé. Les ajouts et suppressions appliqués ajustent le nombre de solutions.
+     */
+    private static boolean apply(Connection conn, SyncOutbox.Entry entry) throws SQLException {
+        Solution solution = entry.getSolution();
+        Timestamp date = Timestamp.valueOf(solution.getDateCreation());
+        int version = entry.getBaseVersion();
+        switch (entry.getOperation()) {
+            case AJOUT:
+                if (entry.getInsertKey() != null && dejaAjoutee(conn, entry.getInsertKey())) {
+                    return true; // Validée par la tentative en ligne, avant la coupure
+                }
+                if (execute(conn, SQL_AJOUT, solution.getContenu(), date, solution.getExerciceId(),
+                        solution.getAuteurId(), entry.getInsertKey(), solution.getExerciceId())) {
+                    CompteurDAO.ajusterSolutions(conn, solution.getExerciceId(), 1);
+                    StatistiqueDAO.enregistrerSolutions(conn, List.of(solution));
+                    return true;
+                }
+                return false;
+            case MODIFICATION:
+                return version > 0
+                        && execute(conn, SQL_MODIFICATION, solution.getContenu(), date, solution.getId(), version);
+            case SUPPRESSION:
+                if (version == 0) {
+                    return false;
+                }
+                // L'exercice n'est pas toujours connu localement : il est relu sur la ligne verrouillée
+                int exerciceId = CompteurDAO.lireParent(conn,
+                        "SELECT exercice_id FROM solution WHERE id = ? FOR UPDATE", solution.getId());
+                boolean supprimee = execute(conn, SQL_SUPPRESSION, solution.getId(), version);
+                if (supprimee) {
+                    CompteurDAO.ajusterSolutions(conn, exerciceId, -1);
+                }
+                return supprimee;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean dejaAjoutee(Connection conn, String cle) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_DEJA_AJOUTEE)) {
+            stmt.setString(1, cle);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean execute(Connection conn, String sql, Object... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            return stmt.executeUpdate() > 0;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Transforme la ligne courante d'un ResultSet en objet.
+ * Obtenu par {@link RowMappers} pour un ResultSet donné : les colonnes sont déjà résolues
+ * en index, la lecture d'une ligne ne fait aucune recherche par nom.
+ *
+ * @param <T> le type d'objet produit
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
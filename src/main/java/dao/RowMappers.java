@@ -0,0 +1,170 @@
+package dao;
+
+import models.Exercice;
+import models.Matiere;
+import models.Solution;
+import models.Utilisateur;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Correspondances ligne → objet des modèles, partagées par tous les DAO.
+ *
+ * Chaque méthode lit une fois les métadonnées du ResultSet pour trouver l'index de chaque
+ * colonne, puis renvoie un {@link RowMapper} qui lit les lignes par position.
+ * Les colonnes facultatives (nom de la matière ou de l'auteur joint, compteurs, nom de
+ * l'utilisateur) ne sont lues que si la requête les renvoie.
+ */
+public final class RowMappers {
+
+    private RowMappers() {
+    }
+
+    /**
+     * Exercice ; lit aussi matiere_nom et nb_solutions s'ils sont présents.
+     * Une date de création absente est remplacée par la date courante.
+     */
+    public static RowMapper<Exercice> exercice(ResultSet rs) throws SQLException {
+        Colonnes colonnes = new Colonnes(rs);
+        int id = colonnes.requise("id");
+        int titre = colonnes.requise("titre");
+        int description = colonnes.requise("description");
+        int dateCreation = colonnes.requise("date_creation");
+        int matiereId = colonnes.requise("matiere_id");
+        int createurId = colonnes.requise("createur_id");
+        int matiereNom = colonnes.facultative("matiere_nom");
+        int nbSolutions = colonnes.facultative("nb_solutions");
+        return ligne -> {
+            Timestamp timestamp = ligne.getTimestamp(dateCreation);
+            Exercice exercice = new Exercice(
+                    ligne.getInt(id),
+                    ligne.getString(titre),
+                    ligne.getString(description),
+                    timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now(),
+                    ligne.getInt(matiereId),
+                    ligne.getInt(createurId)
+            );
+            if (matiereNom > 0) {
+                exercice.setMatiereNom(ligne.getString(matiereNom));
+            }
+            if (nbSolutions > 0) {
+                exercice.setNbSolutions(ligne.getInt(nbSolutions));
+            }
+            return exercice;
+        };
+    }
+
+    /**
+     * Solution ; si auteur_nom est présent, il devient le nom de l'auteur
+     * ("Utilisateur &lt;id&gt;" quand l'auteur n'a pas de nom). La version, si elle est
+     * présente, sert à détecter les conflits des écritures hors ligne.
+     */
+    public static RowMapper<Solution> solution(ResultSet rs) throws SQLException {
+        Colonnes colonnes = new Colonnes(rs);
+        int id = colonnes.requise("id");
+        int contenu = colonnes.requise("contenu");
+        int dateCreation = colonnes.requise("date_creation");
+        int exerciceId = colonnes.requise("exercice_id");
+        int auteurId = colonnes.requise("auteur_id");
+        int auteurNom = colonnes.facultative("auteur_nom");
+        int version = colonnes.facultative("version");
+        return ligne -> {
+            Timestamp timestamp = ligne.getTimestamp(dateCreation);
+            Solution solution = new Solution(
+                    ligne.getInt(id),
+                    ligne.getString(contenu),
+                    timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now(),
+                    ligne.getInt(exerciceId),
+                    ligne.getInt(auteurId)
+            );
+            if (auteurNom > 0) {
+                String nom = ligne.getString(auteurNom);
+                solution.setAuteurNom(nom != null && !nom.isEmpty() ? nom : "Utilisateur " + solution.getAuteurId());
+            }
+            if (version > 0) {
+                solution.setVersion(ligne.getInt(version));
+            }
+            return solution;
+        };
+    }
+
+    /**
+     * Matière ; lit aussi nb_exercices s'il est présent.
+     */
+    public static RowMapper<Matiere> matiere(ResultSet rs) throws SQLException {
+        Colonnes colonnes = new Colonnes(rs);
+        int id = colonnes.requise("id");
+        int nom = colonnes.requise("nom");
+        int nbExercices = colonnes.facultative("nb_exercices");
+        return ligne -> {
+            Matiere matiere = new Matiere(ligne.getInt(id), ligne.getString(nom));
+            if (nbExercices > 0) {
+                matiere.setNbExercices(ligne.getInt(nbExercices));
+            }
+            return matiere;
+        };
+    }
+
+    /**
+     * Utilisateur ; le nom n'est remplacé que s'il est présent et non vide
+     * (sinon l'utilisateur garde son nom par défaut).
+     */
+    public static RowMapper<Utilisateur> utilisateur(ResultSet rs) throws SQLException {
+        Colonnes colonnes = new Colonnes(rs);
+        int id = colonnes.requise("id");
+        int email = colonnes.requise("email");
+        int motDePasse = colonnes.requise("mot_de_passe");
+        int role = colonnes.requise("role");
+        int nom = colonnes.facultative("nom");
+        return ligne -> {
+            Utilisateur user = new Utilisateur(
+                    ligne.getInt(id),
+                    ligne.getString(email),
+                    ligne.getString(motDePasse),
+                    ligne.getString(role)
+            );
+            if (nom > 0) {
+                String valeur = ligne.getString(nom);
+                if (valeur != null && !valeur.isEmpty()) {
+                    user.setNom(valeur);
+                }
+            }
+            return user;
+        };
+    }
+
+    /**
+     * Index des colonnes d'un ResultSet par libellé, lus une seule fois dans ses métadonnées.
+     * Comme {@link ResultSet#findColumn}, un libellé en double désigne sa première occurrence.
+     */
+    private static final class Colonnes {
+        private final Map<String, Integer> index = new HashMap<>();
+
+        Colonnes(ResultSet rs) throws SQLException {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = metaData.getColumnCount(); i >= 1; i--) {
+                index.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+            }
+        }
+
+        int requise(String colonne) throws SQLException {
+            Integer i = index.get(colonne);
+            if (i == null) {
+                throw new SQLException("Colonne absente du résultat : " + colonne);
+            }
+            return i;
+        }
+
+        /** @return l'index de la colonne, ou 0 si la requête ne la renvoie pas */
+        int facultative(String colonne) {
+            return index.getOrDefault(colonne, 0);
+        }
+    }
+}
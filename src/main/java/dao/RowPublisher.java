@@ -0,0 +1,299 @@
+package dao;
+
+import utils.CancellationToken;
+import utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Publie au fil de l'eau les éléments lus par une requête, selon la demande de l'abonné.
+ *
+ * La requête est lue à l'abonnement, sur un thread dédié, par pages de TAILLE_PAGE lignes
+ * rangées par clé (pagination par clé : chaque page reprend après la dernière clé lue) :
+ * le premier élément part dès la première page, quelle que soit la taille du résultat.
+ * Chaque page emprunte une connexion le temps de sa lecture seulement ; le thread attend
+ * ensuite la demande de l'abonné sans rien tenir côté serveur, si lent que soit l'affichage.
+ *
+ * Chaque abonnement a son {@link CancellationToken} : s'il est pris pendant qu'un
+ * {@link CancellationToken} est lié au thread appelant, il en reprend le délai d'exécution
+ * et est annulé avec lui. Annuler l'abonnement annule la requête sur le serveur
+ * ({@link java.sql.Statement#cancel()}) au lieu de laisser le pilote lire les lignes restantes.
+ *
+ * Comme les méthodes de liste des DAO, la publication peut être servie par la copie locale
+ * (récente, ou en secours si la base est injoignable avant le premier élément) et lui
+ * transmettre le résultat complet à la fin.
+ */
+final class RowPublisher<T> implements Flow.Publisher<T> {
+    // Lignes lues par page ; un bloc de streamAllExercicesColonnes tient dans une page
+    static final int TAILLE_PAGE = 1024;
+
+    /** Ouvre la connexion utilisée pour la requête. */
+    @FunctionalInterface
+    interface Connexion {
+        Connection ouvrir() throws SQLException;
+    }
+
+    /** Lie les paramètres de la requête. */
+    @FunctionalInterface
+    interface Parametres {
+        void lier(PreparedStatement stmt) throws SQLException;
+    }
+
+    /** Prépare la lecture d'un résultat, une fois ses métadonnées connues. */
+    @FunctionalInterface
+    interface Lecture<T> {
+        Lecteur<T> ouvrir(ResultSet rs) throws SQLException;
+    }
+
+    /** Lit l'élément suivant du résultat, ou null à la fin. */
+    @FunctionalInterface
+    interface Lecteur<T> {
+        T suivant() throws SQLException;
+    }
+
+    /** Correspondance de {@link RowMappers}, par exemple {@code RowMappers::exercice}. */
+    @FunctionalInterface
+    interface Correspondance<T> {
+        RowMapper<T> pour(ResultSet rs) throws SQLException;
+    }
+
+    private final Connexion connexion;
+    private final String sql;
+    private final int rangCle;
+    private final Parametres parametres;
+    private final Lecture<T> lecture;
+    private final ToIntFunction<T> derniereCle;
+    private Supplier<List<T>> copieRecente = () -> null;
+    private Supplier<List<T>> secours;
+    private Function<List<T>, List<T>> fin;
+
+    /**
+     * @param sql la requête, terminée par la condition « cle &gt; ? » (dernier paramètre),
+     *            sans ORDER BY ni LIMIT
+     * @param cle la colonne de pagination, unique et croissante (par exemple « e.id »)
+     * @param derniereCle la clé de la dernière ligne lue pour un élément publié
+     */
+    RowPublisher(Connexion connexion, String sql, String cle, Parametres parametres, Lecture<T> lecture,
+                 ToIntFunction<T> derniereCle) {
+        this.connexion = connexion;
+        this.sql = sql + " ORDER BY " + cle + " LIMIT " + TAILLE_PAGE;
+        this.rangCle = (int) sql.chars().filter(c -> c == '?').count();
+        this.parametres = parametres;
+        this.lecture = lecture;
+        this.derniereCle = derniereCle;
+    }
+
+    /**
+     * Lecture d'un élément par ligne, avec une correspondance de {@link RowMappers}.
+     */
+    static <T> Lecture<T> lignes(Correspondance<T> correspondance) {
+        return rs -> {
+            RowMapper<T> mapper = correspondance.pour(rs);
+            return () -> rs.next() ? mapper.map(rs) : null;
+        };
+    }
+
+    /**
+     * Copie locale à publier sans interroger la base ; null si elle n'est pas assez récente.
+     */
+    RowPublisher<T> copieRecente(Supplier<List<T>> copieRecente) {
+        this.copieRecente = copieRecente;
+        return this;
+    }
+
+    /**
+     * Copie locale publiée si la base est injoignable.
+     */
+    RowPublisher<T> secours(Supplier<List<T>> secours) {
+        this.secours = secours;
+        return this;
+    }
+
+    /**
+     * Reçoit tous les éléments lus, une fois le résultat terminé, et renvoie ceux à publier
+     * en plus (par exemple les solutions écrites hors ligne). Les éléments sont alors
+     * gardés en mémoire jusqu'à la fin ; sans cette étape, rien n'est conservé.
+     */
+    RowPublisher<T> fin(Function<List<T>, List<T>> fin) {
+        this.fin = fin;
+        return this;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        CancellationToken appelant = CancellationToken.current();
+        Abonnement abonnement = new Abonnement(subscriber,
+                appelant != null ? appelant.child() : new CancellationToken(0));
+        subscriber.onSubscribe(abonnement);
+        Thread thread = new Thread(abonnement::publier, "dao-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private final class Abonnement implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final CancellationToken token;
+        private long demande;
+        private boolean annule;
+        private IllegalArgumentException refus; // demande invalide, signalée par le thread de publication
+
+        private Abonnement(Flow.Subscriber<? super T> subscriber, CancellationToken token) {
+            this.subscriber = subscriber;
+            this.token = token;
+            token.onCancel(this::cancel);
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                refus = new IllegalArgumentException("Demande non positive : " + n);
+                annule = true;
+                notifyAll();
+                return;
+            }
+            demande = demande + n < 0 ? Long.MAX_VALUE : demande + n;
+            notifyAll();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (annule) {
+                    return;
+                }
+                annule = true;
+                notifyAll();
+            }
+            token.cancel();
+        }
+
+        /**
+         * Attend que l'abonné demande un élément.
+         *
+         * @return false si l'abonnement a été annulé
+         */
+        private synchronized boolean attendreDemande() {
+            while (demande == 0 && !annule) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    annule = true;
+                }
+            }
+            if (annule) {
+                return false;
+            }
+            demande--;
+            return true;
+        }
+
+        private synchronized boolean estAnnule() {
+            return annule;
+        }
+
+        private void publier() {
+            try {
+                token.run(this::lire);
+            } finally {
+                IllegalArgumentException erreur;
+                synchronized (this) {
+                    erreur = refus;
+                }
+                if (erreur != null) {
+                    subscriber.onError(erreur);
+                }
+            }
+        }
+
+        private void lire() {
+            List<T> lus = fin != null ? new ArrayList<>() : null;
+            boolean commence = false;
+            try {
+                List<T> copie = copieRecente.get();
+                if (copie != null) {
+                    publierListe(copie);
+                    return;
+                }
+                // Une page vide marque la fin : une page de moins de TAILLE_PAGE éléments
+                // n'en dit rien quand un élément regroupe plusieurs lignes
+                int apres = 0;
+                List<T> page;
+                while (!(page = lirePage(apres)).isEmpty()) {
+                    for (T element : page) {
+                        if (!attendreDemande()) {
+                            return;
+                        }
+                        commence = true;
+                        if (lus != null) {
+                            lus.add(element);
+                        }
+                        subscriber.onNext(element);
+                    }
+                    apres = derniereCle.applyAsInt(page.get(page.size() - 1));
+                }
+                if (estAnnule()) {
+                    return;
+                }
+                if (fin != null) {
+                    for (T element : fin.apply(lus)) {
+                        if (!attendreDemande()) {
+                            return;
+                        }
+                        subscriber.onNext(element);
+                    }
+                }
+                subscriber.onComplete();
+            } catch (SQLException e) {
+                if (!commence && secours != null && DatabaseConnection.isConnectionFailure(e)) {
+                    publierListe(secours.get()); // Hors ligne : dernière copie connue
+                } else if (!estAnnule()) {
+                    subscriber.onError(e);
+                }
+            } catch (RuntimeException e) {
+                if (!estAnnule()) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * Lit la page qui suit la clé donnée ; la connexion est rendue avant la publication.
+         */
+        private List<T> lirePage(int apres) throws SQLException {
+            List<T> page = new ArrayList<>();
+            try (Connection conn = connexion.ouvrir();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                parametres.lier(stmt);
+                stmt.setInt(rangCle, apres);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    Lecteur<T> lecteur = lecture.ouvrir(rs);
+                    T element;
+                    while ((element = lecteur.suivant()) != null) {
+                        page.add(element);
+                    }
+                }
+            }
+            return page;
+        }
+
+        private void publierListe(List<T> elements) {
+            for (T element : elements) {
+                if (!attendreDemande()) {
+                    return;
+                }
+                subscriber.onNext(element);
+            }
+            subscriber.onComplete();
+        }
+    }
+}
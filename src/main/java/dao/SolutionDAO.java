@@ -2,17 +2,36 @@ package dao;
 
 import models.Solution;
 import utils.DatabaseConnection;
+import utils.LocalReplica;
+import utils.RetryPolicy;
+import utils.SyncOutbox;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * DAO (Data Access Object) de la solution.
  * Fournit des méthodes pour accéder aux données de la table "solution" de la base de données.
+ *
+ * Les solutions lues sont recopiées dans la réplique locale, qui sert de secours quand la base
+ * est injoignable ; les écritures faites hors ligne passent par la file d'attente SyncOutbox.
+ *
+ * Les écritures sont rejouées par la {@link RetryPolicy} quand la transaction est annulée par
+ * un interblocage ou un délai d'attente de verrou (compteurs d'un exercice très sollicité) ;
+ * les modifications et suppressions, idempotentes, le sont aussi après une coupure de connexion.
  */
 public class SolutionDAO {
+    private static final RetryPolicy RETRY = DatabaseConnection.getRetryPolicy();
 
     /**
      * Récupère la liste des solutions associées à un exercice donné.
@@ -21,79 +40,70 @@ public class SolutionDAO {
      * @return une liste de solutions
      */
     public List<Solution> getSolutionsByExercice(int exerciceId) {
+        Predicate<Solution> filtre = solution -> solution.getExerciceId() == exerciceId;
         List<Solution> solutions = new ArrayList<>();
-        String sql = "SELECT s.* FROM solution s WHERE s.exercice_id = ?";
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
+                     "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.exercice_id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             // Définition du paramètre dans la requête
             stmt.setInt(1, exerciceId);
             ResultSet rs = stmt.executeQuery();
+            RowMapper<Solution> mapper = RowMappers.solution(rs);
             while (rs.next()) {
-                // Création d'une instance de Solution avec les valeurs récupérées
-                Solution solution = new Solution(
-                        rs.getInt("id"),
-                        rs.getString("contenu"),
-                        rs.getTimestamp("date_creation").toLocalDateTime(),
-                        rs.getInt("exercice_id"),
-                        rs.getInt("auteur_id")
-                );
-                
-                // Récupération du nom de l'auteur de manière indépendante pour plus de robustesse
-                try {
-                    int auteurId = rs.getInt("auteur_id");
-                    solution.setAuteurNom(getUserName(auteurId));
-                } catch (Exception e) {
-                    // En cas d'erreur, on définit un nom par défaut
-                    solution.setAuteurNom("Utilisateur " + rs.getInt("auteur_id"));
-                }
-                
-                solutions.add(solution);
+                solutions.add(mapper.map(rs));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return solutions;
-    }
-
-    /**
-     * Méthode utilitaire pour récupérer le nom d'un utilisateur à partir de son ID.
-     *
-     * @param userId l'identifiant de l'utilisateur
-     * @return le nom de l'utilisateur ou un nom par défaut si non trouvé
-     */
-    private String getUserName(int userId) {
-        String sql = "SELECT nom FROM utilisateur WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                String nom = rs.getString("nom");
-                return (nom != null && !nom.isEmpty()) ? nom : "Utilisateur " + userId;
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return LocalReplica.get().findSolutions(filtre);
             }
-        } catch (SQLException e) {
-            // En cas d'erreur, retourne un nom par défaut
+            e.printStackTrace();
+            return solutions;
         }
-        return "Utilisateur " + userId;
+        return synchroniserReplique(filtre, solutions);
     }
 
     /**
      * Ajoute une nouvelle solution dans la base de données.
+     * Le nombre de solutions de l'exercice est incrémenté dans la même transaction.
+     * Si la base est injoignable, la solution est mise en attente et reçoit un identifiant négatif ;
+     * la clé d'ajout, envoyée dès la première tentative, évite de l'insérer deux fois si la
+     * coupure est survenue après la validation.
      *
      * @param solution la solution à ajouter
      * @return true si l'ajout a réussi, false sinon
      */
     public boolean addSolution(Solution solution) {
-        String sql = "INSERT INTO solution (contenu, date_creation, exercice_id, auteur_id) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, solution.getContenu());
-            stmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
-            stmt.setInt(3, solution.getExerciceId());
-            stmt.setInt(4, solution.getAuteurId());
-            stmt.executeUpdate();
+        String sql = "INSERT INTO solution (contenu, date_creation, exercice_id, auteur_id, cle_ajout) VALUES (?, ?, ?, ?, ?)";
+        String cle = UUID.randomUUID().toString();
+        try {
+            RETRY.run(false, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        stmt.setString(1, solution.getContenu());
+                        stmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
+                        stmt.setInt(3, solution.getExerciceId());
+                        stmt.setInt(4, solution.getAuteurId());
+                        stmt.setString(5, cle);
+                        stmt.executeUpdate();
+                        CompteurDAO.ajusterSolutions(conn, solution.getExerciceId(), 1);
+                        StatistiqueDAO.enregistrerSolutions(conn, List.of(solution));
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+            });
             return true;
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                ajouterHorsLigne(solution, cle);
+                return true;
+            }
             e.printStackTrace();
             return false;
         }
@@ -101,20 +111,43 @@ public class SolutionDAO {
 
     /**
      * Met à jour une solution existante dans la base de données.
+     * Si la base est injoignable, la modification est mise en attente.
      *
      * @param solution la solution à mettre à jour
      * @return true si la mise à jour a réussi, false sinon
      */
     public boolean updateSolution(Solution solution) {
-        String sql = "UPDATE solution SET contenu = ?, date_creation = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, solution.getContenu());
-            stmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
-            stmt.setInt(3, solution.getId());
-            stmt.executeUpdate();
+        if (solution.getId() < 0) {
+            modifierHorsLigne(solution); // Pas encore envoyée au serveur
+            return true;
+        }
+        // LAST_INSERT_ID(expr) rend la nouvelle version lisible sur la même connexion
+        String sql = "UPDATE solution SET contenu = ?, date_creation = ?, version = LAST_INSERT_ID(version + 1) WHERE id = ?";
+        try {
+            RETRY.run(true, () -> {
+                try (Connection conn = DatabaseConnection.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, solution.getContenu());
+                    stmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
+                    stmt.setInt(3, solution.getId());
+                    if (stmt.executeUpdate() > 0) {
+                        // Version de référence d'une prochaine modification hors ligne
+                        try (PreparedStatement version = conn.prepareStatement("SELECT LAST_INSERT_ID()");
+                             ResultSet rs = version.executeQuery()) {
+                            if (rs.next()) {
+                                solution.setVersion(rs.getInt(1));
+                            }
+                        }
+                    }
+                }
+            });
+            LocalReplica.get().putSolution(solution);
             return true;
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                modifierHorsLigne(solution);
+                return true;
+            }
             e.printStackTrace();
             return false;
         }
@@ -122,18 +155,44 @@ public class SolutionDAO {
 
     /**
      * Supprime une solution à partir de son identifiant.
+     * Si la base est injoignable, la suppression est mise en attente.
      *
      * @param id l'identifiant de la solution à supprimer
      * @return true si la suppression a réussi, false sinon
      */
     public boolean deleteSolution(int id) {
+        if (id < 0) {
+            supprimerHorsLigne(id); // Pas encore envoyée au serveur
+            return true;
+        }
         String sql = "DELETE FROM solution WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
+        try {
+            // Rejouée après une coupure, la suppression ne trouve plus la ligne et ne touche pas au compteur
+            RETRY.run(true, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        int exerciceId = CompteurDAO.lireParent(conn, "SELECT exercice_id FROM solution WHERE id = ? FOR UPDATE", id);
+                        stmt.setInt(1, id);
+                        if (stmt.executeUpdate() > 0) {
+                            CompteurDAO.ajusterSolutions(conn, exerciceId, -1);
+                        }
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+            });
+            LocalReplica.get().removeSolution(id);
             return true;
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                supprimerHorsLigne(id);
+                return true;
+            }
             e.printStackTrace();
             return false;
         }
@@ -146,32 +205,19 @@ public class SolutionDAO {
      * @return la solution si trouvée, sinon null
      */
     public Solution getSolutionById(int id) {
-        String sql = "SELECT s.* FROM solution s WHERE s.id = ?";
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
+                     "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                // Création de l'objet Solution avec les champs extraits de la base
-                Solution solution = new Solution(
-                        rs.getInt("id"),
-                        rs.getString("contenu"),
-                        rs.getTimestamp("date_creation").toLocalDateTime(),
-                        rs.getInt("exercice_id"),
-                        rs.getInt("auteur_id")
-                );
-                
-                // Récupération du nom de l'auteur via la méthode utilitaire
-                try {
-                    int auteurId = rs.getInt("auteur_id");
-                    solution.setAuteurNom(getUserName(auteurId));
-                } catch (Exception e) {
-                    solution.setAuteurNom("Utilisateur " + rs.getInt("auteur_id"));
-                }
-                
-                return solution;
+                return RowMappers.solution(rs).map(rs);
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return LocalReplica.get().getSolution(id);
+            }
             e.printStackTrace();
         }
         return null;
@@ -184,43 +230,36 @@ public class SolutionDAO {
      * @return une liste de solutions
      */
     public List<Solution> getSolutionsByCreateur(int createurId) {
+        // Les exercices de ce créateur déjà connus localement délimitent la portée dans la réplique
+        Set<Integer> exerciceIds = new HashSet<>();
+        for (models.Exercice exercice : LocalReplica.get().findExercices(exercice -> exercice.getCreateurId() == createurId)) {
+            exerciceIds.add(exercice.getId());
+        }
+        Predicate<Solution> filtre = solution -> exerciceIds.contains(solution.getExerciceId());
         List<Solution> solutions = new ArrayList<>();
-        String sql = "SELECT s.* FROM solution s " +
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
                     "JOIN exercice e ON s.exercice_id = e.id " +
+                    "LEFT JOIN utilisateur u ON s.auteur_id = u.id " +
                     "WHERE e.createur_id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, createurId);
             
-            try {
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    // Instanciation de la solution à partir des résultats
-                    Solution solution = new Solution(
-                            rs.getInt("id"),
-                            rs.getString("contenu"),
-                            rs.getTimestamp("date_creation").toLocalDateTime(),
-                            rs.getInt("exercice_id"),
-                            rs.getInt("auteur_id")
-                    );
-                    
-                    // Récupération du nom de l'auteur
-                    try {
-                        int auteurId = rs.getInt("auteur_id");
-                        solution.setAuteurNom(getUserName(auteurId));
-                    } catch (Exception e) {
-                        solution.setAuteurNom("Utilisateur " + rs.getInt("auteur_id"));
-                    }
-                    
-                    solutions.add(solution);
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
+            ResultSet rs = stmt.executeQuery();
+            RowMapper<Solution> mapper = RowMappers.solution(rs);
+            while (rs.next()) {
+                Solution solution = mapper.map(rs);
+                solutions.add(solution);
+                exerciceIds.add(solution.getExerciceId());
             }
         } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return LocalReplica.get().findSolutions(filtre);
+            }
             e.printStackTrace();
+            return solutions;
         }
-        return solutions;
+        return synchroniserReplique(filtre, solutions);
     }
     
     /**
@@ -230,98 +269,275 @@ public class SolutionDAO {
      * @return une liste de solutions
      */
     public List<Solution> getSolutionsByAuteur(int auteurId) {
+        Predicate<Solution> filtre = solution -> solution.getAuteurId() == auteurId;
         List<Solution> solutions = new ArrayList<>();
-        String sql = "SELECT s.* FROM solution s WHERE s.auteur_id = ?";
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
+                     "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.auteur_id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, auteurId);
             
-            try {
-                ResultSet rs = stmt.executeQuery();
+            ResultSet rs = stmt.executeQuery();
+            RowMapper<Solution> mapper = RowMappers.solution(rs);
+            while (rs.next()) {
+                solutions.add(mapper.map(rs));
+            }
+        } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return LocalReplica.get().findSolutions(filtre);
+            }
+            e.printStackTrace();
+            return solutions;
+        }
+        return synchroniserReplique(filtre, solutions);
+    }
+
+    /**
+     * Publie au fil de l'eau les solutions d'un exercice, pour un affichage progressif ;
+     * les solutions écrites hors ligne suivent celles de la base.
+     *
+     * @param exerciceId l'identifiant de l'exercice
+     */
+    public Flow.Publisher<Solution> streamSolutionsByExercice(int exerciceId) {
+        Predicate<Solution> filtre = solution -> solution.getExerciceId() == exerciceId;
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
+                     "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.exercice_id = ? AND s.id > ?";
+        return new RowPublisher<>(DatabaseConnection::getConnection, sql, "s.id", stmt -> stmt.setInt(1, exerciceId),
+                RowPublisher.lignes(RowMappers::solution), Solution::getId)
+                .secours(() -> LocalReplica.get().findSolutions(filtre))
+                .fin(solutions -> remplacerDansReplique(filtre, solutions));
+    }
+
+    /**
+     * Publie au fil de l'eau les solutions des exercices d'un créateur, pour un affichage
+     * progressif. Même portée dans la réplique que getSolutionsByCreateur.
+     *
+     * @param createurId l'identifiant du créateur des exercices
+     */
+    public Flow.Publisher<Solution> streamSolutionsByCreateur(int createurId) {
+        Set<Integer> exerciceIds = new HashSet<>();
+        for (models.Exercice exercice : LocalReplica.get().findExercices(exercice -> exercice.getCreateurId() == createurId)) {
+            exerciceIds.add(exercice.getId());
+        }
+        Predicate<Solution> filtre = solution -> exerciceIds.contains(solution.getExerciceId());
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
+                    "JOIN exercice e ON s.exercice_id = e.id " +
+                    "LEFT JOIN utilisateur u ON s.auteur_id = u.id " +
+                    "WHERE e.createur_id = ? AND s.id > ?";
+        // Les exercices rencontrés élargissent la portée, comme dans getSolutionsByCreateur
+        RowPublisher.Lecture<Solution> lecture = rs -> {
+            RowMapper<Solution> mapper = RowMappers.solution(rs);
+            return () -> {
+                if (!rs.next()) {
+                    return null;
+                }
+                Solution solution = mapper.map(rs);
+                exerciceIds.add(solution.getExerciceId());
+                return solution;
+            };
+        };
+        return new RowPublisher<>(DatabaseConnection::getConnection, sql, "s.id", stmt -> stmt.setInt(1, createurId),
+                lecture, Solution::getId)
+                .secours(() -> LocalReplica.get().findSolutions(filtre))
+                .fin(solutions -> remplacerDansReplique(filtre, solutions));
+    }
+
+    /**
+     * Parcourt toutes les solutions sans jamais les charger toutes en mémoire.
+     * Le nom de l'auteur est obtenu par jointure plutôt que par une requête par ligne ; les
+     * solutions sont lues par pages dans l'ordre des identifiants, chaque page sur une
+     * connexion empruntée le temps de sa lecture seulement (voir ExerciceDAO.forEachExercice).
+     *
+     * @param consumer le traitement appliqué à chaque solution
+     * @return le nombre de solutions parcourues
+     * @throws SQLException si la lecture échoue (un export ne doit pas être tronqué en silence)
+     */
+    public long forEachSolution(Consumer<Solution> consumer) throws SQLException {
+        long count = 0;
+        int dernier = 0;
+        List<Solution> page;
+        do {
+            int apres = dernier;
+            page = RETRY.call(true, () -> lirePageSolutions(apres));
+            for (Solution solution : page) {
+                consumer.accept(solution);
+                dernier = solution.getId();
+            }
+            count += page.size();
+        } while (page.size() == RowPublisher.TAILLE_PAGE);
+        return count;
+    }
+
+    private List<Solution> lirePageSolutions(int apres) throws SQLException {
+        String sql = "SELECT s.*, u.nom as auteur_nom FROM solution s " +
+                     "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.id > ? ORDER BY s.id LIMIT " + RowPublisher.TAILLE_PAGE;
+        List<Solution> page = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, apres);
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<Solution> mapper = RowMappers.solution(rs);
                 while (rs.next()) {
-                    // Création d'une solution avec les données de la requête
-                    Solution solution = new Solution(
-                            rs.getInt("id"),
-                            rs.getString("contenu"),
-                            rs.getTimestamp("date_creation").toLocalDateTime(),
-                            rs.getInt("exercice_id"),
-                            rs.getInt("auteur_id")
-                    );
-                    
-                    // On utilise l'ID de l'auteur pour obtenir son nom
-                    solution.setAuteurNom(getUserName(auteurId));
-                    
-                    solutions.add(solution);
+                    page.add(mapper.map(rs));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Insère une liste de solutions en un seul lot JDBC, dans une seule transaction.
+     * Utilisé par l'import en masse : un aller-retour par lot au lieu d'un par solution.
+     *
+     * @param solutions les solutions à insérer
+     * @return le nombre de solutions insérées
+     * @throws SQLException si le lot échoue (la transaction est alors annulée)
+     */
+    public int addSolutionsBatch(List<Solution> solutions) throws SQLException {
+        return RETRY.call(false, () -> insererLot(solutions));
+    }
+
+    private int insererLot(List<Solution> solutions) throws SQLException {
+        String sql = "INSERT INTO solution (contenu, date_creation, exercice_id, auteur_id) VALUES (?, ?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Solution solution : solutions) {
+                    stmt.setString(1, solution.getContenu());
+                    stmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
+                    stmt.setInt(3, solution.getExerciceId());
+                    stmt.setInt(4, solution.getAuteurId());
+                    stmt.addBatch();
                 }
+                stmt.executeBatch();
+                // Un ajustement par exercice, dans l'ordre des identifiants
+                Map<Integer, Integer> parExercice = new TreeMap<>();
+                for (Solution solution : solutions) {
+                    parExercice.merge(solution.getExerciceId(), 1, Integer::sum);
+                }
+                for (Map.Entry<Integer, Integer> entry : parExercice.entrySet()) {
+                    CompteurDAO.ajusterSolutions(conn, entry.getKey(), entry.getValue());
+                }
+                StatistiqueDAO.enregistrerSolutions(conn, solutions);
+                conn.commit();
+                return solutions.size();
             } catch (SQLException e) {
-                e.printStackTrace();
+                conn.rollback(); // Annuler tout le lot en cas d'erreur
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return solutions;
     }
 
     /**
      * Ajoute une solution dans la base de données et renvoie l'objet solution avec son ID attribué.
+     * Hors ligne, l'identifiant est temporaire (négatif) jusqu'à la synchronisation.
      *
      * @param solution la solution à ajouter
      * @return la solution créée avec son identifiant ou null si l'opération échoue
      */
     public Solution addSolutionAndReturn(Solution solution) {
-        String insertSql = "INSERT INTO solution (contenu, date_creation, exercice_id, auteur_id) VALUES (?, ?, ?, ?)";
+        String insertSql = "INSERT INTO solution (contenu, date_creation, exercice_id, auteur_id, cle_ajout) VALUES (?, ?, ?, ?, ?)";
         String getLastIdSql = "SELECT LAST_INSERT_ID()";
+        String cle = UUID.randomUUID().toString(); // Voir addSolution
         
-        Connection conn = null;
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Démarrage de la transaction
-            
-            // Exécution de l'insertion
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                insertStmt.setString(1, solution.getContenu());
-                insertStmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
-                insertStmt.setInt(3, solution.getExerciceId());
-                insertStmt.setInt(4, solution.getAuteurId());
-                insertStmt.executeUpdate();
-            }
-            
-            int lastInsertId = 0;
-            // Récupération de l'identifiant généré pour la solution insérée
-            try (PreparedStatement idStmt = conn.prepareStatement(getLastIdSql);
-                 ResultSet rs = idStmt.executeQuery()) {
-                if (rs.next()) {
-                    lastInsertId = rs.getInt(1);
+            int lastInsertId = RETRY.call(false, () -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    conn.setAutoCommit(false); // Démarrage de la transaction
+                    try {
+                        // Exécution de l'insertion
+                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                            insertStmt.setString(1, solution.getContenu());
+                            insertStmt.setTimestamp(2, Timestamp.valueOf(solution.getDateCreation()));
+                            insertStmt.setInt(3, solution.getExerciceId());
+                            insertStmt.setInt(4, solution.getAuteurId());
+                            insertStmt.setString(5, cle);
+                            insertStmt.executeUpdate();
+                        }
+                        
+                        int id = 0;
+                        // Récupération de l'identifiant généré pour la solution insérée
+                        try (PreparedStatement idStmt = conn.prepareStatement(getLastIdSql);
+                             ResultSet rs = idStmt.executeQuery()) {
+                            if (rs.next()) {
+                                id = rs.getInt(1);
+                            }
+                        }
+                        
+                        CompteurDAO.ajusterSolutions(conn, solution.getExerciceId(), 1);
+                        StatistiqueDAO.enregistrerSolutions(conn, List.of(solution));
+                        conn.commit(); // Validation de la transaction
+                        return id;
+                    } catch (SQLException e) {
+                        conn.rollback(); // Annulation en cas d'erreur
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true); // Rétablissement du mode autocommit
+                    }
                 }
-            }
-            
-            conn.commit(); // Validation de la transaction
+            });
             
             if (lastInsertId > 0) {
                 solution.setId(lastInsertId);
+                solution.setVersion(1); // Valeur par défaut de la colonne (V8__version_solution.sql)
                 return solution;
             }
             
             return null;
         } catch (SQLException e) {
-            try {
-                if (conn != null) {
-                    conn.rollback(); // Annulation en cas d'erreur
-                }
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                return ajouterHorsLigne(solution, cle);
             }
             e.printStackTrace();
             return null;
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true); // Rétablissement du mode autocommit
-                    conn.close();
-                }
-            } catch (SQLException closeEx) {
-                closeEx.printStackTrace();
-            }
         }
     }
+
+    /**
+     * Met à jour la réplique locale avec les solutions lues, puis y ajoute les solutions
+     * écrites hors ligne qui n'ont pas encore été synchronisées.
+     */
+    private List<Solution> synchroniserReplique(Predicate<Solution> filtre, List<Solution> solutions) {
+        solutions.addAll(remplacerDansReplique(filtre, solutions));
+        return solutions;
+    }
+
+    /**
+     * Met à jour la réplique locale avec les solutions lues.
+     *
+     * @return les solutions écrites hors ligne qui n'ont pas encore été synchronisées
+     */
+    private static List<Solution> remplacerDansReplique(Predicate<Solution> filtre, List<Solution> solutions) {
+        LocalReplica replica = LocalReplica.get();
+        replica.replaceSolutions(filtre, solutions);
+        return replica.findSolutions(solution -> solution.getId() < 0 && filtre.test(solution));
+    }
+
+    private Solution ajouterHorsLigne(Solution solution, String cle) {
+        SyncOutbox.get().enqueueAdd(solution, cle);
+        LocalReplica.get().putSolution(solution);
+        return solution;
+    }
+
+    private void modifierHorsLigne(Solution solution) {
+        // La version de référence est la solution telle que lue pour la dernière fois sur le serveur
+        Solution copie = LocalReplica.get().getSolution(solution.getId());
+        SyncOutbox.get().enqueueUpdate(solution, copie != null ? copie.getVersion() : 0);
+        LocalReplica.get().putSolution(solution);
+    }
+
+    private void supprimerHorsLigne(int id) {
+        Solution copie = LocalReplica.get().getSolution(id);
+        if (copie != null) {
+            SyncOutbox.get().enqueueDelete(copie, copie.getVersion());
+        } else {
+            Solution inconnue = new Solution();
+            inconnue.setId(id);
+            inconnue.setDateCreation(LocalDateTime.now());
+            SyncOutbox.get().enqueueDelete(inconnue, 0); // Rejetée à la synchronisation : version inconnue
+        }
+        LocalReplica.get().removeSolution(id);
+    }
 }
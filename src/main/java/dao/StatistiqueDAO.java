@@ -0,0 +1,301 @@
+package dao;
+
+import models.Solution;
+import models.TableauDeBord;
+import utils.DatabaseConnection;
+import utils.HyperLogLog;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Agrégats de l'activité de dépôt des solutions, pour le tableau de bord des professeurs.
+ *
+ * Trois tables résument les dépôts :
+ *  • stat_jour : nombre de solutions par exercice et par jour ;
+ *  • stat_contributeur : nombre de solutions par auteur sur les exercices de chaque professeur ;
+ *  • stat_auteurs_hll : registres HyperLogLog des auteurs de chaque exercice, pour estimer
+ *    le nombre d'auteurs distincts sans garder la liste (une ligne par registre non vide,
+ *    1024 au plus par exercice).
+ *
+ * Tous les dépôts du jour sur un exercice mettraient à jour la même ligne de stat_jour : la
+ * transaction du dépôt n'y touche donc pas. Elle ajoute seulement une ligne à stat_depot_delta
+ * (table en ajout seul, sans verrou partagé), et une consolidation toutes les quelques secondes
+ * reporte les dépôts en attente sur les trois tables, puis les supprime, comme
+ * CompteurDAO.consolider pour exercice.nb_solutions. Le tableau de bord peut donc retarder de
+ * quelques secondes.
+ *
+ * Le tableau de bord ne lit que ces agrégats sur la période affichée : son coût dépend du
+ * nombre d'exercices et de jours, pas de l'historique des solutions. Les statistiques
+ * comptent les dépôts : supprimer une solution ne les diminue pas. Les tables sont créées
+ * et remplies à partir des solutions existantes par la migration V5__statistiques.sql, la
+ * table des dépôts en attente par V9.
+ */
+public class StatistiqueDAO {
+    private static final Logger LOGGER = Logger.getLogger(StatistiqueDAO.class.getName());
+    private static final int LIMITE_CLASSEMENT = 10;
+    // Dépôts reportés par transaction de consolidation
+    private static final int TAILLE_CONSOLIDATION = 1000;
+
+    private static final String SQL_DEPOT = "INSERT INTO stat_depot_delta (exercice_id, auteur_id, jour) VALUES (?, ?, ?)";
+    private static final String SQL_LECTURE = "SELECT id, exercice_id, auteur_id, jour FROM stat_depot_delta " +
+            "ORDER BY id LIMIT " + TAILLE_CONSOLIDATION + " FOR UPDATE";
+    private static final String SQL_SUPPRESSION = "DELETE FROM stat_depot_delta WHERE id = ?";
+    private static final String SQL_JOUR = "INSERT INTO stat_jour (exercice_id, jour, nb_solutions) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE nb_solutions = nb_solutions + ?";
+    private static final String SQL_CONTRIBUTEUR = "INSERT INTO stat_contributeur (createur_id, auteur_id, nb_solutions) " +
+            "SELECT createur_id, ?, ? FROM exercice WHERE id = ? " +
+            "ON DUPLICATE KEY UPDATE nb_solutions = nb_solutions + ?";
+    private static final String SQL_REGISTRE = "INSERT INTO stat_auteurs_hll (exercice_id, registre, rang) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE rang = GREATEST(rang, ?)";
+
+    /**
+     * Enregistre des solutions déposées, reportées sur les agrégats à la prochaine
+     * consolidation. À appeler dans la transaction qui les a insérées ; aucune ligne
+     * d'agrégat n'est verrouillée.
+     */
+    static void enregistrerSolutions(Connection conn, List<Solution> solutions) throws SQLException {
+        if (solutions.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_DEPOT)) {
+            for (Solution solution : solutions) {
+                stmt.setInt(1, solution.getExerciceId());
+                stmt.setInt(2, solution.getAuteurId());
+                stmt.setDate(3, Date.valueOf(solution.getDateCreation().toLocalDate()));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Reporte les dépôts en attente sur les agrégats : une transaction courte par lot, une
+     * requête par exercice et par jour quel que soit le nombre de dépôts.
+     *
+     * @return le nombre de dépôts reportés (0 si la base est injoignable)
+     */
+    public static int consolider() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int total = 0;
+            int lot;
+            do {
+                lot = consolider(conn);
+                total += lot;
+            } while (lot == TAILLE_CONSOLIDATION);
+            return total;
+        } catch (SQLException e) {
+            if (!DatabaseConnection.isConnectionFailure(e)) {
+                LOGGER.log(Level.WARNING, "Statistics consolidation failed", e);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Reporte un lot de dépôts, les plus anciens d'abord, et les supprime. Comme pour
+     * CompteurDAO, la lecture verrouillante en READ COMMITTED laisse les dépôts continuer ;
+     * seules les lignes lues sont supprimées, par identifiant.
+     *
+     * @return le nombre de dépôts reportés
+     */
+    private static int consolider(Connection conn) throws SQLException {
+        int isolation = conn.getTransactionIsolation();
+        conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        conn.setAutoCommit(false);
+        try {
+            List<Long> lus = new ArrayList<>();
+            Map<Cle, Integer> parJour = new TreeMap<>();
+            Map<Cle, Integer> parAuteur = new TreeMap<>();
+            Map<Cle, Integer> registres = new TreeMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_LECTURE);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lus.add(rs.getLong(1));
+                    int exerciceId = rs.getInt(2);
+                    int auteurId = rs.getInt(3);
+                    parJour.merge(new Cle(exerciceId, (int) rs.getDate(4).toLocalDate().toEpochDay()), 1, Integer::sum);
+                    parAuteur.merge(new Cle(exerciceId, auteurId), 1, Integer::sum);
+                    long hash = HyperLogLog.hash(auteurId);
+                    registres.merge(new Cle(exerciceId, HyperLogLog.register(hash)), HyperLogLog.rank(hash), Math::max);
+                }
+            }
+            if (lus.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_JOUR)) {
+                for (Map.Entry<Cle, Integer> entry : parJour.entrySet()) {
+                    stmt.setInt(1, entry.getKey().a);
+                    stmt.setDate(2, Date.valueOf(LocalDate.ofEpochDay(entry.getKey().b)));
+                    stmt.setInt(3, entry.getValue());
+                    stmt.setInt(4, entry.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_CONTRIBUTEUR)) {
+                for (Map.Entry<Cle, Integer> entry : parAuteur.entrySet()) {
+                    stmt.setInt(1, entry.getKey().b);
+                    stmt.setInt(2, entry.getValue());
+                    stmt.setInt(3, entry.getKey().a);
+                    stmt.setInt(4, entry.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_REGISTRE)) {
+                for (Map.Entry<Cle, Integer> entry : registres.entrySet()) {
+                    stmt.setInt(1, entry.getKey().a);
+                    stmt.setInt(2, entry.getKey().b);
+                    stmt.setInt(3, entry.getValue());
+                    stmt.setInt(4, entry.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_SUPPRESSION)) {
+                for (long id : lus) {
+                    stmt.setLong(1, id);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+            return lus.size();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            conn.setTransactionIsolation(isolation);
+        }
+    }
+
+    /**
+     * Lit l'activité des exercices d'un professeur sur les derniers jours.
+     *
+     * @param createurId le professeur
+     * @param jours la longueur de la période, aujourd'hui compris
+     * @return le tableau de bord, vide si la base est injoignable
+     */
+    public TableauDeBord getTableauDeBord(int createurId, int jours) {
+        LocalDate fin = LocalDate.now();
+        LocalDate debut = fin.minusDays(jours - 1L);
+        TableauDeBord tableau = new TableauDeBord(debut, fin);
+        for (LocalDate jour = debut; !jour.isAfter(fin); jour = jour.plusDays(1)) {
+            tableau.getSolutionsParJour().put(jour, 0); // Les jours sans dépôt apparaissent aussi
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            String sqlJours = "SELECT s.jour, SUM(s.nb_solutions) FROM stat_jour s " +
+                    "JOIN exercice e ON e.id = s.exercice_id " +
+                    "WHERE e.createur_id = ? AND s.jour >= ? GROUP BY s.jour";
+            try (PreparedStatement stmt = conn.prepareStatement(sqlJours)) {
+                stmt.setInt(1, createurId);
+                stmt.setDate(2, Date.valueOf(debut));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        tableau.getSolutionsParJour().put(rs.getDate(1).toLocalDate(), rs.getInt(2));
+                    }
+                }
+            }
+
+            String sqlExercices = "SELECT e.titre, SUM(s.nb_solutions) AS total FROM stat_jour s " +
+                    "JOIN exercice e ON e.id = s.exercice_id " +
+                    "WHERE e.createur_id = ? AND s.jour >= ? " +
+                    "GROUP BY e.id, e.titre ORDER BY total DESC LIMIT " + LIMITE_CLASSEMENT;
+            try (PreparedStatement stmt = conn.prepareStatement(sqlExercices)) {
+                stmt.setInt(1, createurId);
+                stmt.setDate(2, Date.valueOf(debut));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        tableau.getSolutionsParExercice().put(rs.getString(1), rs.getInt(2));
+                    }
+                }
+            }
+
+            String sqlContributeurs = "SELECT c.auteur_id, u.nom, c.nb_solutions FROM stat_contributeur c " +
+                    "LEFT JOIN utilisateur u ON u.id = c.auteur_id " +
+                    "WHERE c.createur_id = ? ORDER BY c.nb_solutions DESC LIMIT " + LIMITE_CLASSEMENT;
+            try (PreparedStatement stmt = conn.prepareStatement(sqlContributeurs)) {
+                stmt.setInt(1, createurId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String nom = rs.getString(2);
+                        tableau.getMeilleursContributeurs().put(
+                                nom != null && !nom.isEmpty() ? nom : "Utilisateur " + rs.getInt(1), rs.getInt(3));
+                    }
+                }
+            }
+
+            String sqlSansSolution = "SELECT titre FROM exercice WHERE createur_id = ? AND nb_solutions = 0 " +
+                    "ORDER BY date_creation DESC";
+            try (PreparedStatement stmt = conn.prepareStatement(sqlSansSolution)) {
+                stmt.setInt(1, createurId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        tableau.getExercicesSansSolution().add(rs.getString(1));
+                    }
+                }
+            }
+
+            // Les esquisses des exercices se combinent registre par registre : on garde le maximum
+            String sqlAuteurs = "SELECT h.registre, MAX(h.rang) FROM stat_auteurs_hll h " +
+                    "JOIN exercice e ON e.id = h.exercice_id WHERE e.createur_id = ? GROUP BY h.registre";
+            HyperLogLog auteurs = new HyperLogLog();
+            try (PreparedStatement stmt = conn.prepareStatement(sqlAuteurs)) {
+                stmt.setInt(1, createurId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        auteurs.update(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+            }
+            tableau.setAuteursDistincts(auteurs.estimate());
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return tableau;
+    }
+
+    /**
+     * Couple d'entiers servant de clé de regroupement ; l'ordre fixe l'ordre des écritures,
+     * donc des verrous, d'une transaction à l'autre.
+     */
+    private static final class Cle implements Comparable<Cle> {
+        private final int a;
+        private final int b;
+
+        private Cle(int a, int b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public int compareTo(Cle other) {
+            int cmp = Integer.compare(a, other.a);
+            return cmp != 0 ? cmp : Integer.compare(b, other.b);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Cle && ((Cle) o).a == a && ((Cle) o).b == b;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(a, b);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package dao;
 
 import models.Utilisateur;
 import utils.DatabaseConnection;
+import utils.LocalReplica;
+import utils.LoginThrottle;
+import utils.PasswordHasher;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -10,44 +13,88 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class UtilisateurDAO {
+    // Nombre de lignes traitées par transaction lors des suppressions en cascade
+    private static final int TAILLE_LOT = 1000;
+
     /**
-     * Recherche un utilisateur dans la base de données par email, mot de passe et rôle.
+     * Recherche un utilisateur par email et rôle, puis vérifie son mot de passe.
+     * La recherche se fait sur la colonne email indexée ; le mot de passe est comparé à son
+     * hachage PBKDF2 côté client, la connexion étant déjà rendue au pool pendant ce calcul.
+     * Un mot de passe encore en clair (ancien compte) ou haché avec un coût inférieur au coût
+     * actuel est haché à nouveau après une connexion réussie. Un email inconnu coûte le même
+     * calcul qu'un mauvais mot de passe.
      * Renvoie l'utilisateur si trouvé, sinon renvoie null.
      */
     public Utilisateur findByEmailAndPasswordAndRole(String email, String password, String role) {
-        String sql = "SELECT * FROM utilisateur WHERE email = ? AND mot_de_passe = ? AND role = ?";
+        Utilisateur user;
+        try {
+            user = findByEmailAndRole(email, role);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (user == null) {
+            PasswordHasher.verifyUnknown(password);
+            return null;
+        }
+        return verifierMotDePasse(user, password) ? user : null;
+    }
+
+    /**
+     * Vérifie le mot de passe d'un utilisateur lu par findByEmailAndRole, et le hache à nouveau
+     * si son stockage est obsolète.
+     */
+    boolean verifierMotDePasse(Utilisateur user, String password) {
+        if (!PasswordHasher.verify(password, user.getMotDePasse())) {
+            return false;
+        }
+        if (PasswordHasher.needsRehash(user.getMotDePasse())) {
+            String hash = PasswordHasher.hash(password);
+            if (updateMotDePasse(user.getId(), user.getMotDePasse(), hash)) {
+                user.setMotDePasse(hash);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recherche un utilisateur par email et rôle, sans vérifier le mot de passe.
+     *
+     * @return l'utilisateur, ou null si la requête n'a trouvé aucun compte
+     * @throws SQLException si la requête n'a pas pu s'exécuter (base injoignable comprise) :
+     *         ce n'est pas la preuve que le compte n'existe pas
+     */
+    Utilisateur findByEmailAndRole(String email, String role) throws SQLException {
+        String sql = "SELECT * FROM utilisateur WHERE email = ? AND role = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, email);
-            stmt.setString(2, password);
-            stmt.setString(3, role);
+            stmt.setString(2, role);
             ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                Utilisateur user = new Utilisateur(
-                        rs.getInt("id"),
-                        rs.getString("email"),
-                        rs.getString("mot_de_passe"),
-                        rs.getString("role")
-                );
-                
-                // Essayer de récupérer le nom s'il existe, sinon utiliser le nom par défaut
-                try {
-                    String nom = rs.getString("nom");
-                    if (nom != null && !nom.isEmpty()) {
-                        user.setNom(nom);
-                    }
-                } catch (SQLException e) {
-                    // La colonne 'nom' n'existe peut-être pas, on utilise le nom par défaut
-                }
-                
-                return user;
-            }
+            return rs.next() ? RowMappers.utilisateur(rs).map(rs) : null;
+        }
+    }
+
+    /**
+     * Remplace le mot de passe stocké, seulement s'il n'a pas changé depuis sa lecture
+     * (deux connexions simultanées au même compte ne se marchent pas dessus).
+     */
+    private boolean updateMotDePasse(int id, String ancien, String nouveau) {
+        String sql = "UPDATE utilisateur SET mot_de_passe = ? WHERE id = ? AND mot_de_passe = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, nouveau);
+            stmt.setInt(2, id);
+            stmt.setString(3, ancien);
+            return stmt.executeUpdate() > 0;
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
         }
-        return null;
     }
 
     /**
@@ -60,24 +107,7 @@ public class UtilisateurDAO {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                Utilisateur user = new Utilisateur(
-                        rs.getInt("id"),
-                        rs.getString("email"),
-                        rs.getString("mot_de_passe"),
-                        rs.getString("role")
-                );
-                
-                // Essayer de récupérer le nom s'il est disponible
-                try {
-                    String nom = rs.getString("nom");
-                    if (nom != null && !nom.isEmpty()) {
-                        user.setNom(nom);
-                    }
-                } catch (SQLException e) {
-                    // La colonne 'nom' n'existe pas, utiliser le nom par défaut
-                }
-                
-                return user;
+                return RowMappers.utilisateur(rs).map(rs);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -90,35 +120,44 @@ public class UtilisateurDAO {
      * Cette méthode tente d'ajouter avec le champ 'nom' si disponible.
      */
     public boolean addUtilisateur(Utilisateur user) {
+        // Seul le hachage du mot de passe est stocké
+        String motDePasse = PasswordHasher.hash(user.getMotDePasse());
+        
+        boolean ajoute;
         // Vérifier si la colonne 'nom' existe
         if (hasNomColumn()) {
             String sql = "INSERT INTO utilisateur (email, mot_de_passe, role, nom) VALUES (?, ?, ?, ?)";
             try (Connection conn = DatabaseConnection.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, user.getEmail());
-                stmt.setString(2, user.getMotDePasse());
+                stmt.setString(2, motDePasse);
                 stmt.setString(3, user.getRole());
                 stmt.setString(4, user.getNom());
                 int rowsAffected = stmt.executeUpdate();
-                return rowsAffected > 0;
+                ajoute = rowsAffected > 0;
             } catch (SQLException e) {
                 e.printStackTrace();
-                return fallbackAddUser(user);
+                ajoute = fallbackAddUser(user, motDePasse);
             }
         } else {
-            return fallbackAddUser(user);
+            ajoute = fallbackAddUser(user, motDePasse);
+        }
+        if (ajoute) {
+            // Le compte a pu être mémorisé comme inconnu par une tentative de connexion récente
+            LoginThrottle.get().forgetUnknown(user.getEmail());
         }
+        return ajoute;
     }
     
     /**
      * Méthode de secours pour ajouter un utilisateur sans utiliser la colonne 'nom'.
      */
-    private boolean fallbackAddUser(Utilisateur user) {
+    private boolean fallbackAddUser(Utilisateur user, String motDePasse) {
         String sql = "INSERT INTO utilisateur (email, mot_de_passe, role) VALUES (?, ?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, user.getEmail());
-            stmt.setString(2, user.getMotDePasse());
+            stmt.setString(2, motDePasse);
             stmt.setString(3, user.getRole());
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
@@ -170,25 +209,9 @@ public class UtilisateurDAO {
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
+            RowMapper<Utilisateur> mapper = RowMappers.utilisateur(rs);
             while (rs.next()) {
-                Utilisateur user = new Utilisateur(
-                        rs.getInt("id"),
-                        rs.getString("email"),
-                        rs.getString("mot_de_passe"),
-                        rs.getString("role")
-                );
-                
-                // On tente de récupérer le nom s'il est disponible
-                try {
-                    String nom = rs.getString("nom");
-                    if (nom != null && !nom.isEmpty()) {
-                        user.setNom(nom);
-                    }
-                } catch (SQLException e) {
-                    // La colonne 'nom' n'existe pas
-                }
-                
-                users.add(user);
+                users.add(mapper.map(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -196,6 +219,138 @@ public class UtilisateurDAO {
         return users;
     }
     
+    /**
+     * Supprime un utilisateur avec tout ce qui dépend de lui :
+     *  • ses propres solutions,
+     *  • les solutions déposées sur ses exercices puis ses exercices,
+     *    ou bien la réattribution de ses exercices à un héritier si heritierId > 0.
+     *
+     * Chaque étape est exécutée par lots de TAILLE_LOT lignes, chaque lot étant validé dans
+     * sa propre transaction courte : les verrous ne sont jamais gardés longtemps, même pour
+     * un professeur ayant des dizaines de milliers de solutions. Chaque lot ajuste les
+     * compteurs des exercices et matières qu'il touche avant sa validation. En cas
+     * d'interruption, relancer la méthode termine le travail.
+     *
+     * @param id l'identifiant de l'utilisateur à supprimer
+     * @param heritierId l'utilisateur qui reprend les exercices, ou 0 pour les supprimer
+     * @return true si l'utilisateur a été supprimé, false sinon
+     */
+    public boolean deleteUserCascade(int id, int heritierId) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Solutions rédigées par l'utilisateur
+                supprimerParLots(conn, "SELECT id, exercice_id FROM solution WHERE auteur_id = ? " +
+                        "ORDER BY id LIMIT ? FOR UPDATE", "solution", CompteurDAO::ajusterSolutions, id);
+
+                if (heritierId > 0) {
+                    // Les exercices (et leurs solutions) sont conservés et changent de créateur
+                    executerParLots(conn, "UPDATE exercice SET createur_id = ? WHERE createur_id = ? LIMIT ?",
+                            heritierId, id);
+                } else {
+                    // Solutions déposées sur ses exercices, puis les exercices eux-mêmes
+                    // Sans ORDER BY : trier par id ferait préférer la clé primaire à idx_solution_exercice
+                    supprimerParLots(conn, "SELECT id, exercice_id FROM solution WHERE exercice_id IN " +
+                            "(SELECT e.id FROM exercice e WHERE e.createur_id = ?) LIMIT ? FOR UPDATE",
+                            "solution", CompteurDAO::ajusterSolutions, id);
+                    supprimerParLots(conn, "SELECT id, matiere_id FROM exercice WHERE createur_id = ? " +
+                            "ORDER BY id LIMIT ? FOR UPDATE", "exercice", CompteurDAO::ajusterExercices, id);
+                }
+
+                // Dernière étape : l'utilisateur, qui n'a plus aucune dépendance
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM utilisateur WHERE id = ?")) {
+                    stmt.setInt(1, id);
+                    int rowsAffected = stmt.executeUpdate();
+                    conn.commit();
+                    return rowsAffected > 0;
+                }
+            } catch (SQLException e) {
+                conn.rollback(); // Seul le lot en cours est annulé
+                throw e;
+            } finally {
+                try {
+                    // Même en cas d'échec, les lots déjà validés ont modifié les exercices et les matières
+                    CatalogueVersionDAO.signalerModification(conn, LocalReplica.SCOPE_MATIERES, LocalReplica.SCOPE_EXERCICES);
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ajustement d'un compteur parent (CompteurDAO.ajusterSolutions ou ajusterExercices).
+     */
+    private interface Ajustement {
+        void ajuster(Connection conn, int parentId, int delta) throws SQLException;
+    }
+
+    /**
+     * Supprime par lots les lignes renvoyées par une sélection verrouillante (identifiant puis
+     * identifiant du parent compté), en ajustant le compteur de chaque parent dans la
+     * transaction du lot. La sélection prend l'identifiant de l'utilisateur puis la taille du lot.
+     *
+     * @return le nombre total de lignes supprimées
+     */
+    private int supprimerParLots(Connection conn, String selection, String table, Ajustement ajustement, int id)
+            throws SQLException {
+        int total = 0;
+        int lues;
+        try (PreparedStatement select = conn.prepareStatement(selection);
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+            select.setInt(1, id);
+            select.setInt(2, TAILLE_LOT);
+            do {
+                lues = 0;
+                Map<Integer, Integer> parParent = new TreeMap<>(); // Parents verrouillés dans l'ordre des identifiants
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        delete.setInt(1, rs.getInt(1));
+                        delete.addBatch();
+                        parParent.merge(rs.getInt(2), -1, Integer::sum);
+                        lues++;
+                    }
+                }
+                if (lues > 0) {
+                    delete.executeBatch();
+                    for (Map.Entry<Integer, Integer> entry : parParent.entrySet()) {
+                        ajustement.ajuster(conn, entry.getKey(), entry.getValue());
+                    }
+                }
+                conn.commit();
+                total += lues;
+            } while (lues == TAILLE_LOT);
+        }
+        return total;
+    }
+
+    /**
+     * Exécute une requête de modification bornée par LIMIT jusqu'à ce qu'elle ne touche
+     * plus aucune ligne, en validant la transaction après chaque lot.
+     * La taille du lot est toujours le dernier paramètre de la requête.
+     *
+     * @return le nombre total de lignes traitées
+     */
+    private int executerParLots(Connection conn, String sql, int... params) throws SQLException {
+        int total = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setInt(i + 1, params[i]);
+            }
+            stmt.setInt(params.length + 1, TAILLE_LOT);
+            int rowsAffected;
+            do {
+                rowsAffected = stmt.executeUpdate();
+                conn.commit();
+                total += rowsAffected;
+            } while (rowsAffected == TAILLE_LOT);
+        }
+        return total;
+    }
+
     /**
      * Supprime un utilisateur par son identifiant.
      */
@@ -1,27 +1,82 @@
 package main;
 
+import controllers.Router;
+import controllers.ViewRegistry;
+import dao.CompteurDAO;
+import dao.MatiereDAO;
+import dao.OutboxSynchronizer;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
+import javafx.application.Platform;
 import javafx.stage.Stage;
+import utils.AppConfig;
+import utils.CatalogueSnapshot;
+import utils.DatabaseConnection;
 import utils.IconHelper;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
 public class Main extends Application {
+    private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
+
     @Override
     public void start(Stage primaryStage) throws Exception {
-        FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/fxml/login.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 600, 700);
-        scene.getStylesheets().add(getClass().getResource("/css/styles.css").toExternalForm());
-        
-        // Set the application title
-        primaryStage.setTitle("Education Management System");
+        // Every screen is shown in this single window, starting with the login screen
+        Router.init(primaryStage, 600, 700);
         
         // Set the application icon using the helper class
         IconHelper.setStageIcon(primaryStage);
         
-        primaryStage.setScene(scene);
         primaryStage.setResizable(true);
         primaryStage.show();
+        afterFirstFrame();
+        
+        // Apply configuration file changes (pool, timeouts, caches) without restarting
+        AppConfig.startWatching();
+        
+        // Replay solution writes made while the database was unreachable
+        OutboxSynchronizer.start();
+        
+        // Correct the exercise and solution counters drifted by writes made outside the application
+        CompteurDAO.demarrerReconciliation(10, TimeUnit.MINUTES);
+        
+        // Check the local catalogue snapshot against the server while the user logs in
+        CatalogueSnapshot.refreshInBackground();
+        
+        // Open database connections and load the matieres while the user types their credentials
+        Thread warmUp = new Thread(() -> {
+            DatabaseConnection.warmUp();
+            new MatiereDAO().getAllMatieres();
+        }, "startup-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+    
+    /**
+     * Log the time to the first rendered frame, then use the idle FX thread to parse the
+     * screen shown right after login.
+     */
+    private void afterFirstFrame() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                ProcessHandle.current().info().startInstant().ifPresent(start ->
+                        LOGGER.info("First frame " + Duration.between(start, Instant.now()).toMillis()
+                                + " ms after process start"));
+                Platform.runLater(() -> ViewRegistry.preload(ViewRegistry.MATIERE_SELECTION));
+            }
+        }.start();
+    }
+    
+    @Override
+    public void stop() {
+        AppConfig.stopWatching();
+        OutboxSynchronizer.stop();
+        CompteurDAO.arreterReconciliation();
     }
 
     public static void main(String[] args) {
@@ -11,6 +11,7 @@ public class Exercice {
     private final int createurId;
     private Utilisateur createur; // Reference to the creator
     private String matiereNom; // Name of the matiere/subject
+    private int nbSolutions; // Counter maintained by the DAOs
 
     public Exercice(int id, String titre, String description,
                     LocalDateTime dateCreation, int matiereId, int createurId) {
@@ -33,10 +34,12 @@ public class Exercice {
     public int getCreateurId() { return createurId; }
     public Utilisateur getCreateur() { return createur; }
     public String getMatiereNom() { return matiereNom; }
+    public int getNbSolutions() { return nbSolutions; }
 
     // Setters
     public void setTitre(String titre) { this.titre = titre; }
     public void setDescription(String description) { this.description = description; }
     public void setCreateur(Utilisateur createur) { this.createur = createur; }
     public void setMatiereNom(String matiereNom) { this.matiereNom = matiereNom; }
+    public void setNbSolutions(int nbSolutions) { this.nbSolutions = nbSolutions; }
 }
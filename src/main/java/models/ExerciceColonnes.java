@@ -0,0 +1,167 @@
+package models;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Liste d'exercices rangée par colonnes, pour les très grandes listes (tous les exercices).
+ *
+ * Chaque champ est un tableau de primitives indexé par le numéro de ligne : identifiants,
+ * créateurs et compteurs en {@code int[]}, dates en secondes epoch ({@code long[]}), titres
+ * en UTF-8 dans un seul {@code byte[]} avec leurs positions de début. Le nom de la matière
+ * n'est stocké qu'une fois par matière : chaque ligne garde le code de sa matière dans le
+ * dictionnaire. Il n'y a donc aucun objet par ligne ; les textes sont décodés à la demande.
+ *
+ * La description n'est pas chargée : {@link #toExercice(int)} renvoie un exercice sans
+ * description, à relire par son identifiant si elle est nécessaire.
+ */
+public final class ExerciceColonnes {
+    private int taille;
+    private int[] ids;
+    private int[] createurIds;
+    private int[] nbSolutions;
+    private long[] dates;
+    private int[] matiereCodes;
+    private int[] debutsTitres; // taille + 1 positions : le titre i occupe [debut(i), debut(i + 1))
+    private byte[] titres;
+    private int finTitres;
+
+    // Dictionnaire des matières : code → identifiant et nom
+    private final Map<Integer, Integer> codesMatieres = new HashMap<>();
+    private int[] matiereIds = new int[8];
+    private String[] matiereNoms = new String[8];
+    private int nbMatieres;
+
+    public ExerciceColonnes(int capacite) {
+        int lignes = Math.max(capacite, 16);
+        ids = new int[lignes];
+        createurIds = new int[lignes];
+        nbSolutions = new int[lignes];
+        dates = new long[lignes];
+        matiereCodes = new int[lignes];
+        debutsTitres = new int[lignes + 1];
+        titres = new byte[lignes * 32];
+    }
+
+    /**
+     * Construit les colonnes à partir d'exercices déjà chargés (copie locale, instantané).
+     */
+    public static ExerciceColonnes de(List<Exercice> exercices) {
+        ExerciceColonnes colonnes = new ExerciceColonnes(exercices.size());
+        for (Exercice exercice : exercices) {
+            colonnes.ajouterMatiere(exercice.getMatiereId(), exercice.getMatiereNom());
+            colonnes.ajouter(exercice.getId(), exercice.getTitre(), exercice.getDateCreation(),
+                    exercice.getMatiereId(), exercice.getCreateurId(), exercice.getNbSolutions());
+        }
+        return colonnes;
+    }
+
+    /**
+     * Déclare le nom d'une matière ; sans effet si elle est déjà connue.
+     */
+    public void ajouterMatiere(int matiereId, String nom) {
+        code(matiereId, nom);
+    }
+
+    public boolean contientMatiere(int matiereId) {
+        return codesMatieres.containsKey(matiereId);
+    }
+
+    private int code(int matiereId, String nom) {
+        Integer code = codesMatieres.get(matiereId);
+        if (code != null) {
+            return code;
+        }
+        if (nbMatieres == matiereIds.length) {
+            matiereIds = Arrays.copyOf(matiereIds, nbMatieres * 2);
+            matiereNoms = Arrays.copyOf(matiereNoms, nbMatieres * 2);
+        }
+        matiereIds[nbMatieres] = matiereId;
+        matiereNoms[nbMatieres] = nom != null ? nom : "";
+        codesMatieres.put(matiereId, nbMatieres);
+        return nbMatieres++;
+    }
+
+    /**
+     * Ajoute une ligne. Une matière non déclarée par {@link #ajouterMatiere} est ajoutée
+     * au dictionnaire avec un nom vide ; une date absente est remplacée par l'heure actuelle,
+     * comme dans RowMappers.
+     */
+    public void ajouter(int id, String titre, LocalDateTime dateCreation, int matiereId, int createurId,
+                        int nombreSolutions) {
+        if (taille == ids.length) {
+            agrandir(Math.max(taille * 2, 16));
+        }
+        ids[taille] = id;
+        createurIds[taille] = createurId;
+        nbSolutions[taille] = nombreSolutions;
+        dates[taille] = (dateCreation != null ? dateCreation : LocalDateTime.now()).toEpochSecond(ZoneOffset.UTC);
+        matiereCodes[taille] = code(matiereId, "");
+
+        byte[] octets = (titre != null ? titre : "").getBytes(StandardCharsets.UTF_8);
+        if (finTitres + octets.length > titres.length) {
+            titres = Arrays.copyOf(titres, Math.max(titres.length * 2, finTitres + octets.length));
+        }
+        System.arraycopy(octets, 0, titres, finTitres, octets.length);
+        debutsTitres[taille] = finTitres;
+        finTitres += octets.length;
+        debutsTitres[++taille] = finTitres;
+    }
+
+    public int taille() { return taille; }
+    public int getId(int ligne) { return ids[ligne]; }
+    public int getCreateurId(int ligne) { return createurIds[ligne]; }
+    public int getNbSolutions(int ligne) { return nbSolutions[ligne]; }
+    public int getMatiereId(int ligne) { return matiereIds[matiereCodes[ligne]]; }
+    public String getMatiereNom(int ligne) { return matiereNoms[matiereCodes[ligne]]; }
+
+    public LocalDateTime getDateCreation(int ligne) {
+        return LocalDateTime.ofEpochSecond(dates[ligne], 0, ZoneOffset.UTC);
+    }
+
+    public String getTitre(int ligne) {
+        int debut = debutsTitres[ligne];
+        return new String(titres, debut, debutsTitres[ligne + 1] - debut, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Exercice de la ligne, sans sa description (null).
+     */
+    public Exercice toExercice(int ligne) {
+        Exercice exercice = new Exercice(getId(ligne), getTitre(ligne), null, getDateCreation(ligne),
+                getMatiereId(ligne), getCreateurId(ligne));
+        exercice.setMatiereNom(getMatiereNom(ligne));
+        exercice.setNbSolutions(getNbSolutions(ligne));
+        return exercice;
+    }
+
+    /**
+     * Réduit les tableaux à la taille utilisée, une fois le chargement terminé.
+     */
+    public void ajuster() {
+        agrandir(taille);
+        titres = Arrays.copyOf(titres, finTitres);
+    }
+
+    /**
+     * Octets occupés par les colonnes (hors dictionnaire des matières), pour les journaux.
+     */
+    public long tailleEnOctets() {
+        return 4L * (ids.length + createurIds.length + nbSolutions.length + matiereCodes.length + debutsTitres.length)
+                + 8L * dates.length + titres.length;
+    }
+
+    private void agrandir(int capacite) {
+        ids = Arrays.copyOf(ids, capacite);
+        createurIds = Arrays.copyOf(createurIds, capacite);
+        nbSolutions = Arrays.copyOf(nbSolutions, capacite);
+        dates = Arrays.copyOf(dates, capacite);
+        matiereCodes = Arrays.copyOf(matiereCodes, capacite);
+        debutsTitres = Arrays.copyOf(debutsTitres, capacite + 1);
+    }
+}
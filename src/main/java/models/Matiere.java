@@ -3,6 +3,7 @@ package models;
 public class Matiere {
     private int id;
     private String nom;
+    private int nbExercices; // Compteur tenu par les DAO
 
     public Matiere(int id, String nom) {
         this.id = id;
@@ -22,6 +23,10 @@ public class Matiere {
         return nom;
     }
 
+    public int getNbExercices() {
+        return nbExercices;
+    }
+
     public void setId(int id) {
         this.id = id;
     }
@@ -30,6 +35,10 @@ public class Matiere {
         this.nom = nom;
     }
 
+    public void setNbExercices(int nbExercices) {
+        this.nbExercices = nbExercices;
+    }
+
     @Override
     public String toString() {
         return nom;
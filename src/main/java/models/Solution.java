@@ -9,6 +9,7 @@ public class Solution {
     private int exerciceId;
     private int auteurId;
     private String auteurNom; // Pour l'affichage seulement
+    private int version; // Version lue sur le serveur, 0 si inconnue
 
     public Solution() {
         this.id = 0;
@@ -34,6 +35,7 @@ public class Solution {
     public int getExerciceId() { return exerciceId; }
     public int getAuteurId() { return auteurId; }
     public String getAuteurNom() { return auteurNom; }
+    public int getVersion() { return version; }
 
     // Setters
     public void setId(int id) { this.id = id; }
@@ -42,6 +44,7 @@ public class Solution {
     public void setExerciceId(int exerciceId) { this.exerciceId = exerciceId; }
     public void setAuteurId(int auteurId) { this.auteurId = auteurId; }
     public void setAuteurNom(String nom) { this.auteurNom = nom; }
+    public void setVersion(int version) { this.version = version; }
 
     @Override
     public String toString() {
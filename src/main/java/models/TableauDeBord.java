@@ -0,0 +1,38 @@
+package models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Activité des exercices d'un professeur sur une période, lue depuis les agrégats.
+ */
+public class TableauDeBord {
+    private final LocalDate debut;
+    private final LocalDate fin;
+    private final Map<LocalDate, Integer> solutionsParJour = new TreeMap<>();
+    private final Map<String, Integer> solutionsParExercice = new LinkedHashMap<>();
+    private final Map<String, Integer> meilleursContributeurs = new LinkedHashMap<>();
+    private final List<String> exercicesSansSolution = new ArrayList<>();
+    private long auteursDistincts;
+
+    public TableauDeBord(LocalDate debut, LocalDate fin) {
+        this.debut = debut;
+        this.fin = fin;
+    }
+
+    // Getters
+    public LocalDate getDebut() { return debut; }
+    public LocalDate getFin() { return fin; }
+    public Map<LocalDate, Integer> getSolutionsParJour() { return solutionsParJour; }
+    public Map<String, Integer> getSolutionsParExercice() { return solutionsParExercice; }
+    public Map<String, Integer> getMeilleursContributeurs() { return meilleursContributeurs; }
+    public List<String> getExercicesSansSolution() { return exercicesSansSolution; }
+    public long getAuteursDistincts() { return auteursDistincts; }
+
+    // Setters
+    public void setAuteursDistincts(long auteursDistincts) { this.auteursDistincts = auteursDistincts; }
+}
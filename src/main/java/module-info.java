@@ -1,8 +1,9 @@
 module com.example.javafxlo {
-    requires javafx.controls;
+    requires transitive javafx.controls; // Types of the exported controllers and main packages
     requires javafx.fxml;
     requires java.sql;
     requires java.desktop;
+    requires java.management;
 
     opens controllers to javafx.fxml;
     exports controllers;
@@ -12,4 +13,7 @@ module com.example.javafxlo {
 
     opens models to javafx.fxml;
     exports models;
+
+    // ConnectionPoolMXBean, read by the platform MBean server
+    exports utils to java.management;
 }
@@ -0,0 +1,320 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tuning and connection settings, read from a properties file with environment overrides.
+ *
+ * Each setting has a default below. The file ({@code ~/.gestion_exercices/config.properties},
+ * or the path in the {@code gestion.config} system property or the
+ * {@code GESTION_EXERCICES_CONFIG} environment variable) overrides the defaults, and an
+ * environment variable named after the key overrides the file: {@code pool.borrowTimeoutMillis}
+ * is {@code GESTION_EXERCICES_POOL_BORROW_TIMEOUT_MILLIS}. Keys starting with
+ * {@code db.property.} are passed as-is to the JDBC driver.
+ *
+ * {@link #get()} returns an immutable snapshot. {@link #startWatching()} reloads the file when
+ * it changes and hands the new snapshot to the listeners, which apply what can change at
+ * runtime; settings read at each use (timeouts, TTLs) follow the new snapshot directly.
+ */
+public final class AppConfig {
+    private static final Logger LOGGER = Logger.getLogger(AppConfig.class.getName());
+    private static final String ENV_PREFIX = "GESTION_EXERCICES_";
+    public static final String DRIVER_PROPERTY_PREFIX = "db.property.";
+
+    // Connection
+    public static final String DB_URL = "db.url";
+    public static final String DB_USER = "db.user";
+    public static final String DB_PASSWORD = "db.password";
+    public static final String DB_CONNECT_TIMEOUT_MILLIS = "db.connectTimeoutMillis";
+    public static final String DB_SERVER_PREPARED_STATEMENTS = "db.useServerPrepStmts";
+    public static final String DB_COMPRESSION = "db.useCompression";
+    public static final String DB_DEFAULT_FETCH_SIZE = "db.defaultFetchSize";
+    // Pool and caches
+    public static final String POOL_SIZE = "pool.size";
+    public static final String POOL_BORROW_TIMEOUT_MILLIS = "pool.borrowTimeoutMillis";
+    public static final String POOL_WARM_CONNECTIONS = "pool.warmConnections";
+    public static final String POOL_VALIDATE_AFTER_IDLE_MILLIS = "pool.validateAfterIdleMillis";
+    public static final String POOL_STATEMENT_CACHE_SIZE = "pool.statementCacheSize";
+    public static final String POOL_LEAK_THRESHOLD_MILLIS = "pool.leakThresholdMillis";
+    public static final String POOL_BORROW_SITE_SAMPLE_RATE = "pool.borrowSiteSampleRate";
+    public static final String REPLICA_REFRESH_TTL_MILLIS = "replica.refreshTtlMillis";
+    // Failures
+    public static final String BREAKER_FAILURE_THRESHOLD = "breaker.failureThreshold";
+    public static final String BREAKER_PROBE_INTERVAL_MILLIS = "breaker.probeIntervalMillis";
+    public static final String RETRY_MAX_ATTEMPTS = "retry.maxAttempts";
+    public static final String RETRY_BASE_DELAY_MILLIS = "retry.baseDelayMillis";
+    public static final String RETRY_MAX_DELAY_MILLIS = "retry.maxDelayMillis";
+    // Query timeouts of the screens, in seconds
+    public static final String QUERY_LIST_TIMEOUT_SECONDS = "query.listTimeoutSeconds";
+    public static final String QUERY_STATISTICS_TIMEOUT_SECONDS = "query.statisticsTimeoutSeconds";
+
+    private static final Map<String, String> DEFAULTS = defaults();
+
+    private static final List<Consumer<AppConfig>> listeners = new CopyOnWriteArrayList<>();
+    private static volatile AppConfig current = load();
+    private static Thread watcher; // guarded by AppConfig.class
+
+    private final Map<String, String> values;
+
+    private AppConfig(Map<String, String> values) {
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put(DB_URL, "jdbc:mysql://localhost:3306/gestion_exercices");
+        defaults.put(DB_USER, "root"); // XAMPP's default account, without password
+        defaults.put(DB_PASSWORD, "");
+        // Give up quickly when the server is unreachable so offline mode can take over
+        defaults.put(DB_CONNECT_TIMEOUT_MILLIS, "5000");
+        // Statements are prepared once on the server; ConnectionPool keeps them open per connection
+        defaults.put(DB_SERVER_PREPARED_STATEMENTS, "true");
+        defaults.put(DB_COMPRESSION, "false");
+        defaults.put(DB_DEFAULT_FETCH_SIZE, "0");
+        // JDBC batches (bulk import) are sent as multi-row INSERTs
+        defaults.put(DRIVER_PROPERTY_PREFIX + "rewriteBatchedStatements", "true");
+        defaults.put(POOL_SIZE, "8");
+        defaults.put(POOL_BORROW_TIMEOUT_MILLIS, "10000");
+        defaults.put(POOL_WARM_CONNECTIONS, "2");
+        defaults.put(POOL_VALIDATE_AFTER_IDLE_MILLIS, "30000");
+        defaults.put(POOL_STATEMENT_CACHE_SIZE, "64");
+        defaults.put(POOL_LEAK_THRESHOLD_MILLIS, "60000");
+        defaults.put(POOL_BORROW_SITE_SAMPLE_RATE, "16");
+        defaults.put(REPLICA_REFRESH_TTL_MILLIS, "30000");
+        defaults.put(BREAKER_FAILURE_THRESHOLD, "3");
+        defaults.put(BREAKER_PROBE_INTERVAL_MILLIS, "5000");
+        defaults.put(RETRY_MAX_ATTEMPTS, "4");
+        defaults.put(RETRY_BASE_DELAY_MILLIS, "25");
+        defaults.put(RETRY_MAX_DELAY_MILLIS, "400");
+        defaults.put(QUERY_LIST_TIMEOUT_SECONDS, "30");
+        defaults.put(QUERY_STATISTICS_TIMEOUT_SECONDS, "15");
+        return defaults;
+    }
+
+    /**
+     * The settings in effect.
+     */
+    public static AppConfig get() {
+        return current;
+    }
+
+    /**
+     * The configuration file, which may not exist (defaults and environment only).
+     */
+    public static Path file() {
+        String path = System.getProperty("gestion.config");
+        if (path == null) {
+            path = System.getenv(ENV_PREFIX + "CONFIG");
+        }
+        // Same directory as LocalReplica.DATA_DIRECTORY, without loading the replica class
+        return path != null ? Paths.get(path)
+                : Paths.get(System.getProperty("user.home"), ".gestion_exercices", "config.properties");
+    }
+
+    /**
+     * Called with the new snapshot after each reload, on the watcher thread.
+     */
+    public static void addListener(Consumer<AppConfig> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reload the file now and notify the listeners if a setting changed.
+     */
+    public static synchronized void reload() {
+        AppConfig previous = current;
+        AppConfig next = load();
+        if (next.values.equals(previous.values)) {
+            return;
+        }
+        current = next;
+        LOGGER.info("Configuration reloaded from " + file());
+        for (Consumer<AppConfig> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not apply the new configuration", e);
+            }
+        }
+    }
+
+    /**
+     * Watch the configuration file and reload it when it changes (no effect if already watching).
+     */
+    public static synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        Path directory = file().toAbsolutePath().getParent();
+        WatchService service;
+        try {
+            Files.createDirectories(directory);
+            service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot watch the configuration file, changes need a restart", e);
+            return;
+        }
+        watcher = new Thread(() -> watch(service), "config-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public static synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private static void watch(WatchService service) {
+        Path name = file().getFileName();
+        try (service) {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing the configuration watcher", e);
+        }
+    }
+
+    private static AppConfig load() {
+        Map<String, String> values = new TreeMap<>(DEFAULTS);
+        Properties file = new Properties();
+        Path path = file();
+        try (InputStream in = Files.newInputStream(path)) {
+            file.load(in);
+        } catch (NoSuchFileException e) {
+            // Defaults and environment only
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read " + path + ", keeping the defaults", e);
+        }
+        for (String key : file.stringPropertyNames()) {
+            values.put(key, file.getProperty(key).trim());
+        }
+        for (Map.Entry<String, String> env : System.getenv().entrySet()) {
+            if (!env.getKey().startsWith(ENV_PREFIX) || env.getKey().equals(ENV_PREFIX + "CONFIG")) {
+                continue;
+            }
+            String key = keyOf(env.getKey());
+            if (key != null) {
+                values.put(key, env.getValue());
+            }
+        }
+        return new AppConfig(values);
+    }
+
+    /**
+     * The key overridden by an environment variable, or null if it names none.
+     */
+    private static String keyOf(String variable) {
+        for (String key : DEFAULTS.keySet()) {
+            if (variable.equals(envName(key))) {
+                return key;
+            }
+        }
+        if (variable.startsWith(envName(DRIVER_PROPERTY_PREFIX))) {
+            // Driver properties are case-sensitive: the variable suffix is used as written
+            return DRIVER_PROPERTY_PREFIX + variable.substring(envName(DRIVER_PROPERTY_PREFIX).length());
+        }
+        return null;
+    }
+
+    static String envName(String key) {
+        StringBuilder name = new StringBuilder(ENV_PREFIX);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.') {
+                name.append('_');
+            } else if (Character.isUpperCase(c)) {
+                name.append('_').append(c);
+            } else {
+                name.append(Character.toUpperCase(c));
+            }
+        }
+        return name.toString();
+    }
+
+    public String getString(String key) {
+        String value = values.get(key);
+        return value != null ? value : DEFAULTS.get(key);
+    }
+
+    public boolean getBoolean(String key) {
+        return Boolean.parseBoolean(getString(key));
+    }
+
+    public int getInt(String key) {
+        return (int) getLong(key);
+    }
+
+    /**
+     * The value of a numeric setting; an invalid one is logged and the default used instead.
+     */
+    public long getLong(String key) {
+        String value = getString(key);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + key + ": " + value + ", using " + DEFAULTS.get(key));
+            return Long.parseLong(DEFAULTS.get(key));
+        }
+    }
+
+    /**
+     * The JDBC URL with the driver properties as query parameters.
+     */
+    public String jdbcUrl() {
+        Map<String, String> properties = new TreeMap<>();
+        properties.put("connectTimeout", getString(DB_CONNECT_TIMEOUT_MILLIS));
+        properties.put("useServerPrepStmts", getString(DB_SERVER_PREPARED_STATEMENTS));
+        properties.put("useCompression", getString(DB_COMPRESSION));
+        if (getLong(DB_DEFAULT_FETCH_SIZE) != 0) {
+            properties.put("defaultFetchSize", getString(DB_DEFAULT_FETCH_SIZE));
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getKey().startsWith(DRIVER_PROPERTY_PREFIX)) {
+                properties.put(entry.getKey().substring(DRIVER_PROPERTY_PREFIX.length()), entry.getValue());
+            }
+        }
+        StringBuilder url = new StringBuilder(getString(DB_URL));
+        char separator = url.indexOf("?") >= 0 ? '&' : '?';
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            url.append(separator).append(property.getKey()).append('=').append(property.getValue());
+            separator = '&';
+        }
+        return url.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package utils;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cancellation and statement timeout for one database operation (loading a list, a dashboard...).
+ *
+ * The token is bound to the thread running the operation with {@link #run}; every statement
+ * created on a pooled connection by that thread gets the token's query timeout and is tracked.
+ * {@link #cancel()} then calls {@link Statement#cancel()} on the statements still open, so the
+ * server stops the query, and any later borrow or statement creation on that thread fails: an
+ * abandoned operation stops at its next database call instead of running to completion.
+ */
+public final class CancellationToken {
+    private static final Logger LOGGER = Logger.getLogger(CancellationToken.class.getName());
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    /** SQLState used by MySQL for an interrupted query. */
+    public static final String SQL_STATE_CANCELLED = "70100";
+
+    private final int timeoutSeconds;
+    private final List<Statement> statements = new ArrayList<>();
+    private final List<Runnable> onCancel = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * @param timeoutSeconds query timeout applied to each statement, 0 for none
+     */
+    public CancellationToken(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * The token bound to the calling thread, or null outside of {@link #run}.
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run an operation with this token bound to the calling thread.
+     */
+    public <T> T run(Supplier<T> operation) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return operation.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public void run(Runnable operation) {
+        run(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * A token with the same timeout, cancelled with this one (but not the other way round).
+     */
+    public CancellationToken child() {
+        CancellationToken child = new CancellationToken(timeoutSeconds);
+        onCancel(child::cancel);
+        return child;
+    }
+
+    /**
+     * Register an action to run when the token is cancelled; runs it now if it already is.
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                onCancel.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Cancel the operation. The statements still executing are cancelled on a background
+     * thread: {@link Statement#cancel()} opens a connection to send KILL QUERY, which must
+     * not block the caller (typically the JavaFX thread).
+     */
+    public void cancel() {
+        List<Statement> running;
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            running = new ArrayList<>(statements);
+            statements.clear();
+            actions = new ArrayList<>(onCancel);
+            onCancel.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+        if (!running.isEmpty()) {
+            Thread thread = new Thread(() -> cancelAll(running), "query-cancel");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    /**
+     * Fail if the token bound to the calling thread has been cancelled.
+     */
+    static void checkCurrent() throws SQLException {
+        CancellationToken token = CURRENT.get();
+        if (token != null && token.isCancelled()) {
+            throw cancelledException();
+        }
+    }
+
+    /**
+     * Apply the calling thread's token to a newly created statement: query timeout and tracking.
+     * The statement is closed and the call fails if the token is already cancelled.
+     */
+    static void track(Statement statement) throws SQLException {
+        CancellationToken token = CURRENT.get();
+        if (token == null) {
+            return;
+        }
+        synchronized (token) {
+            if (!token.cancelled) {
+                // Statements closed since the last call no longer need to be cancelled
+                token.statements.removeIf(CancellationToken::isClosed);
+                token.statements.add(statement);
+            }
+        }
+        if (token.isCancelled()) {
+            statement.close();
+            throw cancelledException();
+        }
+        if (token.timeoutSeconds > 0) {
+            statement.setQueryTimeout(token.timeoutSeconds);
+        }
+    }
+
+    private static SQLException cancelledException() {
+        return new SQLException("Operation cancelled", SQL_STATE_CANCELLED);
+    }
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void cancelAll(List<Statement> running) {
+        for (Statement statement : running) {
+            if (isClosed(statement)) {
+                continue;
+            }
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Could not cancel a statement", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package utils;
+
+import dao.ExerciceDAO;
+import dao.SolutionDAO;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the exercise and solution catalogue to CSV or JSON Lines files.
+ *
+ * Rows are read in keyset pages, each on a connection borrowed only while the page is read,
+ * and written to a buffered (optionally gzip-compressed) writer: memory use stays constant
+ * whatever the size of the tables, and a slow export does not hold a pooled connection.
+ */
+public class CatalogueExporter {
+    private static final Logger LOGGER = Logger.getLogger(CatalogueExporter.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    /**
+     * Supported output formats.
+     */
+    public enum Format {
+        CSV(".csv"),
+        JSON_LINES(".jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Receives progress updates while an export is running.
+     */
+    public interface ProgressListener {
+        void onProgress(String table, long rows, double rowsPerSecond);
+    }
+
+    private final ExerciceDAO exerciceDAO = new ExerciceDAO();
+    private final SolutionDAO solutionDAO = new SolutionDAO();
+
+    /**
+     * Exports every exercise to the given file.
+     *
+     * @return the number of exported rows
+     */
+    public long exportExercices(Path file, Format format, boolean gzip, ProgressListener listener)
+            throws IOException, SQLException {
+        String[] header = {"id", "titre", "description", "date_creation", "matiere_id", "matiere_nom", "createur_id"};
+        try (Writer writer = openWriter(file, gzip)) {
+            RowWriter rows = new RowWriter(writer, format, header, "exercice", listener);
+            long count = exerciceDAO.forEachExercice(exercice -> rows.write(
+                    exercice.getId(),
+                    exercice.getTitre(),
+                    exercice.getDescription(),
+                    exercice.getDateCreation(),
+                    exercice.getMatiereId(),
+                    exercice.getMatiereNom(),
+                    exercice.getCreateurId()));
+            rows.finish();
+            LOGGER.info("Exported " + count + " exercises to " + file);
+            return count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Exports every solution to the given file.
+     *
+     * @return the number of exported rows
+     */
+    public long exportSolutions(Path file, Format format, boolean gzip, ProgressListener listener)
+            throws IOException, SQLException {
+        String[] header = {"id", "contenu", "date_creation", "exercice_id", "auteur_id", "auteur_nom"};
+        try (Writer writer = openWriter(file, gzip)) {
+            RowWriter rows = new RowWriter(writer, format, header, "solution", listener);
+            long count = solutionDAO.forEachSolution(solution -> rows.write(
+                    solution.getId(),
+                    solution.getContenu(),
+                    solution.getDateCreation(),
+                    solution.getExerciceId(),
+                    solution.getAuteurId(),
+                    solution.getAuteurNom()));
+            rows.finish();
+            LOGGER.info("Exported " + count + " solutions to " + file);
+            return count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the file name used for a table in the given format.
+     */
+    public static String fileName(String table, Format format, boolean gzip) {
+        return table + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    private static Writer openWriter(Path file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes one record per line and reports progress every PROGRESS_INTERVAL rows.
+     */
+    private static class RowWriter {
+        private final Writer writer;
+        private final Format format;
+        private final String[] columns;
+        private final String table;
+        private final ProgressListener listener;
+        private final long start = System.nanoTime();
+        private long rows;
+
+        RowWriter(Writer writer, Format format, String[] columns, String table, ProgressListener listener) {
+            this.writer = writer;
+            this.format = format;
+            this.columns = columns;
+            this.table = table;
+            this.listener = listener;
+            if (format == Format.CSV) {
+                write((Object[]) columns);
+                rows = 0;
+            }
+        }
+
+        void write(Object... values) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Export cancelled");
+            }
+            try {
+                if (format == Format.CSV) {
+                    CatalogueFormat.writeCsvLine(writer, values);
+                } else {
+                    CatalogueFormat.writeJsonLine(writer, columns, values);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (++rows % PROGRESS_INTERVAL == 0) {
+                report();
+            }
+        }
+
+        void finish() {
+            report();
+        }
+
+        private void report() {
+            if (listener != null) {
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                listener.onProgress(table, rows, seconds > 0 ? rows / seconds : 0);
+            }
+        }
+    }
+}
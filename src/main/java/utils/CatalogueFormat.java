@@ -0,0 +1,257 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line formats shared by the catalogue export and import: RFC 4180 CSV and JSON Lines.
+ */
+public final class CatalogueFormat {
+
+    private CatalogueFormat() {
+    }
+
+    /**
+     * Writes the values as one CSV record, quoting fields only when needed.
+     */
+    public static void writeCsvLine(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String text = toText(values[i]);
+            if (needsQuotes(text)) {
+                writer.write('"');
+                for (int c = 0; c < text.length(); c++) {
+                    char ch = text.charAt(c);
+                    if (ch == '"') {
+                        writer.write('"');
+                    }
+                    writer.write(ch);
+                }
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Writes the values as one flat JSON object on a single line.
+     * Numbers are written as JSON numbers, everything else as strings.
+     */
+    public static void writeJsonLine(Writer writer, String[] names, Object... values) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeJsonString(writer, names[i]);
+            writer.write(':');
+            Object value = values[i];
+            if (value == null) {
+                writer.write("null");
+            } else if (value instanceof Number) {
+                writer.write(value.toString());
+            } else {
+                writeJsonString(writer, toText(value));
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeJsonString(Writer writer, String text) throws IOException {
+        writer.write('"');
+        for (int c = 0; c < text.length(); c++) {
+            char ch = text.charAt(c);
+            switch (ch) {
+                case '"': writer.write("\\\""); break;
+                case '\\': writer.write("\\\\"); break;
+                case '\n': writer.write("\\n"); break;
+                case '\r': writer.write("\\r"); break;
+                case '\t': writer.write("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) ch));
+                    } else {
+                        writer.write(ch);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Reads the next raw record: one line for JSON Lines, or as many lines as needed
+     * to close every quoted field for CSV. Returns null at the end of the input.
+     */
+    public static String readRecord(BufferedReader reader, boolean csv) throws IOException {
+        String line = reader.readLine();
+        if (line == null || !csv) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0) {
+            String next = reader.readLine();
+            if (next == null) {
+                break;
+            }
+            record.append('\n').append(next);
+            quotes += countQuotes(next);
+        }
+        return record.toString();
+    }
+
+    /**
+     * Splits one CSV record into its fields.
+     */
+    public static List<String> parseCsvRecord(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int c = 0; c < record.length(); c++) {
+            char ch = record.charAt(c);
+            if (quoted) {
+                if (ch == '"') {
+                    if (c + 1 < record.length() && record.charAt(c + 1) == '"') {
+                        field.append('"');
+                        c++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Parses one flat JSON object as written by writeJsonLine.
+     * Numbers are returned as their text, null as a null value.
+     *
+     * @throws IllegalArgumentException if the line is not a flat JSON object
+     */
+    public static Map<String, String> parseJsonLine(String line) {
+        Map<String, String> values = new HashMap<>();
+        int[] pos = {skipBlanks(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') {
+            return values;
+        }
+        while (true) {
+            String name = readJsonString(line, pos);
+            expect(line, pos, ':');
+            values.put(name, readJsonValue(line, pos));
+            char next = peek(line, pos);
+            pos[0]++;
+            if (next == '}') {
+                return values;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Invalid JSON line at " + pos[0]);
+            }
+        }
+    }
+
+    private static String readJsonValue(String line, int[] pos) {
+        if (peek(line, pos) == '"') {
+            return readJsonString(line, pos);
+        }
+        int start = pos[0];
+        while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) {
+            pos[0]++;
+        }
+        String token = line.substring(start, pos[0]);
+        return "null".equals(token) ? null : token;
+    }
+
+    private static String readJsonString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder text = new StringBuilder();
+        while (pos[0] < line.length()) {
+            char ch = line.charAt(pos[0]++);
+            if (ch == '"') {
+                return text.toString();
+            }
+            if (ch == '\\' && pos[0] < line.length()) {
+                char escaped = line.charAt(pos[0]++);
+                switch (escaped) {
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u':
+                        text.append((char) Integer.parseInt(line.substring(pos[0], pos[0] + 4), 16));
+                        pos[0] += 4;
+                        break;
+                    default: text.append(escaped);
+                }
+            } else {
+                text.append(ch);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string");
+    }
+
+    private static void expect(String line, int[] pos, char expected) {
+        if (peek(line, pos) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static char peek(String line, int[] pos) {
+        pos[0] = skipBlanks(line, pos[0]);
+        return pos[0] < line.length() ? line.charAt(pos[0]) : '\0';
+    }
+
+    private static int skipBlanks(String line, int pos) {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int c = 0; c < line.length(); c++) {
+            if (line.charAt(c) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean needsQuotes(String text) {
+        for (int c = 0; c < text.length(); c++) {
+            char ch = text.charAt(c);
+            if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toText(Object value) {
+        // LocalDateTime.toString() gives ISO-8601, readable again with LocalDateTime.parse
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,314 @@
+package utils;
+
+import dao.ExerciceDAO;
+import dao.MatiereDAO;
+import dao.SolutionDAO;
+import models.Exercice;
+import models.Matiere;
+import models.Solution;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk import of files written by {@link CatalogueExporter}.
+ *
+ * The import is a three-stage pipeline:
+ *  1. a reader thread splits the (optionally gzip-compressed) file into chunks of raw records,
+ *  2. a fork-join pool parses and validates the chunks in parallel,
+ *  3. the calling thread inserts each parsed chunk as one JDBC batch in its own transaction.
+ * Stages are connected by a bounded queue, so a slow database makes the reader wait
+ * instead of filling the heap. Matiere names resolve through an in-memory map, and the
+ * exercise ids of the source instance are remapped when their solutions are imported; a
+ * solution whose exercise was not imported by the same importer is rejected, since its id
+ * means nothing on this instance.
+ */
+public class CatalogueImporter {
+    private static final Logger LOGGER = Logger.getLogger(CatalogueImporter.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 8;
+
+    /**
+     * Counts of imported and rejected records.
+     */
+    public static class Result {
+        private final long imported;
+        private final long rejected;
+
+        Result(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+    }
+
+    private final ExerciceDAO exerciceDAO = new ExerciceDAO();
+    private final SolutionDAO solutionDAO = new SolutionDAO();
+    private final MatiereDAO matiereDAO = new MatiereDAO();
+
+    // Exercise ids of the exported instance -> ids generated by this import
+    private final Map<Integer, Integer> exerciceIds = new HashMap<>();
+    private Map<String, Integer> matiereIds;
+
+    /**
+     * Imports exercises. Unknown matieres are created on the fly.
+     */
+    public Result importExercices(Path file, CatalogueExporter.ProgressListener listener)
+            throws IOException, SQLException {
+        if (matiereIds == null) {
+            matiereIds = new HashMap<>();
+            for (Matiere matiere : matiereDAO.getAllMatieres()) {
+                matiereIds.put(matiere.getNom(), matiere.getId());
+            }
+        }
+        return run(file, "exercice", ExerciceRecord::parse, this::writeExercices, listener);
+    }
+
+    /**
+     * Imports solutions. Their exercise ids are remapped to the ids generated by
+     * {@link #importExercices}; solutions of any other exercise are rejected.
+     */
+    public Result importSolutions(Path file, CatalogueExporter.ProgressListener listener)
+            throws IOException, SQLException {
+        // Filled by importExercices before this run starts, only read by the parser threads
+        Map<Integer, Integer> ids = exerciceIds;
+        return run(file, "solution", fields -> parseSolution(fields, ids), solutionDAO::addSolutionsBatch, listener);
+    }
+
+    private void writeExercices(List<ExerciceRecord> records) throws SQLException {
+        List<Exercice> exercices = new ArrayList<>(records.size());
+        for (ExerciceRecord record : records) {
+            exercices.add(new Exercice(0, record.titre, record.description, record.dateCreation,
+                    resolveMatiere(record.matiereNom), record.createurId));
+        }
+        int[] ids = exerciceDAO.addExercicesBatch(exercices);
+        for (int i = 0; i < ids.length; i++) {
+            exerciceIds.put(records.get(i).ancienId, ids[i]);
+        }
+    }
+
+    private int resolveMatiere(String nom) throws SQLException {
+        Integer id = matiereIds.get(nom);
+        if (id == null) {
+            Matiere created = matiereDAO.addMatiereAndReturn(new Matiere(nom));
+            if (created == null) {
+                throw new SQLException("Impossible de créer la matière " + nom);
+            }
+            id = created.getId();
+            matiereIds.put(nom, id);
+        }
+        return id;
+    }
+
+    /**
+     * Runs the reader / parser / writer pipeline over one file.
+     */
+    private <T> Result run(Path file, String table, Function<Map<String, String>, T> parser,
+                           BatchWriter<T> writer, CatalogueExporter.ProgressListener listener)
+            throws IOException, SQLException {
+        boolean csv = !file.getFileName().toString().contains(".jsonl");
+        ForkJoinPool parsers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        BlockingQueue<CompletableFuture<ParsedChunk<T>>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        CompletableFuture<ParsedChunk<T>> endOfFile = CompletableFuture.completedFuture(null);
+        AtomicLong rejected = new AtomicLong();
+
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = openReader(file)) {
+                List<String> header = csv ? CatalogueFormat.parseCsvRecord(CatalogueFormat.readRecord(in, true)) : null;
+                List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+                String record;
+                while ((record = CatalogueFormat.readRecord(in, csv)) != null) {
+                    if (record.isBlank()) {
+                        continue;
+                    }
+                    chunk.add(record);
+                    if (chunk.size() == CHUNK_SIZE) {
+                        queue.put(parseAsync(chunk, header, parser, rejected, parsers));
+                        chunk = new ArrayList<>(CHUNK_SIZE);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    queue.put(parseAsync(chunk, header, parser, rejected, parsers));
+                }
+                queue.put(endOfFile);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // The writer stopped: nothing left to do
+            } catch (Exception e) {
+                try {
+                    queue.put(CompletableFuture.failedFuture(e));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "import-reader-" + table);
+        reader.setDaemon(true);
+        reader.start();
+
+        long imported = 0;
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                CompletableFuture<ParsedChunk<T>> next = queue.take();
+                if (next == endOfFile) {
+                    break;
+                }
+                List<T> rows = next.join().rows;
+                if (!rows.isEmpty()) {
+                    writer.write(rows);
+                    imported += rows.size();
+                }
+                if (listener != null) {
+                    double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                    listener.onProgress(table, imported, seconds > 0 ? imported / seconds : 0);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Import cancelled");
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Lecture de " + file + " impossible", e.getCause());
+        } finally {
+            reader.interrupt();
+            parsers.shutdownNow();
+        }
+
+        LOGGER.info("Imported " + imported + " rows into " + table + " (" + rejected.get() + " rejected) from " + file);
+        return new Result(imported, rejected.get());
+    }
+
+    private static <T> CompletableFuture<ParsedChunk<T>> parseAsync(List<String> records, List<String> header,
+                                                                   Function<Map<String, String>, T> parser,
+                                                                   AtomicLong rejected, ForkJoinPool pool) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<T> rows = new ArrayList<>(records.size());
+            for (String record : records) {
+                try {
+                    rows.add(parser.apply(toFields(record, header)));
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                    LOGGER.log(Level.FINE, "Rejected record: " + record, e);
+                }
+            }
+            return new ParsedChunk<>(rows);
+        }, pool);
+    }
+
+    private static Map<String, String> toFields(String record, List<String> header) {
+        if (header == null) {
+            return CatalogueFormat.parseJsonLine(record);
+        }
+        List<String> values = CatalogueFormat.parseCsvRecord(record);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " fields, got " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            fields.put(header.get(i), values.get(i));
+        }
+        return fields;
+    }
+
+    private static BufferedReader openReader(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static Solution parseSolution(Map<String, String> fields, Map<Integer, Integer> exerciceIds) {
+        int ancienExercice = Integer.parseInt(required(fields, "exercice_id"));
+        Integer exerciceId = exerciceIds.get(ancienExercice);
+        if (exerciceId == null) {
+            throw new IllegalArgumentException("Exercise " + ancienExercice + " was not imported");
+        }
+        Solution solution = new Solution();
+        solution.setContenu(required(fields, "contenu"));
+        solution.setDateCreation(LocalDateTime.parse(required(fields, "date_creation")));
+        solution.setExerciceId(exerciceId);
+        solution.setAuteurId(Integer.parseInt(required(fields, "auteur_id")));
+        return solution;
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing field " + name);
+        }
+        return value;
+    }
+
+    /**
+     * A field that may be empty: the exporter writes a missing value as "" in CSV and null in JSON.
+     */
+    private static String optional(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value != null ? value : "";
+    }
+
+    /**
+     * An exercise as read from the file, before its matiere is resolved.
+     */
+    private static final class ExerciceRecord {
+        private final int ancienId;
+        private final String titre;
+        private final String description;
+        private final LocalDateTime dateCreation;
+        private final String matiereNom;
+        private final int createurId;
+
+        private ExerciceRecord(Map<String, String> fields) {
+            this.ancienId = Integer.parseInt(required(fields, "id"));
+            this.titre = required(fields, "titre");
+            this.description = optional(fields, "description");
+            this.dateCreation = LocalDateTime.parse(required(fields, "date_creation"));
+            this.matiereNom = required(fields, "matiere_nom");
+            this.createurId = Integer.parseInt(required(fields, "createur_id"));
+        }
+
+        static ExerciceRecord parse(Map<String, String> fields) {
+            return new ExerciceRecord(fields);
+        }
+    }
+
+    private static final class ParsedChunk<T> {
+        private final List<T> rows;
+
+        ParsedChunk(List<T> rows) {
+            this.rows = rows;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter<T> {
+        void write(List<T> rows) throws SQLException;
+    }
+}
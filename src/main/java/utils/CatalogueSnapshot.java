@@ -0,0 +1,374 @@
+package utils;
+
+import dao.CatalogueVersionDAO;
+import models.Exercice;
+import models.Matiere;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memory-mapped snapshot of the matiere list and of the exercise catalogue, used to fill
+ * the first screens instantly at startup while the real data is fetched in the background.
+ *
+ * The file starts with the server catalogue version it was built from (see
+ * {@link CatalogueVersionDAO}); {@link #refreshInBackground()} only reloads the catalogue
+ * when that version has changed. Exercise records are decoded on demand straight from the
+ * mapping, so opening the snapshot costs nothing beyond the page faults of the rows shown.
+ *
+ * Each refresh writes a new file named after its version instead of replacing the mapped
+ * one, which some platforms refuse while the mapping is alive; older files are removed.
+ * The rows come from the server in the same transaction as the version (never from the
+ * local replica), and are written through a small buffer, then mapped like at startup.
+ *
+ * Layout: magic, format, version, matiere count, matieres (id, exercise count, name),
+ * exercise count, exercise records (id, matiere id, createur id, date, title).
+ * Only what the first screens list is kept: descriptions are read when an exercise is
+ * opened. Solution counts are not stored: solutions do not change the catalogue version,
+ * so they would go stale; the exercise views replace the snapshot rows with fresh ones anyway.
+ */
+public final class CatalogueSnapshot {
+    private static final Logger LOGGER = Logger.getLogger(CatalogueSnapshot.class.getName());
+    private static final int MAGIC = 0x47455853; // "GEXS"
+    private static final int FORMAT_VERSION = 3;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 16; // magic, format, version
+    private static final String PREFIX = "catalogue-";
+    private static final String SUFFIX = ".snap";
+
+    private static final CatalogueSnapshot INSTANCE = new CatalogueSnapshot(LocalReplica.DATA_DIRECTORY);
+
+    private final Path directory;
+    private ByteBuffer data;
+    private long version = -1;
+    private Map<Integer, String> matiereNames = new HashMap<>();
+    private int exercicesOffset;
+    private boolean outdated;
+    private boolean loaded;
+    private CompletableFuture<Boolean> refresh;
+
+    private CatalogueSnapshot(Path directory) {
+        this.directory = directory;
+    }
+
+    public static CatalogueSnapshot get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns true if there is a snapshot that can be shown while fresh data is loading.
+     * A snapshot is not usable once the catalogue has been modified from this client.
+     */
+    public synchronized boolean isUsable() {
+        ensureLoaded();
+        return data != null && !outdated;
+    }
+
+    /**
+     * Returns the server catalogue version the snapshot was built from, or -1 if there is none.
+     */
+    public synchronized long getVersion() {
+        ensureLoaded();
+        return version;
+    }
+
+    /**
+     * Marks the snapshot as out of date after a local write; views then query the database
+     * directly until the next refresh.
+     */
+    public synchronized void markOutdated() {
+        outdated = true;
+    }
+
+    public synchronized List<Matiere> getMatieres() {
+        ensureLoaded();
+        List<Matiere> matieres = new ArrayList<>();
+        if (data == null) {
+            return matieres;
+        }
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(HEADER_SIZE);
+        for (int i = buffer.getInt(); i > 0; i--) {
+            int id = buffer.getInt();
+            int nbExercices = buffer.getInt();
+            Matiere matiere = new Matiere(id, readString(buffer));
+            matiere.setNbExercices(nbExercices);
+            matieres.add(matiere);
+        }
+        return matieres;
+    }
+
+    public List<Exercice> getExercicesByMatiere(int matiereId) {
+        return scan(matiereId, -1);
+    }
+
+    public List<Exercice> getExercicesByCreateur(int createurId) {
+        return scan(-1, createurId);
+    }
+
+    public List<Exercice> getAllExercices() {
+        return scan(-1, -1);
+    }
+
+    /**
+     * Walks the exercise records and decodes only the ones matching the filters (-1 = any).
+     */
+    private synchronized List<Exercice> scan(int matiereId, int createurId) {
+        ensureLoaded();
+        List<Exercice> exercices = new ArrayList<>();
+        if (data == null) {
+            return exercices;
+        }
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(exercicesOffset);
+        for (int i = buffer.getInt(); i > 0; i--) {
+            int id = buffer.getInt();
+            int exerciceMatiereId = buffer.getInt();
+            int exerciceCreateurId = buffer.getInt();
+            if ((matiereId >= 0 && exerciceMatiereId != matiereId)
+                    || (createurId >= 0 && exerciceCreateurId != createurId)) {
+                buffer.position(buffer.position() + 8);
+                skipString(buffer);
+                continue;
+            }
+            long date = buffer.getLong();
+            Exercice exercice = new Exercice(id, readString(buffer), "",
+                    LocalReplica.toDate(date), exerciceMatiereId, exerciceCreateurId);
+            exercice.setMatiereNom(matiereNames.getOrDefault(exerciceMatiereId, ""));
+            exercices.add(exercice);
+        }
+        return exercices;
+    }
+
+    /**
+     * Compares the snapshot with the server catalogue version and rebuilds it if needed.
+     * Concurrent callers share the same refresh. The future completes with true when the
+     * snapshot was rebuilt (callers should then reload what they display), false otherwise.
+     */
+    public static synchronized CompletableFuture<Boolean> refreshInBackground() {
+        CatalogueSnapshot snapshot = INSTANCE;
+        if (snapshot.refresh == null || (snapshot.refresh.isDone() && !snapshot.isUsable())) {
+            snapshot.refresh = CompletableFuture.supplyAsync(snapshot::refresh);
+        }
+        return snapshot.refresh;
+    }
+
+    private boolean refresh() {
+        try {
+            if (isUsable() && CatalogueVersionDAO.getVersion() == getVersion()) {
+                return false;
+            }
+            CatalogueVersionDAO.Resume resume = CatalogueVersionDAO.lireResume();
+            write(resume.getVersion(), resume.getMatieres(), resume.getExercices());
+            LOGGER.info("Catalogue snapshot rebuilt at version " + resume.getVersion()
+                    + " (" + resume.getExercices().size() + " exercices)");
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Catalogue version unavailable, keeping the current snapshot", e);
+            return false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the catalogue snapshot", e);
+            return false;
+        }
+    }
+
+    private void write(long newVersion, List<Matiere> matieres, List<Exercice> exercices) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(PREFIX + newVersion + SUFFIX);
+        Path temp = directory.resolve(PREFIX + newVersion + SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChunkWriter out = new ChunkWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+            out.putLong(newVersion);
+            out.putInt(matieres.size());
+            for (Matiere matiere : matieres) {
+                out.putInt(matiere.getId());
+                out.putInt(matiere.getNbExercices());
+                out.putString(matiere.getNom());
+            }
+            out.putInt(exercices.size());
+            for (Exercice exercice : exercices) {
+                out.putInt(exercice.getId());
+                out.putInt(exercice.getMatiereId());
+                out.putInt(exercice.getCreateurId());
+                out.putLong(LocalReplica.toEpoch(exercice.getDateCreation()));
+                out.putString(exercice.getTitre());
+            }
+            out.flush();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+
+        // The file just written serves the rest of the session, mapped like at startup
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        synchronized (this) {
+            open(mapped, newVersion);
+            outdated = false;
+        }
+        deleteOlderThan(file);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path latest = findLatest();
+        if (latest == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+                return; // Ancien format : l'instantané sera reconstruit
+            }
+            open(mapped, mapped.getLong(8));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not open the catalogue snapshot " + latest, e);
+            data = null;
+        }
+    }
+
+    /**
+     * Reads the matiere section (small, needed to name every exercise) and remembers
+     * where the exercise records start.
+     */
+    private void open(ByteBuffer buffer, long newVersion) {
+        ByteBuffer reader = buffer.duplicate();
+        reader.position(HEADER_SIZE);
+        Map<Integer, String> names = new HashMap<>();
+        for (int i = reader.getInt(); i > 0; i--) {
+            int id = reader.getInt();
+            reader.getInt(); // Exercise count, read by getMatieres
+            names.put(id, readString(reader));
+        }
+        data = buffer;
+        version = newVersion;
+        matiereNames = names;
+        exercicesOffset = reader.position();
+    }
+
+    private Path findLatest() {
+        Path latest = null;
+        long latestVersion = -1;
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                long fileVersion = versionOf(file);
+                if (fileVersion > latestVersion) {
+                    latestVersion = fileVersion;
+                    latest = file;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not list catalogue snapshots", e);
+        }
+        return latest;
+    }
+
+    private void deleteOlderThan(Path current) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (!file.equals(current)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Still mapped on this platform: removed on a later refresh
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not clean old catalogue snapshots", e);
+        }
+    }
+
+    private static long versionOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Writes records through a fixed buffer, emptied into the channel whenever it fills up,
+     * so the size of the catalogue never decides the size of an allocation.
+     */
+    private static final class ChunkWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        ChunkWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String text) throws IOException {
+            byte[] bytes = (text != null ? text : "").getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
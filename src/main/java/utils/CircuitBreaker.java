@@ -0,0 +1,202 @@
+package utils;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops sending work to a database that keeps failing to answer.
+ *
+ * CLOSED: calls go through; consecutive connection failures are counted and the breaker
+ * opens at the threshold. OPEN: {@link #check()} fails at once, without touching the network,
+ * and a background probe is scheduled. HALF_OPEN: the probe is running; calls still fail fast
+ * and the probe's outcome closes the breaker or opens it for another interval.
+ *
+ * The exception thrown while open is an {@link SQLTransientConnectionException} with SQLState
+ * 08001, so the DAOs' existing "connection failure" handling (local replica, offline outbox)
+ * takes over unchanged.
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Health check run by the probe thread; succeeds when the database answers again.
+     */
+    @FunctionalInterface
+    public interface Probe {
+        void check() throws SQLException;
+    }
+
+    private final String name;
+    private volatile int failureThreshold;
+    private volatile long probeIntervalMillis;
+    private final Probe probe;
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures; // written under this
+    private ScheduledExecutorService prober; // guarded by this, created on first opening
+
+    /**
+     * @param failureThreshold consecutive connection failures that open the breaker
+     * @param probeIntervalMillis delay between an opening (or a failed probe) and the next probe
+     */
+    public CircuitBreaker(String name, int failureThreshold, long probeIntervalMillis, Probe probe) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1: " + failureThreshold);
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.probe = probe;
+    }
+
+    /**
+     * Fail fast unless the breaker is closed. A single volatile read when it is.
+     */
+    public void check() throws SQLException {
+        if (state != State.CLOSED) {
+            throw new SQLTransientConnectionException(name + " unavailable (circuit " + state + ")", "08001");
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Applies from the next failure; a breaker already open stays open until a probe succeeds.
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1: " + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Applies from the next probe scheduled.
+     */
+    public void setProbeIntervalMillis(long probeIntervalMillis) {
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * Called with the new state on every transition, from the thread that caused it.
+     */
+    public void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<State> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * A call reached the database. Called after every statement: no lock unless failures
+     * were counted.
+     */
+    public void recordSuccess() {
+        if (consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * A call could not reach the database. Failures of calls started before the breaker
+     * opened are ignored: the probe alone decides when it closes.
+     */
+    public void recordFailure() {
+        synchronized (this) {
+            if (state != State.CLOSED || ++consecutiveFailures < failureThreshold) {
+                return;
+            }
+            open();
+        }
+        LOGGER.warning(name + " unreachable after " + failureThreshold
+                + " attempt(s), failing fast until a probe succeeds");
+        notifyListeners(State.OPEN);
+    }
+
+    /**
+     * Stop the probe thread; the breaker keeps its state.
+     */
+    public synchronized void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    // Called with the lock held
+    private void open() {
+        state = State.OPEN;
+        if (prober == null) {
+            prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "circuit-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        prober.schedule(this::runProbe, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runProbe() {
+        synchronized (this) {
+            if (state != State.OPEN) {
+                return;
+            }
+            state = State.HALF_OPEN;
+        }
+        notifyListeners(State.HALF_OPEN);
+        boolean healthy;
+        try {
+            probe.check();
+            healthy = true;
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.FINE, name + " probe failed", e);
+            healthy = false;
+        }
+        State next;
+        synchronized (this) {
+            if (healthy) {
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+            } else if (prober != null) {
+                open();
+            } else {
+                state = State.OPEN; // shut down meanwhile: no further probe
+            }
+            next = state;
+        }
+        if (healthy) {
+            LOGGER.info(name + " reachable again, circuit closed");
+        }
+        notifyListeners(next);
+    }
+
+    private void notifyListeners(State newState) {
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(newState);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Circuit breaker listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Small bounded JDBC connection pool.
+ *
+ * Connections handed out are proxies: closing one returns the physical connection to the
+ * pool (any open transaction rolled back, auto-commit restored), so the DAOs' existing
+ * try-with-resources blocks keep working unchanged. A connection that has been idle for a
+ * while is validated before being handed out again.
+ *
+ * Each physical connection keeps its prepared statements in a {@link StatementCache}, so a
+ * DAO preparing the same SQL again on a later borrow gets the already prepared statement.
+ * Statements are also given the timeout of the calling thread's {@link CancellationToken}
+ * and cancelled with it.
+ *
+ * Failed connection attempts feed a {@link CircuitBreaker}: once it opens, borrowing fails
+ * at once instead of waiting for the driver's connect timeout, until a background probe
+ * reaches the database again. The probe's connection replaces the idle ones, opened before
+ * the outage. Calls on a borrowed connection and its statements feed it too: an idle
+ * connection that died with the server only fails when a statement runs on it.
+ *
+ * Settings can be changed while the pool is in use (see {@link AppConfig}): new connection
+ * settings apply to connections opened afterwards, and connections opened with the previous
+ * ones are closed instead of being reused; the size and timeouts apply to the next borrow.
+ *
+ * Borrowed connections are tracked by a {@link LeaseTracker}, which reports those held longer
+ * than the leak threshold and measures the wait for a free connection; {@link #diagnostics()}
+ * publishes these figures, with the pool's own, over JMX.
+ */
+public final class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private volatile Target target;
+    private volatile int maxSize;
+    private volatile long borrowTimeoutMillis;
+    private volatile long validateAfterIdleMillis = 30_000;
+    private volatile int statementCacheSize = 64;
+    private final Permits permits;
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final CircuitBreaker breaker;
+    private final LeaseTracker leases = new LeaseTracker(60_000, 16);
+    private volatile boolean closed;
+
+    /**
+     * Where and as whom connections are opened.
+     */
+    private static final class Target {
+        private final String url;
+        private final String user;
+        private final String password;
+
+        private Target(String url, String user, String password) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+        }
+
+        private Connection connect() throws SQLException {
+            return DriverManager.getConnection(url, user, password);
+        }
+    }
+
+    /**
+     * A physical connection, the statements prepared on it and the settings it was opened with.
+     */
+    private static final class PhysicalConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+        private final Target target;
+
+        private PhysicalConnection(Connection connection, StatementCache statements, Target target) {
+            this.connection = connection;
+            this.statements = statements;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Connection permits; the pool size can shrink while connections are borrowed.
+     */
+    private static final class Permits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private Permits(int permits) {
+            super(permits, true);
+        }
+
+        private void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+
+    private static final class IdleConnection {
+        private final PhysicalConnection physical;
+        private final long since;
+
+        private IdleConnection(PhysicalConnection physical, long since) {
+            this.physical = physical;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Statement cache counters since the pool was created, over all its connections.
+     */
+    public static final class StatementCacheStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private StatementCacheStats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the share of prepareStatement calls served from the cache, 0 before the first one
+         */
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.0f%% hit ratio), %d evictions",
+                    hits, misses, 100 * getHitRatio(), evictions);
+        }
+    }
+
+    /**
+     * @param maxSize the maximum number of connections open at the same time
+     * @param borrowTimeoutMillis how long a caller waits for a free connection when all are in use
+     * @param failureThreshold consecutive failed connection attempts that open the circuit breaker
+     * @param probeIntervalMillis delay between health probes while the circuit breaker is open
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+                          int failureThreshold, long probeIntervalMillis) {
+        this.target = new Target(url, user, password);
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Permits(maxSize);
+        this.breaker = new CircuitBreaker("Database", failureThreshold, probeIntervalMillis, this::probe);
+    }
+
+    /**
+     * Borrow a connection; closing it gives it back to the pool.
+     *
+     * @throws SQLTimeoutException if every connection stayed in use for the whole borrow timeout
+     * @throws SQLTransientConnectionException at once while the circuit breaker is open
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        breaker.check();
+        CancellationToken.checkCurrent();
+        long waitStart = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            leases.waited(System.nanoTime() - waitStart, acquired);
+            if (!acquired) {
+                throw new SQLTimeoutException("No database connection available after "
+                        + borrowTimeoutMillis + " ms (" + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            return wrap(takeIdleOrOpen());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Open connections until the pool holds at least {@code count} of them, so the first
+     * queries do not pay for the TCP handshake and authentication.
+     */
+    public void warmUp(int count) {
+        int wanted = Math.min(count, maxSize);
+        List<PhysicalConnection> opened = new ArrayList<>();
+        try {
+            while (!closed && idleCount() + activeCount() + opened.size() < wanted) {
+                opened.add(open());
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Connection pool warm-up stopped, database unavailable", e);
+        }
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            for (PhysicalConnection physical : opened) {
+                idle.push(new IdleConnection(physical, now));
+            }
+        }
+        if (!opened.isEmpty()) {
+            LOGGER.info("Connection pool warmed up with " + opened.size() + " connection(s)");
+        }
+    }
+
+    /**
+     * Open the next connections with these settings; idle connections opened with the
+     * previous ones are closed, borrowed ones when they are given back.
+     */
+    public void setConnectionSettings(String url, String user, String password) {
+        Target previous = target;
+        if (previous.url.equals(url) && previous.user.equals(user) && previous.password.equals(password)) {
+            return;
+        }
+        target = new Target(url, user, password);
+        List<IdleConnection> outdated;
+        synchronized (idle) {
+            outdated = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (IdleConnection entry : outdated) {
+            closeQuietly(entry.physical.connection);
+        }
+        LOGGER.info("Connection settings changed, " + outdated.size() + " idle connection(s) closed");
+    }
+
+    /**
+     * Change the maximum number of connections. When shrinking, borrowed connections are
+     * not taken back: borrowers wait until enough of them have been returned.
+     */
+    public synchronized void setMaxSize(int newSize) {
+        if (newSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + newSize);
+        }
+        int delta = newSize - maxSize;
+        maxSize = newSize;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reduce(-delta);
+        }
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    /**
+     * @param validateAfterIdleMillis idle time after which a connection is validated before reuse
+     */
+    public void setValidateAfterIdleMillis(long validateAfterIdleMillis) {
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+    }
+
+    /**
+     * @param statementCacheSize prepared statements kept per connection opened from now on
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @param leakThresholdMillis hold time after which a borrowed connection is reported as leaked
+     */
+    public void setLeakThresholdMillis(long leakThresholdMillis) {
+        leases.setThresholdMillis(leakThresholdMillis);
+    }
+
+    /**
+     * @param borrowSiteSampleRate record the call stack of one borrow in this many (1: every
+     *                             borrow, 0: none); leak reports show it when it was recorded
+     */
+    public void setBorrowSiteSampleRate(int borrowSiteSampleRate) {
+        if (borrowSiteSampleRate < 0) {
+            throw new IllegalArgumentException("Sample rate must not be negative: " + borrowSiteSampleRate);
+        }
+        leases.setSampleRate(borrowSiteSampleRate);
+    }
+
+    public int activeCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return breaker;
+    }
+
+    public StatementCacheStats statementCacheStats() {
+        return new StatementCacheStats(statementCounters.hits.sum(), statementCounters.misses.sum(),
+                statementCounters.evictions.sum());
+    }
+
+    /**
+     * Usage figures of the pool (wait times, active connections, leaks), as a JMX MXBean.
+     */
+    public ConnectionPoolMXBean diagnostics() {
+        return new Diagnostics();
+    }
+
+    /**
+     * Close the idle connections; borrowed ones are closed when they are given back.
+     */
+    public void close() {
+        closed = true;
+        breaker.shutdown();
+        leases.shutdown();
+        List<IdleConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (IdleConnection entry : toClose) {
+            closeQuietly(entry.physical.connection);
+        }
+        if (!toClose.isEmpty()) {
+            LOGGER.info("Connection pool closed; statement cache: " + statementCacheStats());
+        }
+    }
+
+    private PhysicalConnection takeIdleOrOpen() throws SQLException {
+        while (true) {
+            IdleConnection entry;
+            synchronized (idle) {
+                entry = idle.poll();
+            }
+            if (entry == null) {
+                return open();
+            }
+            boolean stale = System.currentTimeMillis() - entry.since > validateAfterIdleMillis;
+            if (!stale || entry.physical.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return entry.physical;
+            }
+            closeQuietly(entry.physical.connection); // Dropped by the server meanwhile
+        }
+    }
+
+    private PhysicalConnection open() throws SQLException {
+        breaker.check();
+        Target settings = target;
+        Connection connection;
+        try {
+            connection = settings.connect();
+        } catch (SQLException e) {
+            if (DatabaseConnection.isConnectionFailure(e)) {
+                breaker.recordFailure();
+            }
+            throw e;
+        }
+        breaker.recordSuccess();
+        LOGGER.fine("Database connection established");
+        return physical(connection, settings);
+    }
+
+    private PhysicalConnection physical(Connection connection, Target settings) {
+        return new PhysicalConnection(connection,
+                new StatementCache(statementCacheSize, statementCounters, breaker), settings);
+    }
+
+    /**
+     * Circuit breaker health check: connect and validate. On success the new connection
+     * replaces the idle ones, which most likely died with the server.
+     */
+    private void probe() throws SQLException {
+        Target settings = target;
+        Connection connection = settings.connect();
+        if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            closeQuietly(connection);
+            throw new SQLTransientConnectionException("Database connection not valid", "08S01");
+        }
+        List<IdleConnection> stale;
+        synchronized (idle) {
+            stale = new ArrayList<>(idle);
+            idle.clear();
+            if (!closed) {
+                idle.push(new IdleConnection(physical(connection, settings), System.currentTimeMillis()));
+            }
+        }
+        if (closed) {
+            closeQuietly(connection);
+        }
+        for (IdleConnection entry : stale) {
+            closeQuietly(entry.physical.connection);
+        }
+    }
+
+    /**
+     * Called when a borrowed connection is closed by its user.
+     */
+    private void giveBack(PhysicalConnection physical) {
+        Connection connection = physical.connection;
+        try {
+            if (closed || connection.isClosed() || physical.target != target) {
+                closeQuietly(connection);
+                return;
+            }
+            physical.statements.releaseAll();
+            if (!connection.getAutoCommit()) {
+                connection.rollback(); // Uncommitted work must not leak to the next borrower
+                connection.setAutoCommit(true);
+            }
+            synchronized (idle) {
+                idle.push(new IdleConnection(physical, System.currentTimeMillis()));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Discarding a connection that could not be reset", e);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(PhysicalConnection physical) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledHandler(physical, leases.acquired()));
+    }
+
+    /**
+     * Forward a call to a physical connection or statement, and tell the circuit breaker:
+     * a connection failure counts like a failed connection attempt, a statement executed
+     * like a successful one. Other SQL errors say nothing about the server being reachable.
+     */
+    static Object forward(CircuitBreaker breaker, Object target, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException && DatabaseConnection.isConnectionFailure((SQLException) cause)) {
+                breaker.recordFailure();
+            }
+            throw cause;
+        }
+        if (method.getName().startsWith("execute")) {
+            breaker.recordSuccess();
+        }
+        return result;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing a pooled connection", e);
+        }
+    }
+
+    /**
+     * Forwards every call to the physical connection, except close (gives it back), isClosed
+     * and the plain prepareStatement forms (served by the statement cache); calls after close
+     * fail like they would on a real connection. Every statement created goes through
+     * {@link CancellationToken#track}; those the cache does not serve are wrapped in a
+     * {@link StatementHandler} so that their executions reach the circuit breaker as well.
+     */
+    private final class PooledHandler implements InvocationHandler {
+        private PhysicalConnection physical;
+        private final LeaseTracker.Lease lease;
+
+        private PooledHandler(PhysicalConnection physical, LeaseTracker.Lease lease) {
+            this.physical = physical;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (physical != null) {
+                        PhysicalConnection connection = physical;
+                        physical = null;
+                        leases.released(lease);
+                        giveBack(connection);
+                    } else {
+                        leases.closedTwice();
+                    }
+                    return null;
+                case "isClosed":
+                    return physical == null || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (physical == null ? null : physical.connection) + "]";
+                default:
+                    break;
+            }
+            if (physical == null) {
+                throw new SQLException("Connection is closed");
+            }
+            if (method.getName().equals("prepareStatement") && args.length <= 2
+                    && (args.length == 1 || method.getParameterTypes()[1] == int.class)) {
+                int autoGeneratedKeys = args.length == 1 ? Statement.NO_GENERATED_KEYS : (Integer) args[1];
+                Statement statement = physical.statements.prepare(physical.connection, (Connection) proxy,
+                        (String) args[0], autoGeneratedKeys);
+                CancellationToken.track(statement);
+                return statement;
+            }
+            Object result = forward(breaker, physical.connection, method, args);
+            if (result instanceof Statement) {
+                Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new StatementHandler((Statement) result, (Connection) proxy));
+                CancellationToken.track(statement);
+                return statement;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A statement created outside the cache (createStatement, prepareCall, prepareStatement with
+     * a result set type): calls are forwarded through {@link #forward}, and getConnection
+     * returns the pooled connection rather than the physical one.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final Connection logical;
+
+        private StatementHandler(Statement statement, Connection logical) {
+            this.statement = statement;
+            this.logical = logical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return logical;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledStatement[" + statement + "]";
+                default:
+                    return forward(breaker, statement, method, args);
+            }
+        }
+    }
+
+    private final class Diagnostics implements ConnectionPoolMXBean {
+        @Override
+        public int getActiveConnections() {
+            return activeCount();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return idleCount();
+        }
+
+        @Override
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        @Override
+        public int getPeakActiveConnections() {
+            return leases.getPeakActive();
+        }
+
+        @Override
+        public int getThreadsAwaitingConnection() {
+            return permits.getQueueLength();
+        }
+
+        @Override
+        public long getBorrowCount() {
+            return leases.getBorrowCount();
+        }
+
+        @Override
+        public long getBorrowTimeouts() {
+            return leases.getBorrowTimeouts();
+        }
+
+        @Override
+        public double getAverageWaitMillis() {
+            return leases.getAverageWaitMillis();
+        }
+
+        @Override
+        public double getMaxWaitMillis() {
+            return leases.getMaxWaitMillis();
+        }
+
+        @Override
+        public long getLongestHeldMillis() {
+            return leases.getOldestLeaseMillis();
+        }
+
+        @Override
+        public long getLeaksDetected() {
+            return leases.getLeaksDetected();
+        }
+
+        @Override
+        public long getDoubleCloses() {
+            return leases.getDoubleCloses();
+        }
+
+        @Override
+        public long getLeakThresholdMillis() {
+            return leases.getThresholdMillis();
+        }
+
+        @Override
+        public int getBorrowSiteSampleRate() {
+            return leases.getSampleRate();
+        }
+
+        @Override
+        public double getStatementCacheHitRatio() {
+            return statementCacheStats().getHitRatio();
+        }
+
+        @Override
+        public String getCircuitState() {
+            return breaker.getState().name();
+        }
+
+        @Override
+        public String[] describeBorrowedConnections() {
+            return leases.describeLeases().toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package utils;
+
+/**
+ * Usage figures of the {@link ConnectionPool}, registered with the platform MBean server
+ * (jconsole, VisualVM: {@code gestion_exercices:type=ConnectionPool}). Counters run from the
+ * start of the application.
+ */
+public interface ConnectionPoolMXBean {
+    /** Connections currently borrowed. */
+    int getActiveConnections();
+
+    /** Open connections waiting in the pool. */
+    int getIdleConnections();
+
+    int getMaxSize();
+
+    /** Most connections borrowed at the same time. */
+    int getPeakActiveConnections();
+
+    /** Threads currently waiting for a free connection. */
+    int getThreadsAwaitingConnection();
+
+    long getBorrowCount();
+
+    /** Borrows that gave up after the borrow timeout. */
+    long getBorrowTimeouts();
+
+    /** Average wait for a free connection, timed out borrows included. */
+    double getAverageWaitMillis();
+
+    double getMaxWaitMillis();
+
+    /** How long the connection borrowed the earliest has been held, 0 if none is. */
+    long getLongestHeldMillis();
+
+    /** Connections held longer than the leak threshold. */
+    long getLeaksDetected();
+
+    /** close() calls on connections already given back. */
+    long getDoubleCloses();
+
+    long getLeakThresholdMillis();
+
+    int getBorrowSiteSampleRate();
+
+    double getStatementCacheHitRatio();
+
+    String getCircuitState();
+
+    /**
+     * One line per borrowed connection, longest held first: hold time, thread and, when it was
+     * sampled, the borrow site.
+     */
+    String[] describeBorrowedConnections();
+}
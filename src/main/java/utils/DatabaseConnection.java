@@ -1,57 +1,178 @@
 package utils;
 
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 public class DatabaseConnection {
     private static final Logger LOGGER = Logger.getLogger(DatabaseConnection.class.getName());
-    private static final String URL = "jdbc:mysql://localhost:3306/gestion_exercices";
-    private static final String USER = "root"; // par défaut
-    private static final String PASSWORD = ""; // vide par défaut dans XAMPP
-    
-    // For better performance in a real app, this would be a connection pool
-    private static Connection sharedConnection;
+    // Connection settings, pool size, timeouts and retries come from AppConfig and follow its reloads
+    private static final RetryPolicy RETRY = createRetryPolicy(AppConfig.get());
+    private static final ConnectionPool POOL = createPool(AppConfig.get());
+    private static final String POOL_MBEAN_NAME = "gestion_exercices:type=ConnectionPool";
+    private static volatile boolean driverLoaded;
+    private static volatile boolean schemaMigrated;
     
     /**
-     * Get a database connection. In a simple implementation, this returns a direct connection.
-     * In a production environment, this would return a connection from a connection pool.
+     * Get a database connection from the pool. Closing it (try-with-resources)
+     * gives it back to the pool instead of closing the socket.
+     * The first successful call applies the pending schema migrations.
+     * Fails at once while the circuit breaker is open (database known to be unreachable).
      */
     public static Connection getConnection() throws SQLException {
-        if (sharedConnection == null || sharedConnection.isClosed()) {
-            try {
-                // Ensure driver is loaded (modern JDBC drivers don't require this,
-                // but it's good practice for compatibility)
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                
-                // Create a new connection
-                sharedConnection = DriverManager.getConnection(URL, USER, PASSWORD);
-                LOGGER.info("Database connection established");
-            } catch (ClassNotFoundException e) {
-                LOGGER.log(Level.SEVERE, "MySQL JDBC Driver not found", e);
-                throw new SQLException("MySQL JDBC Driver not found", e);
+        loadDriver();
+        POOL.circuitBreaker().check();
+        if (!schemaMigrated) {
+            migrateSchema();
+        }
+        return POOL.borrow();
+    }
+    
+    /**
+     * Open a few connections ahead of time, typically in the background while the
+     * login screen is displayed. Does nothing if the database is unreachable.
+     */
+    public static void warmUp() {
+        try {
+            loadDriver();
+            POOL.warmUp(AppConfig.get().getInt(AppConfig.POOL_WARM_CONNECTIONS));
+            migrateSchema();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not warm up the connection pool", e);
+        }
+    }
+    
+    private static RetryPolicy createRetryPolicy(AppConfig config) {
+        return new RetryPolicy(config.getInt(AppConfig.RETRY_MAX_ATTEMPTS),
+                config.getLong(AppConfig.RETRY_BASE_DELAY_MILLIS), config.getLong(AppConfig.RETRY_MAX_DELAY_MILLIS));
+    }
+    
+    private static ConnectionPool createPool(AppConfig config) {
+        ConnectionPool pool = new ConnectionPool(config.jdbcUrl(), config.getString(AppConfig.DB_USER),
+                config.getString(AppConfig.DB_PASSWORD), config.getInt(AppConfig.POOL_SIZE),
+                config.getLong(AppConfig.POOL_BORROW_TIMEOUT_MILLIS),
+                config.getInt(AppConfig.BREAKER_FAILURE_THRESHOLD), config.getLong(AppConfig.BREAKER_PROBE_INTERVAL_MILLIS));
+        pool.setValidateAfterIdleMillis(config.getLong(AppConfig.POOL_VALIDATE_AFTER_IDLE_MILLIS));
+        pool.setStatementCacheSize(config.getInt(AppConfig.POOL_STATEMENT_CACHE_SIZE));
+        pool.setLeakThresholdMillis(config.getLong(AppConfig.POOL_LEAK_THRESHOLD_MILLIS));
+        pool.setBorrowSiteSampleRate(config.getInt(AppConfig.POOL_BORROW_SITE_SAMPLE_RATE));
+        return pool;
+    }
+    
+    /**
+     * Publish the pool's usage figures (wait times, active connections, leaks) over JMX.
+     * The application keeps running without them if the registration fails.
+     */
+    private static void registerPoolMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(POOL.diagnostics(), ConnectionPoolMXBean.class, true),
+                    new ObjectName(POOL_MBEAN_NAME));
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register the connection pool MBean", e);
+        }
+    }
+    
+    /**
+     * Apply a reloaded configuration to the running pool and retry policy.
+     */
+    private static void reconfigure(AppConfig config) {
+        POOL.setConnectionSettings(config.jdbcUrl(), config.getString(AppConfig.DB_USER),
+                config.getString(AppConfig.DB_PASSWORD));
+        POOL.setMaxSize(config.getInt(AppConfig.POOL_SIZE));
+        POOL.setBorrowTimeoutMillis(config.getLong(AppConfig.POOL_BORROW_TIMEOUT_MILLIS));
+        POOL.setValidateAfterIdleMillis(config.getLong(AppConfig.POOL_VALIDATE_AFTER_IDLE_MILLIS));
+        POOL.setStatementCacheSize(config.getInt(AppConfig.POOL_STATEMENT_CACHE_SIZE));
+        POOL.setLeakThresholdMillis(config.getLong(AppConfig.POOL_LEAK_THRESHOLD_MILLIS));
+        POOL.setBorrowSiteSampleRate(config.getInt(AppConfig.POOL_BORROW_SITE_SAMPLE_RATE));
+        POOL.circuitBreaker().setFailureThreshold(config.getInt(AppConfig.BREAKER_FAILURE_THRESHOLD));
+        POOL.circuitBreaker().setProbeIntervalMillis(config.getLong(AppConfig.BREAKER_PROBE_INTERVAL_MILLIS));
+        RETRY.configure(config.getInt(AppConfig.RETRY_MAX_ATTEMPTS),
+                config.getLong(AppConfig.RETRY_BASE_DELAY_MILLIS), config.getLong(AppConfig.RETRY_MAX_DELAY_MILLIS));
+    }
+    
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+    
+    /**
+     * The breaker of the pool: open while the database is unreachable (degraded mode).
+     */
+    public static CircuitBreaker getCircuitBreaker() {
+        return POOL.circuitBreaker();
+    }
+    
+    /**
+     * The retry policy of the DAO writes; its counters show lock contention.
+     */
+    public static RetryPolicy getRetryPolicy() {
+        return RETRY;
+    }
+    
+    /**
+     * Apply the schema migrations once per run. Only a connection failure is rethrown (the
+     * caller could not have connected either, and the next call tries again); a failing
+     * migration is logged and the application keeps running on the existing schema. The
+     * failed migration is not recorded: the next start runs it again, skipping the columns
+     * and indexes it already added (see {@link SchemaMigrator}).
+     */
+    private static synchronized void migrateSchema() throws SQLException {
+        if (schemaMigrated) {
+            return;
+        }
+        try (Connection conn = POOL.borrow()) {
+            SchemaMigrator.migrate(conn);
+        } catch (SQLException e) {
+            if (isConnectionFailure(e)) {
+                throw e;
             }
+            LOGGER.log(Level.SEVERE, "Schema migration failed", e);
+        }
+        schemaMigrated = true;
+    }
+    
+    private static void loadDriver() throws SQLException {
+        if (driverLoaded) {
+            return;
+        }
+        try {
+            // Ensure driver is loaded (modern JDBC drivers don't require this,
+            // but it's good practice for compatibility)
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            driverLoaded = true;
+        } catch (ClassNotFoundException e) {
+            LOGGER.log(Level.SEVERE, "MySQL JDBC Driver not found", e);
+            throw new SQLException("MySQL JDBC Driver not found", e);
         }
-        return sharedConnection;
     }
     
     /**
-     * Close the shared database connection if it's open
+     * Tell whether an exception means the database could not be reached
+     * (as opposed to an error in the query itself).
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLNonTransientConnectionException || e instanceof SQLTransientConnectionException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+    
+    /**
+     * Close the pooled database connections
      */
     public static void closeConnection() {
-        if (sharedConnection != null) {
-            try {
-                if (!sharedConnection.isClosed()) {
-                    sharedConnection.close();
-                    LOGGER.info("Database connection closed");
-                }
-            } catch (SQLException e) {
-                LOGGER.log(Level.WARNING, "Error closing database connection", e);
-            } finally {
-                sharedConnection = null;
-            }
+        POOL.close();
+        RetryPolicy.Stats retries = RETRY.stats();
+        if (retries.getRetries() > 0) {
+            LOGGER.info("Database write retries: " + retries);
         }
     }
     
@@ -59,8 +180,10 @@ public class DatabaseConnection {
      * Shutdown hook to ensure connection is closed when the application exits
      */
     static {
+        AppConfig.addListener(DatabaseConnection::reconfigure);
+        registerPoolMBean();
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            LOGGER.info("Application shutdown detected, closing database connection");
+            LOGGER.info("Application shutdown detected, closing database connections");
             closeConnection();
         }));
     }
@@ -0,0 +1,83 @@
+package utils;
+
+/**
+ * HyperLogLog sketch: approximate count of distinct values in constant memory.
+ *
+ * Each value is hashed to 64 bits; the first {@link #PRECISION} bits pick one of
+ * {@link #REGISTERS} registers, which keeps the highest "rank" (position of the first 1 bit
+ * in the rest of the hash) seen so far. Registers only ever grow, so sketches are merged by
+ * taking the maximum register by register, and a sketch can be stored as one row per
+ * non-empty register and updated with a single {@code GREATEST(...)} upsert.
+ *
+ * With 1024 registers the standard error is about 3%; small counts use linear counting
+ * and are close to exact.
+ */
+public final class HyperLogLog {
+    public static final int PRECISION = 10;
+    public static final int REGISTERS = 1 << PRECISION;
+    private static final int MAX_RANK = 64 - PRECISION + 1;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Hash an identifier (user id, ...) to 64 well-mixed bits (SplitMix64 finalizer).
+     */
+    public static long hash(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The register a hash falls into.
+     */
+    public static int register(long hash) {
+        return (int) (hash >>> (64 - PRECISION));
+    }
+
+    /**
+     * The rank a hash gives its register: 1 + number of leading zeros after the register bits.
+     */
+    public static int rank(long hash) {
+        long rest = hash << PRECISION;
+        return rest == 0 ? MAX_RANK : Math.min(MAX_RANK, Long.numberOfLeadingZeros(rest) + 1);
+    }
+
+    public void add(long hash) {
+        update(register(hash), rank(hash));
+    }
+
+    /**
+     * Raise a register to the given rank (no effect if it is already higher).
+     */
+    public void update(int register, int rank) {
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            update(i, other.registers[i]);
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte value : registers) {
+            sum += 1.0 / (1L << value);
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting: much more accurate while many registers are still empty
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
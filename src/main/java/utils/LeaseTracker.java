@@ -0,0 +1,243 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Bookkeeping of the connections handed out by a {@link ConnectionPool}: who holds them, for
+ * how long, and how long borrowers waited for them.
+ *
+ * Every borrow is recorded (time and thread); the call stack of the borrower is captured for
+ * one borrow in {@code sampleRate} only, with a {@link StackWalker} limited to a few frames, so
+ * that the common path stays a map insertion. A background scan reports once each connection
+ * held longer than the threshold, with its borrow site when it was sampled.
+ */
+final class LeaseTracker {
+    private static final Logger LOGGER = Logger.getLogger(LeaseTracker.class.getName());
+    private static final long SCAN_PERIOD_SECONDS = 5;
+    private static final int SITE_FRAMES = 12;
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder doubleCloses = new LongAdder();
+    private volatile long thresholdMillis;
+    private volatile int sampleRate;
+    private ScheduledExecutorService scanner; // guarded by this, started with the first lease
+
+    /**
+     * One connection handed out, until it is closed.
+     */
+    static final class Lease {
+        private final long borrowedAt = System.nanoTime();
+        private final String thread = Thread.currentThread().getName();
+        private final List<StackWalker.StackFrame> site;
+        private volatile boolean reported;
+
+        private Lease(List<StackWalker.StackFrame> site) {
+            this.site = site;
+        }
+
+        long heldMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - borrowedAt);
+        }
+
+        @Override
+        public String toString() {
+            return "held " + heldMillis() + " ms by thread " + thread
+                    + (site != null ? ", borrowed at " + formatSite(site, " <- ") : "");
+        }
+    }
+
+    /**
+     * @param thresholdMillis hold time after which a connection is reported as a probable leak
+     * @param sampleRate capture the borrow site of one borrow in this many; 1 for all, 0 for none
+     */
+    LeaseTracker(long thresholdMillis, int sampleRate) {
+        this.thresholdMillis = thresholdMillis;
+        this.sampleRate = sampleRate;
+    }
+
+    void setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * A borrower waited this long for a permit, and got one or timed out.
+     */
+    void waited(long nanos, boolean acquired) {
+        waitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        if (!acquired) {
+            borrowTimeouts.increment();
+        }
+    }
+
+    /**
+     * Record a connection handed out to the calling thread.
+     */
+    Lease acquired() {
+        int rate = sampleRate;
+        List<StackWalker.StackFrame> site = rate > 0 && ThreadLocalRandom.current().nextInt(rate) == 0
+                ? WALKER.walk(frames -> frames
+                        .dropWhile(frame -> isPoolFrame(frame.getClassName()))
+                        .limit(SITE_FRAMES)
+                        .collect(Collectors.toList()))
+                : null;
+        Lease lease = new Lease(site);
+        leases.add(lease);
+        borrows.increment();
+        peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        startScanner();
+        return lease;
+    }
+
+    void released(Lease lease) {
+        leases.remove(lease);
+        active.decrementAndGet();
+        if (lease.reported) {
+            LOGGER.info("Connection reported as leaked returned after " + lease.heldMillis() + " ms");
+        }
+    }
+
+    /**
+     * close() was called again on a connection already given back: harmless, but a sign of
+     * mixed manual and try-with-resources handling.
+     */
+    void closedTwice() {
+        doubleCloses.increment();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Connection closed twice", new Throwable("Second close"));
+        }
+    }
+
+    long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+
+    double getAverageWaitMillis() {
+        long count = borrows.sum() + borrowTimeouts.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1e6 / count;
+    }
+
+    double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    int getPeakActive() {
+        return peakActive.get();
+    }
+
+    long getLeaksDetected() {
+        return leaks.sum();
+    }
+
+    long getDoubleCloses() {
+        return doubleCloses.sum();
+    }
+
+    long getOldestLeaseMillis() {
+        long oldest = 0;
+        for (Lease lease : leases) {
+            oldest = Math.max(oldest, lease.heldMillis());
+        }
+        return oldest;
+    }
+
+    /**
+     * The connections currently handed out, longest held first.
+     */
+    List<String> describeLeases() {
+        List<Lease> snapshot = new ArrayList<>(leases);
+        snapshot.sort(Comparator.comparingLong((Lease lease) -> lease.borrowedAt));
+        List<String> descriptions = new ArrayList<>(snapshot.size());
+        for (Lease lease : snapshot) {
+            descriptions.add(lease.toString());
+        }
+        return Collections.unmodifiableList(descriptions);
+    }
+
+    synchronized void shutdown() {
+        if (scanner != null) {
+            scanner.shutdownNow();
+            scanner = null;
+        }
+    }
+
+    private synchronized void startScanner() {
+        if (scanner != null) {
+            return;
+        }
+        scanner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pool-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scanner.scheduleWithFixedDelay(this::scan, SCAN_PERIOD_SECONDS, SCAN_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void scan() {
+        long threshold = thresholdMillis;
+        for (Lease lease : leases) {
+            if (lease.reported || lease.heldMillis() < threshold) {
+                continue;
+            }
+            lease.reported = true;
+            leaks.increment();
+            if (lease.site != null) {
+                LOGGER.warning("Probable connection leak: " + lease.thread + " has held a connection for "
+                        + lease.heldMillis() + " ms, borrowed at\n\t" + formatSite(lease.site, "\n\t"));
+            } else {
+                LOGGER.warning("Probable connection leak: " + lease.thread + " has held a connection for "
+                        + lease.heldMillis() + " ms (borrow site not sampled; "
+                        + AppConfig.POOL_BORROW_SITE_SAMPLE_RATE + "=1 captures every borrow)");
+            }
+        }
+    }
+
+    private static boolean isPoolFrame(String className) {
+        return className.equals(LeaseTracker.class.getName()) || className.startsWith(ConnectionPool.class.getName())
+                || className.equals(DatabaseConnection.class.getName());
+    }
+
+    private static String formatSite(List<StackWalker.StackFrame> site, String separator) {
+        return site.stream().map(StackWalker.StackFrame::toStackTraceElement).map(String::valueOf)
+                .collect(Collectors.joining(separator));
+    }
+}
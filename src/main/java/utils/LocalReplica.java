@@ -0,0 +1,334 @@
+package utils;
+
+import models.Exercice;
+import models.Matiere;
+import models.Solution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local replica of the matiere and exercice tables and of the solutions the user has
+ * consulted, including the ones written offline and not synchronized yet.
+ *
+ * The DAOs refresh it after each successful query and read from it when the database
+ * cannot be reached. Matieres and exercices are also served from it while they are
+ * fresh (see {@link AppConfig#REPLICA_REFRESH_TTL_MILLIS}), which saves a round trip on every screen switch; any
+ * write made through the DAOs invalidates the affected scope. The replica is kept in
+ * memory and saved to a binary file in the background, so it survives a restart.
+ */
+public final class LocalReplica {
+    private static final Logger LOGGER = Logger.getLogger(LocalReplica.class.getName());
+    private static final int FORMAT_VERSION = 3;
+
+    /** Directory holding the client-side files (replica, outbox). */
+    public static final Path DATA_DIRECTORY = Paths.get(System.getProperty("user.home"), ".gestion_exercices");
+
+    public static final String SCOPE_MATIERES = "matieres";
+    public static final String SCOPE_EXERCICES = "exercices";
+
+    private static final LocalReplica INSTANCE = new LocalReplica(DATA_DIRECTORY.resolve("replica.bin"));
+
+    private final Path file;
+    private final List<Matiere> matieres = new ArrayList<>();
+    private final Map<Integer, Exercice> exercices = new HashMap<>();
+    private final Map<Integer, Solution> solutions = new HashMap<>();
+    private final Map<String, Long> refreshedAt = new HashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private boolean loaded;
+
+    private LocalReplica(Path file) {
+        this.file = file;
+    }
+
+    public static LocalReplica get() {
+        return INSTANCE;
+    }
+
+    // === Freshness ===
+
+    /**
+     * Returns true if the scope was refreshed from the database less than the configured TTL ago.
+     */
+    public synchronized boolean isFresh(String scope) {
+        Long time = refreshedAt.get(scope);
+        return time != null
+                && System.currentTimeMillis() - time < AppConfig.get().getLong(AppConfig.REPLICA_REFRESH_TTL_MILLIS);
+    }
+
+    /**
+     * Forces the next read of every scope starting with the given prefix to hit the database.
+     */
+    public synchronized void invalidate(String scopePrefix) {
+        refreshedAt.keySet().removeIf(scope -> scope.startsWith(scopePrefix));
+    }
+
+    // === Matieres ===
+
+    public synchronized List<Matiere> getMatieres() {
+        ensureLoaded();
+        List<Matiere> copy = new ArrayList<>(matieres.size());
+        for (Matiere matiere : matieres) {
+            copy.add(copy(matiere));
+        }
+        return copy;
+    }
+
+    public synchronized void replaceMatieres(List<Matiere> fresh) {
+        ensureLoaded();
+        matieres.clear();
+        for (Matiere matiere : fresh) {
+            matieres.add(copy(matiere));
+        }
+        refreshedAt.put(SCOPE_MATIERES, System.currentTimeMillis());
+        scheduleSave();
+    }
+
+    // === Exercices ===
+
+    public synchronized List<Exercice> findExercices(Predicate<Exercice> filter) {
+        ensureLoaded();
+        List<Exercice> result = new ArrayList<>();
+        for (Exercice exercice : exercices.values()) {
+            if (filter.test(exercice)) {
+                result.add(copy(exercice));
+            }
+        }
+        result.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        return result;
+    }
+
+    /**
+     * Replaces the exercices of one scope (e.g. one matiere) with the rows just read from the database.
+     */
+    public synchronized void replaceExercices(String scope, Predicate<Exercice> scopeFilter, List<Exercice> fresh) {
+        ensureLoaded();
+        exercices.values().removeIf(scopeFilter);
+        for (Exercice exercice : fresh) {
+            exercices.put(exercice.getId(), copy(exercice));
+        }
+        refreshedAt.put(scope, System.currentTimeMillis());
+        scheduleSave();
+    }
+
+    // === Solutions ===
+
+    public synchronized List<Solution> findSolutions(Predicate<Solution> filter) {
+        ensureLoaded();
+        List<Solution> result = new ArrayList<>();
+        for (Solution solution : solutions.values()) {
+            if (filter.test(solution)) {
+                result.add(copy(solution));
+            }
+        }
+        result.sort((a, b) -> a.getDateCreation().compareTo(b.getDateCreation()));
+        return result;
+    }
+
+    public synchronized void replaceSolutions(Predicate<Solution> scopeFilter, List<Solution> fresh) {
+        ensureLoaded();
+        // Les solutions créées hors ligne (id négatif) restent jusqu'à leur synchronisation
+        solutions.values().removeIf(solution -> solution.getId() > 0 && scopeFilter.test(solution));
+        for (Solution solution : fresh) {
+            solutions.put(solution.getId(), copy(solution));
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Returns the local copy of a solution, or null if it was never read.
+     */
+    public synchronized Solution getSolution(int id) {
+        ensureLoaded();
+        Solution solution = solutions.get(id);
+        return solution != null ? copy(solution) : null;
+    }
+
+    public synchronized void putSolution(Solution solution) {
+        ensureLoaded();
+        solutions.put(solution.getId(), copy(solution));
+        scheduleSave();
+    }
+
+    public synchronized void removeSolution(int id) {
+        ensureLoaded();
+        if (solutions.remove(id) != null) {
+            scheduleSave();
+        }
+    }
+
+    // === Persistence ===
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return; // Ancien format : la réplique sera reconstruite
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Matiere matiere = new Matiere(in.readInt(), in.readUTF());
+                matiere.setNbExercices(in.readInt());
+                matieres.add(matiere);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Exercice exercice = new Exercice(in.readInt(), readLongString(in), readLongString(in),
+                        toDate(in.readLong()), in.readInt(), in.readInt());
+                exercice.setMatiereNom(in.readUTF());
+                exercice.setNbSolutions(in.readInt());
+                exercices.put(exercice.getId(), exercice);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Solution solution = new Solution(in.readInt(), readLongString(in),
+                        toDate(in.readLong()), in.readInt(), in.readInt());
+                solution.setAuteurNom(in.readUTF());
+                solution.setVersion(in.readInt());
+                solutions.put(solution.getId(), solution);
+            }
+            LOGGER.info("Local replica loaded: " + matieres.size() + " matieres, "
+                    + exercices.size() + " exercices, " + solutions.size() + " solutions");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read local replica, starting empty", e);
+            matieres.clear();
+            exercices.clear();
+            solutions.clear();
+        }
+    }
+
+    /**
+     * Saves the replica in the background; several changes in a row lead to a single write.
+     */
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                savePending.set(false);
+                save();
+            });
+        }
+    }
+
+    private void save() {
+        List<Matiere> matieresCopy;
+        List<Exercice> exercicesCopy;
+        List<Solution> solutionsCopy;
+        synchronized (this) {
+            matieresCopy = new ArrayList<>(matieres);
+            exercicesCopy = new ArrayList<>(exercices.values());
+            solutionsCopy = new ArrayList<>(solutions.values());
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(matieresCopy.size());
+                for (Matiere matiere : matieresCopy) {
+                    out.writeInt(matiere.getId());
+                    out.writeUTF(nonNull(matiere.getNom()));
+                    out.writeInt(matiere.getNbExercices());
+                }
+                out.writeInt(exercicesCopy.size());
+                for (Exercice exercice : exercicesCopy) {
+                    out.writeInt(exercice.getId());
+                    writeLongString(out, exercice.getTitre());
+                    writeLongString(out, exercice.getDescription());
+                    out.writeLong(toEpoch(exercice.getDateCreation()));
+                    out.writeInt(exercice.getMatiereId());
+                    out.writeInt(exercice.getCreateurId());
+                    out.writeUTF(nonNull(exercice.getMatiereNom()));
+                    out.writeInt(exercice.getNbSolutions());
+                }
+                out.writeInt(solutionsCopy.size());
+                for (Solution solution : solutionsCopy) {
+                    out.writeInt(solution.getId());
+                    writeLongString(out, solution.getContenu());
+                    out.writeLong(toEpoch(solution.getDateCreation()));
+                    out.writeInt(solution.getExerciceId());
+                    out.writeInt(solution.getAuteurId());
+                    out.writeUTF(nonNull(solution.getAuteurNom()));
+                    out.writeInt(solution.getVersion());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save local replica", e);
+        }
+    }
+
+    // writeUTF is limited to 64 KB, which a long description or solution can exceed
+    static void writeLongString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = nonNull(text).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readLongString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long toEpoch(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toDate(long epoch) {
+        return LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC);
+    }
+
+    private static String nonNull(String text) {
+        return text != null ? text : "";
+    }
+
+    private static Matiere copy(Matiere source) {
+        Matiere matiere = new Matiere(source.getId(), source.getNom());
+        matiere.setNbExercices(source.getNbExercices());
+        return matiere;
+    }
+
+    private static Exercice copy(Exercice source) {
+        Exercice exercice = new Exercice(source.getId(), source.getTitre(), source.getDescription(),
+                source.getDateCreation(), source.getMatiereId(), source.getCreateurId());
+        exercice.setMatiereNom(source.getMatiereNom());
+        exercice.setNbSolutions(source.getNbSolutions());
+        return exercice;
+    }
+
+    private static Solution copy(Solution source) {
+        Solution solution = new Solution(source.getId(), source.getContenu(), source.getDateCreation(),
+                source.getExerciceId(), source.getAuteurId());
+        solution.setAuteurNom(source.getAuteurNom());
+        solution.setVersion(source.getVersion());
+        return solution;
+    }
+}
@@ -0,0 +1,228 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiting and short-lived caching for login attempts.
+ *
+ * Each account and each host has a token bucket: an attempt takes a token, tokens come back
+ * at a fixed rate, and an empty bucket means the attempt is refused without touching the
+ * database. Buckets live in striped concurrent maps; a stripe that grows too large drops its
+ * idle (full) buckets, so the memory used stays bounded whatever the number of distinct keys.
+ *
+ * Unknown email/role pairs are remembered for a short time (negative cache), so a burst of
+ * attempts on a mistyped address costs one query. Attempts in progress are counted, and a
+ * second attempt on an account that is already being checked is refused.
+ */
+public final class LoginThrottle {
+    private static final int STRIPES = 16;
+    private static final int MAX_BUCKETS_PER_STRIPE = 1024;
+
+    // Per account: 5 quick attempts, then one every 20 seconds
+    private static final int ACCOUNT_CAPACITY = 5;
+    private static final double ACCOUNT_REFILL_PER_SECOND = 1.0 / 20;
+    // Per host: a whole lab logging in from one machine, or one client retrying in a loop
+    private static final int HOST_CAPACITY = 30;
+    private static final double HOST_REFILL_PER_SECOND = 2;
+    private static final long UNKNOWN_TTL_MILLIS = 30_000;
+
+    private static final LoginThrottle INSTANCE = new LoginThrottle();
+
+    private final Striped accounts = new Striped(ACCOUNT_CAPACITY, ACCOUNT_REFILL_PER_SECOND);
+    private final Striped hosts = new Striped(HOST_CAPACITY, HOST_REFILL_PER_SECOND);
+    private final Map<String, Long> unknown = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> inProgress = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong unknownHits = new AtomicLong();
+
+    private LoginThrottle() {
+    }
+
+    public static LoginThrottle get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Thrown when an attempt is refused; the caller should ask the user to wait.
+     */
+    public static final class ThrottledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        public ThrottledException(long retryAfterSeconds) {
+            super("Too many login attempts, retry in " + retryAfterSeconds + " s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Start an attempt: takes a token from the host and account buckets and marks the
+     * account as being checked. Every successful call must be followed by {@link #finish}.
+     *
+     * @throws ThrottledException if a bucket is empty or the account is already being checked
+     */
+    public void begin(String email, String host) {
+        String account = key(email);
+        long now = System.nanoTime();
+        long hostWait = hosts.bucket(host).tryTake(now);
+        long accountWait = hostWait == 0 ? accounts.bucket(account).tryTake(now) : 0;
+        if (hostWait > 0 || accountWait > 0) {
+            throttled.incrementAndGet();
+            throw new ThrottledException(Math.max(1, Math.max(hostWait, accountWait)));
+        }
+        if (inProgress.putIfAbsent(account, Boolean.TRUE) != null) {
+            throttled.incrementAndGet();
+            throw new ThrottledException(1);
+        }
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+    }
+
+    /**
+     * End an attempt. A successful login gives the account its full allowance back.
+     */
+    public void finish(String email, boolean success) {
+        String account = key(email);
+        inProgress.remove(account);
+        inFlight.decrementAndGet();
+        if (success) {
+            accounts.reset(account);
+        }
+    }
+
+    /**
+     * Tell whether this email/role pair was recently found not to exist.
+     */
+    public boolean isKnownUnknown(String email, String role) {
+        String key = key(email) + '|' + role;
+        Long expiry = unknown.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            unknown.remove(key, expiry);
+            return false;
+        }
+        unknownHits.incrementAndGet();
+        return true;
+    }
+
+    public void rememberUnknown(String email, String role) {
+        if (unknown.size() >= STRIPES * MAX_BUCKETS_PER_STRIPE) {
+            long now = System.currentTimeMillis();
+            unknown.values().removeIf(expiry -> expiry < now);
+        }
+        unknown.put(key(email) + '|' + role, System.currentTimeMillis() + UNKNOWN_TTL_MILLIS);
+    }
+
+    /**
+     * Forget a negative entry, e.g. right after the account has been created.
+     */
+    public void forgetUnknown(String email) {
+        String prefix = key(email) + '|';
+        unknown.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public long getUnknownHits() {
+        return unknownHits.get();
+    }
+
+    private static String key(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Token buckets spread over independent maps, each cleaned on its own.
+     */
+    private static final class Striped {
+        private final List<Map<String, TokenBucket>> stripes = new ArrayList<>(STRIPES);
+        private final int capacity;
+        private final double refillPerSecond;
+
+        private Striped(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+            for (int i = 0; i < STRIPES; i++) {
+                stripes.add(new ConcurrentHashMap<>());
+            }
+        }
+
+        private Map<String, TokenBucket> stripe(String key) {
+            return stripes.get((key.hashCode() & 0x7fffffff) % STRIPES);
+        }
+
+        private TokenBucket bucket(String key) {
+            Map<String, TokenBucket> stripe = stripe(key);
+            if (stripe.size() >= MAX_BUCKETS_PER_STRIPE) {
+                long now = System.nanoTime();
+                stripe.values().removeIf(bucket -> bucket.isFull(now));
+            }
+            return stripe.computeIfAbsent(key, k -> new TokenBucket(capacity, refillPerSecond));
+        }
+
+        private void reset(String key) {
+            stripe(key).remove(key);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final int capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long last;
+
+        private TokenBucket(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / 1_000_000_000d;
+            this.tokens = capacity;
+            this.last = System.nanoTime();
+        }
+
+        /**
+         * Take a token; returns 0 on success, otherwise the seconds until one is available.
+         */
+        private synchronized long tryTake(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / refillPerNano / 1_000_000_000d);
+        }
+
+        private synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - last) * refillPerNano);
+            last = now;
+        }
+    }
+}
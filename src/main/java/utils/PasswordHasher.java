@@ -0,0 +1,116 @@
+package utils;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2 password hashes (JDK implementation, no extra dependency).
+ *
+ * Stored format: {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} with Base64 salt and hash.
+ * The iteration count is kept in each hash, so raising {@link #ITERATIONS} only affects new
+ * hashes; older ones are upgraded on the next successful login (see {@link #needsRehash}).
+ * Values without the prefix are legacy plain-text passwords.
+ */
+public final class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    // Cost recommended by OWASP for PBKDF2-HMAC-SHA256; raise it as hardware gets faster
+    public static final int ITERATIONS = 210_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // Checked when no account matches, so that an unknown email costs as much as a wrong password
+    private static final String DUMMY_HASH = hash("no such account");
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Hash a password with a fresh random salt.
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, ITERATIONS);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + ITERATIONS + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    /**
+     * Check a password against a stored value, hashed or legacy plain text.
+     * The comparison takes the same time whatever the position of the first difference, and a
+     * plain-text value costs a PBKDF2 computation too, like a hashed one.
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            boolean equal = MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+            verify(password, DUMMY_HASH);
+            return equal;
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(pbkdf2(password, salt, iterations), expected);
+        } catch (IllegalArgumentException e) {
+            return false; // Corrupted value
+        }
+    }
+
+    /**
+     * Do the work of {@link #verify} against a fixed hash and fail: called when no account
+     * matches the login, so that the response time does not tell whether the account exists.
+     */
+    public static boolean verifyUnknown(String password) {
+        verify(password != null ? password : "", DUMMY_HASH);
+        return false;
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Tell whether a stored value should be replaced after a successful login:
+     * legacy plain text, or a hash made with fewer iterations than today.
+     */
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package utils;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retries database operations that failed for a reason a second attempt would fix.
+ *
+ * Failures are classified from the exception:
+ * <ul>
+ * <li>{@link Failure#ROLLED_BACK}: deadlock (1213), lock wait timeout (1205) or any SQLState
+ * of class 40. The transaction was rolled back, so nothing was written and any operation can
+ * run again, provided it rolls back its transaction on failure as the DAOs do.</li>
+ * <li>{@link Failure#CONNECTION}: the connection dropped (SQLState class 08). The operation may
+ * or may not have been applied, so only idempotent operations are retried, and not while the
+ * {@link CircuitBreaker} is open.</li>
+ * <li>{@link Failure#FATAL}: everything else, including cancellation; never retried.</li>
+ * </ul>
+ * Attempts are spaced by exponential backoff with full jitter (a random delay up to
+ * {@code base * 2^retry}, capped), so that clients which collided do not collide again.
+ */
+public final class RetryPolicy {
+    private static final Logger LOGGER = Logger.getLogger(RetryPolicy.class.getName());
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    public enum Failure { ROLLED_BACK, CONNECTION, FATAL }
+
+    /**
+     * A database operation that may be run more than once.
+     */
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * A database operation without result that may be run more than once.
+     */
+    @FunctionalInterface
+    public interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    private volatile Settings settings;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    private static final class Settings {
+        private final int maxAttempts;
+        private final long baseDelayMillis;
+        private final long maxDelayMillis;
+
+        private Settings(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+    }
+
+    /**
+     * Retry counters since the policy was created.
+     */
+    public static final class Stats {
+        private final long retries;
+        private final long recovered;
+        private final long exhausted;
+
+        private Stats(long retries, long recovered, long exhausted) {
+            this.retries = retries;
+            this.recovered = recovered;
+            this.exhausted = exhausted;
+        }
+
+        /** Attempts made after a first failure. */
+        public long getRetries() {
+            return retries;
+        }
+
+        /** Operations that succeeded after at least one retry. */
+        public long getRecovered() {
+            return recovered;
+        }
+
+        /** Operations still failing with a transient error after the last attempt. */
+        public long getExhausted() {
+            return exhausted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d retries, %d operations recovered, %d gave up", retries, recovered, exhausted);
+        }
+    }
+
+    /**
+     * @param maxAttempts attempts in total, the first one included
+     * @param baseDelayMillis upper bound of the delay before the first retry
+     * @param maxDelayMillis upper bound of any delay
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.settings = new Settings(maxAttempts, baseDelayMillis, maxDelayMillis);
+    }
+
+    /**
+     * Change the attempts and delays; operations already running keep the previous ones.
+     */
+    public void configure(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.settings = new Settings(maxAttempts, baseDelayMillis, maxDelayMillis);
+    }
+
+    public static Failure classify(SQLException e) {
+        if (CancellationToken.SQL_STATE_CANCELLED.equals(e.getSQLState())) {
+            return Failure.FATAL;
+        }
+        String state = e.getSQLState();
+        if (e instanceof SQLTransactionRollbackException || e.getErrorCode() == ER_LOCK_DEADLOCK
+                || e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT || (state != null && state.startsWith("40"))) {
+            return Failure.ROLLED_BACK;
+        }
+        if (DatabaseConnection.isConnectionFailure(e)) {
+            return Failure.CONNECTION;
+        }
+        return Failure.FATAL;
+    }
+
+    /**
+     * Run an operation, again after each retryable failure, up to the maximum number of
+     * attempts; the last exception is thrown if it still fails.
+     *
+     * @param idempotent true if running the operation twice has the same effect as once
+     *                   (update or delete by id), which allows retrying after a dropped connection
+     */
+    public <T> T call(boolean idempotent, SqlCall<T> operation) throws SQLException {
+        Settings settings = this.settings;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = operation.call();
+                if (attempt > 1) {
+                    recovered.increment();
+                }
+                return result;
+            } catch (SQLException e) {
+                if (!isRetryable(e, idempotent)) {
+                    throw e;
+                }
+                if (attempt >= settings.maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                long delay = ThreadLocalRandom.current().nextLong(backoffBound(settings, attempt) + 1);
+                LOGGER.log(Level.FINE, "Transient database failure (" + classify(e) + "), attempt "
+                        + (attempt + 1) + "/" + settings.maxAttempts + " in " + delay + " ms", e);
+                retries.increment();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public void run(boolean idempotent, SqlAction operation) throws SQLException {
+        call(idempotent, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(retries.sum(), recovered.sum(), exhausted.sum());
+    }
+
+    private static boolean isRetryable(SQLException e, boolean idempotent) {
+        switch (classify(e)) {
+            case ROLLED_BACK:
+                return true;
+            case CONNECTION:
+                return idempotent
+                        && DatabaseConnection.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED;
+            default:
+                return false;
+        }
+    }
+
+    private static long backoffBound(Settings settings, int attempt) {
+        long bound = settings.baseDelayMillis << Math.min(attempt - 1, 20);
+        return Math.min(bound, settings.maxDelayMillis);
+    }
+}
@@ -0,0 +1,323 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned schema migrations, applied once per database.
+ *
+ * Scripts live in {@code /db/migration/V<n>__<description>.sql} and are listed in
+ * {@link #MIGRATIONS}; each applied version is recorded in {@code schema_version} with the
+ * checksum of its statements (comment lines excluded, so a comment can still be corrected).
+ * A named lock serializes clients starting at the same time. Data that SQL cannot compute
+ * is filled by a Java {@link Step} run after its script.
+ *
+ * The migrations own the schema: the DAOs never create tables, columns or indexes. A failing
+ * statement fails its migration, which is not recorded; the statements run before it stay
+ * applied, since MySQL commits each DDL statement implicitly. Scripts are therefore written to
+ * run again over a partly applied schema: tables are created {@code IF NOT EXISTS}, data fills
+ * recompute or skip existing rows, and an {@code ALTER TABLE} whose added columns and indexes
+ * are all already listed in {@code information_schema} is skipped (see {@link #alreadyApplied}).
+ */
+public final class SchemaMigrator {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+    private static final String LOCATION = "/db/migration/";
+    private static final String LOCK_NAME = "gestion_exercices.schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+    private static final Pattern ALTER_TABLE = Pattern.compile(
+            "^ALTER\\s+TABLE\\s+`?(\\w+)`?\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ADD_COLUMN = Pattern.compile(
+            "\\bADD\\s+COLUMN\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ADD_INDEX = Pattern.compile(
+            "\\bADD\\s+(?:UNIQUE\\s+)?(?:INDEX|KEY)\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    /** Applied in this order; a new script gets the next version, applied scripts never change. */
+    private static final String[] MIGRATIONS = {
+            "V1__tables.sql",
+            "V2__index_recherches.sql",
+            "V3__compteurs.sql",
+            "V4__catalogue_version.sql",
+            "V5__statistiques.sql",
+            "V6__mot_de_passe.sql",
+            "V7__variations_solutions.sql",
+            "V8__version_solution.sql",
+            "V9__depots_en_attente.sql",
+    };
+
+    /**
+     * Java part of a migration, run after the statements of its script.
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run(Connection conn) throws SQLException;
+    }
+
+    private static final Map<String, Step> STEPS = Map.of(
+            "V5__statistiques.sql", SchemaMigrator::fillAuthorSketches);
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Apply the migrations the database has not seen yet. Must be called in auto-commit
+     * mode: DDL statements commit implicitly.
+     *
+     * @return the number of migrations applied
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, description VARCHAR(200) NOT NULL, " +
+                    "checksum BIGINT NOT NULL, applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+        // Fast path: everything is applied, no need to take the lock
+        if (pending(applied(conn)).isEmpty()) {
+            return 0;
+        }
+
+        acquireLock(conn);
+        try {
+            // Another client may have applied some of them while we waited for the lock
+            List<Migration> pending = pending(applied(conn));
+            for (Migration migration : pending) {
+                apply(conn, migration);
+            }
+            return pending.size();
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    private static Map<Integer, Long> applied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static List<Migration> pending(Map<Integer, Long> applied) throws SQLException {
+        List<Migration> pending = new ArrayList<>();
+        for (String name : MIGRATIONS) {
+            Migration migration = Migration.load(name);
+            Long checksum = applied.get(migration.version);
+            if (checksum == null) {
+                pending.add(migration);
+            } else if (checksum != migration.checksum && checksum != migration.fileChecksum) {
+                LOGGER.warning("Migration " + name + " was modified after being applied; it is not run again");
+            }
+        }
+        return pending;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : migration.statements) {
+                if (alreadyApplied(conn, sql)) {
+                    LOGGER.info("Migration " + migration.name + ": skipping a statement already applied: " + sql);
+                    continue;
+                }
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration " + migration.name + " failed on: " + sql, e.getSQLState(), e);
+                }
+            }
+        }
+        Step step = STEPS.get(migration.name);
+        if (step != null) {
+            step.run(conn);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)")) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setLong(3, migration.checksum);
+            stmt.executeUpdate();
+        }
+        LOGGER.info("Schema migration " + migration.name + " applied in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Whether an {@code ALTER TABLE} only adds columns and indexes that already exist, left by
+     * an earlier run of its migration that failed on a later statement. MySQL has no
+     * {@code ADD ... IF NOT EXISTS}; a single {@code ALTER TABLE} is atomic, so its clauses are
+     * either all present or none. Any other statement is run.
+     */
+    private static boolean alreadyApplied(Connection conn, String sql) throws SQLException {
+        Matcher alter = ALTER_TABLE.matcher(sql);
+        if (!alter.find()) {
+            return false;
+        }
+        String table = alter.group(1);
+        int additions = 0;
+        Matcher column = ADD_COLUMN.matcher(sql);
+        while (column.find()) {
+            additions++;
+            if (!exists(conn, "SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() "
+                    + "AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column.group(1))) {
+                return false;
+            }
+        }
+        Matcher index = ADD_INDEX.matcher(sql);
+        while (index.find()) {
+            additions++;
+            if (!exists(conn, "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() "
+                    + "AND TABLE_NAME = ? AND INDEX_NAME = ? LIMIT 1", table, index.group(1))) {
+                return false;
+            }
+        }
+        // A statement that adds nothing (MODIFY, DROP...) is left to the script
+        return additions > 0;
+    }
+
+    private static boolean exists(Connection conn, String sql, String table, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * V5: HyperLogLog registers of the authors of each exercise, from the existing solutions.
+     * Skipped when the table already has rows (kept from before versioning); the upsert keeps
+     * the highest rank, so an interrupted fill can simply run again.
+     */
+    private static void fillAuthorSketches(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM stat_auteurs_hll LIMIT 1")) {
+            if (rs.next()) {
+                return;
+            }
+        }
+        Map<Long, Integer> registers = new HashMap<>(); // exercise id << 16 | register -> rank
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT DISTINCT exercice_id, auteur_id FROM solution WHERE auteur_id IS NOT NULL")) {
+            while (rs.next()) {
+                long hash = HyperLogLog.hash(rs.getInt(2));
+                long key = (long) rs.getInt(1) << 16 | HyperLogLog.register(hash);
+                registers.merge(key, HyperLogLog.rank(hash), Math::max);
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO stat_auteurs_hll (exercice_id, registre, rang) "
+                + "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE rang = GREATEST(rang, ?)")) {
+            for (Map.Entry<Long, Integer> entry : registers.entrySet()) {
+                stmt.setInt(1, (int) (entry.getKey() >> 16));
+                stmt.setInt(2, (int) (entry.getKey() & 0xFFFF));
+                stmt.setInt(3, entry.getValue());
+                stmt.setInt(4, entry.getValue());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // The lock is released anyway when the session ends
+            LOGGER.log(Level.FINE, "Could not release the schema migration lock", e);
+        }
+    }
+
+    /**
+     * One script: version and description come from its file name.
+     */
+    private static final class Migration {
+        final String name;
+        final int version;
+        final String description;
+        final long checksum;
+        final long fileChecksum; // Recorded by earlier versions, which checksummed the whole file
+        final List<String> statements;
+
+        private Migration(String name, String script) {
+            this.name = name;
+            int separator = name.indexOf("__");
+            this.version = Integer.parseInt(name.substring(1, separator));
+            this.description = name.substring(separator + 2, name.length() - ".sql".length()).replace('_', ' ');
+            this.statements = split(script);
+            this.checksum = crc(String.join(";\n", statements));
+            this.fileChecksum = crc(script);
+        }
+
+        static Migration load(String name) throws SQLException {
+            try (InputStream in = SchemaMigrator.class.getResourceAsStream(LOCATION + name)) {
+                if (in == null) {
+                    throw new SQLException("Missing migration script " + LOCATION + name);
+                }
+                return new Migration(name, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new SQLException("Could not read migration script " + name, e);
+            }
+        }
+
+        private static long crc(String text) {
+            CRC32 crc = new CRC32();
+            crc.update(text.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+
+        /**
+         * Split a script on the semicolons ending a line; "--" comment lines are dropped.
+         */
+        private static List<String> split(String script) {
+            List<String> statements = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            for (String line : script.split("\\R")) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String sql = current.toString().trim();
+                    statements.add(sql.substring(0, sql.length() - 1));
+                    current.setLength(0);
+                }
+            }
+            if (current.toString().trim().length() > 0) {
+                statements.add(current.toString().trim());
+            }
+            return statements;
+        }
+    }
+}
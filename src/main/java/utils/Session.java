@@ -0,0 +1,110 @@
+package utils;
+
+import models.Utilisateur;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The logged-in user, shared by every controller.
+ *
+ * Created once at login with the fully loaded {@link Utilisateur}; the permissions of the
+ * role are resolved at that moment into a bit mask, so a permission check is a single bit
+ * test instead of a role string comparison. The session expires after a period without
+ * navigation and is closed at logout.
+ */
+public final class Session {
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.HOURS.toNanos(2);
+
+    /**
+     * What a role allows beyond acting on one's own exercises and solutions.
+     */
+    public enum Permission {
+        /** Modify or delete any matiere. */
+        GERER_MATIERES,
+        /** Open the user management screen. */
+        GERER_UTILISATEURS,
+        /** Modify or delete exercises created by someone else. */
+        MODIFIER_TOUS_EXERCICES,
+        /** Modify or delete solutions written by someone else. */
+        MODIFIER_TOUTES_SOLUTIONS,
+        /** Open "Mes Solutions", the solutions posted on one's exercises. */
+        VOIR_SOLUTIONS_RECUES,
+        /** Post a solution. */
+        AJOUTER_SOLUTION,
+        /** Open the activity dashboard of one's exercises. */
+        VOIR_STATISTIQUES;
+
+        private final int bit = 1 << ordinal();
+    }
+
+    private static volatile Session current;
+
+    private final Utilisateur utilisateur;
+    private final int permissions;
+    private volatile long expiresAt;
+
+    private Session(Utilisateur utilisateur, int permissions) {
+        this.utilisateur = utilisateur;
+        this.permissions = permissions;
+        touch();
+    }
+
+    /**
+     * Open the session of a user who has just logged in, replacing any previous one.
+     */
+    public static Session open(Utilisateur utilisateur) {
+        Session session = new Session(utilisateur, permissionsOf(utilisateur.getRole()));
+        current = session;
+        return session;
+    }
+
+    /**
+     * Returns the current session, or null when nobody is logged in.
+     */
+    public static Session current() {
+        return current;
+    }
+
+    public static void close() {
+        current = null;
+    }
+
+    public boolean can(Permission permission) {
+        return (permissions & permission.bit) != 0;
+    }
+
+    public Utilisateur getUtilisateur() {
+        return utilisateur;
+    }
+
+    public int getUserId() {
+        return utilisateur.getId();
+    }
+
+    public String getRole() {
+        return utilisateur.getRole();
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - expiresAt > 0;
+    }
+
+    /**
+     * Push the expiry back; called on every navigation.
+     */
+    public void touch() {
+        expiresAt = System.nanoTime() + IDLE_TIMEOUT_NANOS;
+    }
+
+    private static int permissionsOf(String role) {
+        if ("Professeur".equals(role)) {
+            int all = 0;
+            for (Permission permission : Permission.values()) {
+                all |= permission.bit;
+            }
+            return all;
+        }
+        // Students only act on their own exercises and solutions
+        return 0;
+    }
+}
@@ -0,0 +1,218 @@
+package utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepared statements of one physical connection, kept open between uses and keyed by SQL
+ * text, least recently used first out.
+ *
+ * The statement handed out is a proxy: closing it closes its result sets and clears its
+ * parameters, and the statement goes back to the cache. With server-side prepared statements
+ * a cache hit therefore skips both the client parsing and the server PREPARE round trip.
+ *
+ * Not thread-safe: a pooled connection is used by one thread at a time.
+ */
+final class StatementCache {
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    /** Changing one of these makes the statement different from a fresh one: it is not reused. */
+    private static final Set<String> STATEMENT_SETTINGS = Set.of(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize",
+            "setEscapeProcessing", "setCursorName", "setPoolable", "closeOnCompletion");
+
+    private final int capacity;
+    private final Counters counters;
+    private final CircuitBreaker breaker;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Handler> open = new ArrayList<>();
+
+    /**
+     * Hit, miss and eviction counts, shared by the caches of every connection of a pool.
+     */
+    static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+    }
+
+    private static final class Entry {
+        final String key;
+        final PreparedStatement statement;
+        boolean inUse;
+
+        Entry(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * @param breaker told of the connection failures and executions of the statements handed out
+     */
+    StatementCache(int capacity, Counters counters, CircuitBreaker breaker) {
+        this.capacity = capacity;
+        this.counters = counters;
+        this.breaker = breaker;
+    }
+
+    /**
+     * Return the cached statement for this SQL text, or prepare and cache it.
+     *
+     * @param logical the pooled connection returned by {@code getConnection()} on the statement
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    PreparedStatement prepare(Connection physical, Connection logical, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            counters.hits.increment();
+        } else {
+            counters.misses.increment();
+            PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+            if (entry != null) {
+                // Same SQL still open higher up the call stack: this copy is not cached
+                return statement;
+            }
+            entry = new Entry(key, statement);
+            entries.put(key, entry);
+            evictOverCapacity();
+        }
+        entry.inUse = true;
+        Handler handler = new Handler(entry, logical);
+        open.add(handler);
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    /**
+     * Close the statements the last borrower left open, like closing a real connection would.
+     */
+    void releaseAll() {
+        for (Handler handler : new ArrayList<>(open)) {
+            handler.release();
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Entry> eldestFirst = entries.values().iterator();
+        while (entries.size() > capacity && eldestFirst.hasNext()) {
+            Entry eldest = eldestFirst.next();
+            if (!eldest.inUse) {
+                eldestFirst.remove();
+                closeQuietly(eldest.statement);
+                counters.evictions.increment();
+            }
+        }
+    }
+
+    private void discard(Entry entry) {
+        entries.remove(entry.key, entry);
+        closeQuietly(entry.statement);
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing a cached statement", e);
+        }
+    }
+
+    /**
+     * One use of a cached statement, from prepareStatement to close.
+     */
+    private final class Handler implements InvocationHandler {
+        private final Entry entry;
+        private final Connection logical;
+        private final List<ResultSet> resultSets = new ArrayList<>(1);
+        private boolean reusable = true;
+        private boolean timeoutSet; // set by CancellationToken, reset when the statement goes back
+        private volatile boolean closed; // also read by CancellationToken from another thread
+
+        private Handler(Entry entry, Connection logical) {
+            this.entry = entry;
+            this.logical = logical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return logical;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            if (STATEMENT_SETTINGS.contains(method.getName())) {
+                reusable = false;
+            } else if (method.getName().equals("setQueryTimeout")) {
+                timeoutSet = true;
+            }
+            Object result = ConnectionPool.forward(breaker, entry.statement, method, args);
+            if (result instanceof ResultSet) {
+                resultSets.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        private void release() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            open.remove(this);
+            try {
+                for (ResultSet rs : resultSets) {
+                    rs.close();
+                }
+                if (reusable) {
+                    entry.statement.clearParameters();
+                    entry.statement.clearBatch();
+                    entry.statement.clearWarnings();
+                    if (timeoutSet) {
+                        entry.statement.setQueryTimeout(0);
+                    }
+                    entry.inUse = false;
+                    return;
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Discarding a cached statement that could not be reset", e);
+            }
+            discard(entry);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package utils;
+
+import models.Solution;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable queue of the solution writes made while the database was unreachable.
+ *
+ * Every change rewrites the outbox file atomically (temporary file, fsync, rename), so a
+ * crash never loses an acknowledged write. Solutions created offline get a temporary
+ * negative id until they are synchronized.
+ *
+ * Format 2 stores the server row version of updates and deletes and the insert key of adds;
+ * entries read from a format 1 file have neither, so their updates and deletes end up in
+ * the conflict log instead of overwriting the server row.
+ */
+public final class SyncOutbox {
+    private static final Logger LOGGER = Logger.getLogger(SyncOutbox.class.getName());
+    private static final int FORMAT_VERSION = 2;
+
+    private static final SyncOutbox INSTANCE = new SyncOutbox(
+            LocalReplica.DATA_DIRECTORY.resolve("outbox.bin"),
+            LocalReplica.DATA_DIRECTORY.resolve("conflits.log"));
+
+    /**
+     * Kinds of queued operations.
+     */
+    public enum Operation { AJOUT, MODIFICATION, SUPPRESSION }
+
+    /**
+     * One queued write. For updates and deletes, baseVersion is the version column of the
+     * row as last read from the server (0 if it was never read): the write only applies if
+     * the row still has it. For adds, insertKey is the key the first online attempt already
+     * sent, so that an insert committed just before the connection dropped is not repeated.
+     */
+    public static final class Entry {
+        private final Operation operation;
+        private final Solution solution;
+        private final int baseVersion;
+        private final String insertKey;
+
+        Entry(Operation operation, Solution solution, int baseVersion, String insertKey) {
+            this.operation = operation;
+            this.solution = solution;
+            this.baseVersion = baseVersion;
+            this.insertKey = insertKey;
+        }
+
+        public Operation getOperation() { return operation; }
+        public Solution getSolution() { return solution; }
+        public int getBaseVersion() { return baseVersion; }
+        public String getInsertKey() { return insertKey; }
+    }
+
+    private final Path file;
+    private final Path conflictFile;
+    private final List<Entry> entries = new ArrayList<>();
+    private int nextLocalId = -1;
+    private boolean loaded;
+
+    private SyncOutbox(Path file, Path conflictFile) {
+        this.file = file;
+        this.conflictFile = conflictFile;
+    }
+
+    public static SyncOutbox get() {
+        return INSTANCE;
+    }
+
+    public synchronized boolean isEmpty() {
+        ensureLoaded();
+        return entries.isEmpty();
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    /**
+     * Queues a new solution and gives it a temporary negative id.
+     *
+     * @param insertKey the key of the online insert attempt, stored with the row on the server
+     */
+    public synchronized Solution enqueueAdd(Solution solution, String insertKey) {
+        ensureLoaded();
+        solution.setId(nextLocalId--);
+        entries.add(new Entry(Operation.AJOUT, copy(solution), 0, insertKey));
+        save();
+        return solution;
+    }
+
+    /**
+     * Queues an update. A solution that has not been synchronized yet is simply amended,
+     * and a second offline update of the same row replaces the first one while keeping
+     * the version the server had before.
+     */
+    public synchronized void enqueueUpdate(Solution solution, int baseVersion) {
+        ensureLoaded();
+        int pending = indexOf(solution.getId());
+        if (pending >= 0) {
+            Entry previous = entries.get(pending);
+            entries.set(pending, new Entry(previous.operation, copy(solution), previous.baseVersion, previous.insertKey));
+        } else {
+            entries.add(new Entry(Operation.MODIFICATION, copy(solution), baseVersion, null));
+        }
+        save();
+    }
+
+    /**
+     * Queues a delete. A solution that has not been synchronized yet is simply dropped,
+     * and a pending update of the row is replaced by the delete.
+     */
+    public synchronized void enqueueDelete(Solution solution, int baseVersion) {
+        ensureLoaded();
+        int pending = indexOf(solution.getId());
+        if (pending >= 0) {
+            Entry previous = entries.remove(pending);
+            if (previous.operation == Operation.MODIFICATION) {
+                entries.add(new Entry(Operation.SUPPRESSION, copy(solution), previous.baseVersion, null));
+            }
+        } else if (solution.getId() > 0) {
+            entries.add(new Entry(Operation.SUPPRESSION, copy(solution), baseVersion, null));
+        }
+        save();
+    }
+
+    private int indexOf(int solutionId) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).solution.getId() == solutionId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns up to max entries, oldest first, without removing them.
+     */
+    public synchronized List<Entry> peek(int max) {
+        ensureLoaded();
+        return new ArrayList<>(entries.subList(0, Math.min(max, entries.size())));
+    }
+
+    /**
+     * Removes entries once they have been applied (or rejected) on the server.
+     */
+    public synchronized void remove(List<Entry> done) {
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            for (Entry applied : done) {
+                if (applied == entry) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+        save();
+    }
+
+    /**
+     * Keeps a trace of a write that could not be applied because the server row changed.
+     */
+    public synchronized void recordConflict(Entry entry, String reason) {
+        LOGGER.warning("Offline " + entry.operation + " of solution " + entry.solution.getId() + " rejected: " + reason);
+        try {
+            Files.createDirectories(conflictFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(conflictFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(LocalDateTime.now() + " " + entry.operation + " solution=" + entry.solution.getId()
+                        + " exercice=" + entry.solution.getExerciceId() + " (" + reason + ")\n");
+                writer.write(entry.solution.getContenu() + "\n\n");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write conflict log", e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int format = in.readInt();
+            if (format != FORMAT_VERSION && format != 1) {
+                LOGGER.warning("Unknown outbox format, pending offline writes ignored");
+                return;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Operation operation = Operation.values()[in.readByte()];
+                Solution solution = new Solution(in.readInt(), LocalReplica.readLongString(in),
+                        LocalReplica.toDate(in.readLong()), in.readInt(), in.readInt());
+                solution.setAuteurNom(in.readUTF());
+                int baseVersion = 0;
+                String insertKey = null;
+                if (format == 1) {
+                    if (in.readBoolean()) {
+                        in.readLong(); // date_creation used as a version before format 2
+                    }
+                } else {
+                    baseVersion = in.readInt();
+                    insertKey = in.readBoolean() ? in.readUTF() : null;
+                }
+                entries.add(new Entry(operation, solution, baseVersion, insertKey));
+                nextLocalId = Math.min(nextLocalId, solution.getId() - 1);
+            }
+            LOGGER.info(entries.size() + " offline write(s) waiting for synchronization");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not read the offline outbox", e);
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    Solution solution = entry.solution;
+                    out.writeByte(entry.operation.ordinal());
+                    out.writeInt(solution.getId());
+                    LocalReplica.writeLongString(out, solution.getContenu());
+                    out.writeLong(LocalReplica.toEpoch(solution.getDateCreation()));
+                    out.writeInt(solution.getExerciceId());
+                    out.writeInt(solution.getAuteurId());
+                    out.writeUTF(solution.getAuteurNom() != null ? solution.getAuteurNom() : "");
+                    out.writeInt(entry.baseVersion);
+                    out.writeBoolean(entry.insertKey != null);
+                    if (entry.insertKey != null) {
+                        out.writeUTF(entry.insertKey);
+                    }
+                }
+                out.flush();
+                stream.getFD().sync();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not save the offline outbox", e);
+        }
+    }
+
+    private static Solution copy(Solution source) {
+        Solution solution = new Solution(source.getId(), source.getContenu(), source.getDateCreation(),
+                source.getExerciceId(), source.getAuteurId());
+        solution.setAuteurNom(source.getAuteurNom());
+        solution.setVersion(source.getVersion());
+        return solution;
+    }
+}
@@ -6,19 +6,18 @@ import java.sql.SQLException;
 
 public class TestConnexionMySQL {
 
-    // Paramètres de connexion (à adapter selon votre configuration)
-    private static final String URL = "jdbc:mysql://localhost:3306/gestion_exercices";
-    private static final String USER = "root";
-    private static final String PASSWORD = "";
-
     public static void main(String[] args) {
         testConnexion();
     }
 
     public static void testConnexion() {
+        // Mêmes paramètres que l'application (fichier de configuration et variables d'environnement)
+        AppConfig config = AppConfig.get();
         System.out.println("Tentative de connexion à la base de données...");
+        System.out.println("Configuration : " + AppConfig.file());
 
-        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD)) {
+        try (Connection connection = DriverManager.getConnection(config.jdbcUrl(),
+                config.getString(AppConfig.DB_USER), config.getString(AppConfig.DB_PASSWORD))) {
             System.out.println("Connexion réussie !");
             System.out.println("Informations sur la connexion :");
             System.out.println("Base de données : " + connection.getCatalog());
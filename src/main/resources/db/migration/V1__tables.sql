@@ -0,0 +1,32 @@
+-- Tables de base de l'application. IF NOT EXISTS : une base créée avant le suivi
+-- des versions est conservée telle quelle, les scripts suivants la complètent.
+
+CREATE TABLE IF NOT EXISTS utilisateur (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    nom VARCHAR(100),
+    email VARCHAR(150) NOT NULL,
+    mot_de_passe VARCHAR(255) NOT NULL,
+    role VARCHAR(20) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS matiere (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    nom VARCHAR(100) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS exercice (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    titre VARCHAR(255) NOT NULL,
+    description TEXT,
+    date_creation DATETIME NOT NULL,
+    matiere_id INT NOT NULL,
+    createur_id INT
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS solution (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    contenu TEXT NOT NULL,
+    date_creation DATETIME NOT NULL,
+    exercice_id INT NOT NULL,
+    auteur_id INT
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,20 @@
+-- Index des recherches faites par les DAO (InnoDB ajoute la clé primaire à chaque index
+-- secondaire : un index qui contient les colonnes filtrées et lues suffit à la requête).
+
+-- UtilisateurDAO.findByEmailAndPasswordAndRole : WHERE email = ? AND role = ? ; userExists : COUNT(*) WHERE email = ?
+ALTER TABLE utilisateur ADD INDEX idx_utilisateur_email_role (email, role);
+
+-- MatiereDAO.matiereExists : COUNT(*) WHERE nom = ? ; getAllMatieres : ORDER BY nom
+ALTER TABLE matiere ADD INDEX idx_matiere_nom (nom);
+
+-- ExerciceDAO.getExercicesByMatiere, NOT EXISTS de MatiereDAO.deleteMatiere
+ALTER TABLE exercice ADD INDEX idx_exercice_matiere (matiere_id);
+
+-- SolutionDAO.getSolutionsByExercice et suppression d'un exercice : l'index sert au filtre
+-- sur exercice_id, mais les listes lisent s.* (contenu compris) et chaque ligne trouvée est
+-- relue dans la clé primaire. Il ne couvre que les requêtes limitées à ces colonnes :
+-- NOT EXISTS sur les solutions d'un exercice, remplissage de stat_jour et stat_auteurs_hll
+ALTER TABLE solution ADD INDEX idx_solution_exercice (exercice_id, date_creation, auteur_id);
+
+-- SolutionDAO.getSolutionsByAuteur, UtilisateurDAO.deleteUserCascade
+ALTER TABLE solution ADD INDEX idx_solution_auteur (auteur_id);
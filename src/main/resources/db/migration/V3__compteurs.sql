@@ -0,0 +1,12 @@
+-- Compteurs tenus par CompteurDAO, remplis ici par un comptage complet.
+
+ALTER TABLE matiere ADD COLUMN nb_exercices INT NOT NULL DEFAULT 0;
+UPDATE matiere m SET nb_exercices = (SELECT COUNT(*) FROM exercice e WHERE e.matiere_id = m.id);
+
+ALTER TABLE exercice ADD COLUMN nb_solutions INT NOT NULL DEFAULT 0;
+UPDATE exercice e SET nb_solutions = (SELECT COUNT(*) FROM solution s WHERE s.exercice_id = e.id);
+
+-- ExerciceDAO.getExercicesByCreateur, jointures des statistiques sur createur_id,
+-- suppression en cascade d'un utilisateur ; couvre la liste des exercices sans solution
+-- (WHERE createur_id = ? AND nb_solutions = 0 ORDER BY date_creation DESC, lecture de titre)
+ALTER TABLE exercice ADD INDEX idx_exercice_createur (createur_id, nb_solutions, date_creation, titre);
@@ -0,0 +1,9 @@
+-- Numéro de version du catalogue, incrémenté par CatalogueVersionDAO à chaque écriture
+-- sur les matières et les exercices ; une seule ligne, id = 1.
+
+CREATE TABLE IF NOT EXISTS catalogue_version (
+    id TINYINT PRIMARY KEY,
+    version BIGINT NOT NULL
+) ENGINE=InnoDB;
+
+INSERT INTO catalogue_version (id, version) VALUES (1, 0) ON DUPLICATE KEY UPDATE version = version;
@@ -0,0 +1,36 @@
+-- Agrégats du tableau de bord tenus par StatistiqueDAO. Une table déjà remplie (base où
+-- StatistiqueDAO les créait lui-même) est conservée : ses totaux comptent aussi les
+-- solutions supprimées depuis, que le recomptage ferait disparaître.
+-- Les registres HyperLogLog de stat_auteurs_hll se calculent en Java : SchemaMigrator
+-- les remplit après ce script.
+
+CREATE TABLE IF NOT EXISTS stat_jour (
+    exercice_id INT NOT NULL,
+    jour DATE NOT NULL,
+    nb_solutions INT NOT NULL,
+    PRIMARY KEY (exercice_id, jour)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS stat_contributeur (
+    createur_id INT NOT NULL,
+    auteur_id INT NOT NULL,
+    nb_solutions INT NOT NULL,
+    PRIMARY KEY (createur_id, auteur_id)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS stat_auteurs_hll (
+    exercice_id INT NOT NULL,
+    registre SMALLINT NOT NULL,
+    rang TINYINT NOT NULL,
+    PRIMARY KEY (exercice_id, registre)
+) ENGINE=InnoDB;
+
+INSERT INTO stat_jour (exercice_id, jour, nb_solutions)
+SELECT exercice_id, DATE(date_creation), COUNT(*) FROM solution
+WHERE date_creation IS NOT NULL AND NOT EXISTS (SELECT 1 FROM stat_jour)
+GROUP BY exercice_id, DATE(date_creation);
+
+INSERT INTO stat_contributeur (createur_id, auteur_id, nb_solutions)
+SELECT e.createur_id, s.auteur_id, COUNT(*) FROM solution s JOIN exercice e ON e.id = s.exercice_id
+WHERE e.createur_id IS NOT NULL AND s.auteur_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM stat_contributeur)
+GROUP BY e.createur_id, s.auteur_id;
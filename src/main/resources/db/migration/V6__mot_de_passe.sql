@@ -0,0 +1,4 @@
+-- Un hachage PBKDF2 fait environ 90 caractères : les bases créées avant le hachage des
+-- mots de passe avaient une colonne plus courte.
+
+ALTER TABLE utilisateur MODIFY mot_de_passe VARCHAR(255) NOT NULL;
@@ -0,0 +1,10 @@
+-- Variations du nombre de solutions par exercice, en attente de consolidation par
+-- CompteurDAO : chaque dépôt ou suppression ajoute une ligne au lieu de verrouiller
+-- l'exercice pour incrémenter exercice.nb_solutions.
+
+CREATE TABLE IF NOT EXISTS exercice_solutions_delta (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    exercice_id INT NOT NULL,
+    delta INT NOT NULL,
+    KEY idx_delta_exercice (exercice_id)
+) ENGINE=InnoDB;
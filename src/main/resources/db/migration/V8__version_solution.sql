@@ -0,0 +1,9 @@
+-- Numéro de version de chaque solution, incrémenté à chaque modification : une écriture
+-- faite hors ligne n'est rejouée que si la ligne a encore la version lue avant la coupure.
+-- cle_ajout identifie un ajout mis en file d'attente : rejoué après une coupure survenue
+-- pendant la validation, il n'est pas inséré une seconde fois.
+
+ALTER TABLE solution
+    ADD COLUMN version INT NOT NULL DEFAULT 1,
+    ADD COLUMN cle_ajout CHAR(36) NULL,
+    ADD UNIQUE KEY uk_solution_cle_ajout (cle_ajout);
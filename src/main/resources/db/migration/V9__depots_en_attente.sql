@@ -0,0 +1,10 @@
+-- Dépôts de solutions en attente de report dans les statistiques par StatistiqueDAO :
+-- chaque dépôt ajoute une ligne au lieu de mettre à jour stat_jour, stat_contributeur et
+-- stat_auteurs_hll, dont la ligne du jour de chaque exercice est partagée par tous ses dépôts.
+
+CREATE TABLE IF NOT EXISTS stat_depot_delta (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    exercice_id INT NOT NULL,
+    auteur_id INT NOT NULL,
+    jour DATE NOT NULL
+) ENGINE=InnoDB;
@@ -0,0 +1,167 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs EXPLAIN on the DAO lookups that must be served by an index and exits with status 1
+ * if the plan the optimizer picks reads a table with a full scan, or with another index
+ * than the one the query was designed for.
+ *
+ * The check is on the key actually chosen, not on the candidate keys: an index listed in
+ * possible_keys but left unused does not help the query. The optimizer prefers a scan on
+ * tiny tables, so run it against a database with realistic volumes (a copy of production
+ * or a seeded one), migrated first.
+ *
+ * Run with {@code mvn -P bench}.
+ */
+public final class QueryPlanCheck {
+    private static final Object TEXT = "x";
+    private static final Object ID = 1;
+    private static final Object DAY = Date.valueOf(LocalDate.of(2024, 1, 1));
+
+    private static final Query[] QUERIES = {
+            new Query("UtilisateurDAO.findByEmailAndPasswordAndRole",
+                    "SELECT * FROM utilisateur WHERE email = ? AND role = ?", TEXT, TEXT)
+                    .uses("utilisateur", "idx_utilisateur_email_role"),
+            new Query("UtilisateurDAO.userExists",
+                    "SELECT COUNT(*) FROM utilisateur WHERE email = ?", TEXT)
+                    .uses("utilisateur", "idx_utilisateur_email_role"),
+            new Query("MatiereDAO.matiereExists",
+                    "SELECT COUNT(*) FROM matiere WHERE nom = ?", TEXT)
+                    .uses("matiere", "idx_matiere_nom"),
+            new Query("MatiereDAO.deleteMatiere",
+                    "DELETE FROM matiere WHERE id = ? AND nb_exercices = 0", ID)
+                    .uses("matiere", "PRIMARY"),
+            new Query("ExerciceDAO.getExercicesByMatiere",
+                    "SELECT e.*, m.nom as matiere_nom FROM exercice e JOIN matiere m ON e.matiere_id = m.id "
+                            + "WHERE e.matiere_id = ?", ID)
+                    .uses("e", "idx_exercice_matiere").uses("m", "PRIMARY"),
+            new Query("ExerciceDAO.getExercicesByCreateur",
+                    "SELECT e.*, m.nom as matiere_nom FROM exercice e JOIN matiere m ON e.matiere_id = m.id "
+                            + "WHERE e.createur_id = ?", ID)
+                    .uses("e", "idx_exercice_createur").uses("m", "PRIMARY"),
+            new Query("SolutionDAO.getSolutionsByExercice",
+                    "SELECT s.*, u.nom as auteur_nom FROM solution s "
+                            + "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.exercice_id = ?", ID)
+                    .uses("s", "idx_solution_exercice").uses("u", "PRIMARY"),
+            new Query("SolutionDAO.streamSolutionsByExercice (page)",
+                    "SELECT s.*, u.nom as auteur_nom FROM solution s LEFT JOIN utilisateur u ON s.auteur_id = u.id "
+                            + "WHERE s.exercice_id = ? AND s.id > ? ORDER BY s.id LIMIT 1024", ID, ID)
+                    .uses("s", "idx_solution_exercice").uses("u", "PRIMARY"),
+            new Query("ExerciceDAO.streamExercicesByMatiere (page)",
+                    "SELECT e.*, m.nom as matiere_nom FROM exercice e JOIN matiere m ON e.matiere_id = m.id "
+                            + "WHERE e.matiere_id = ? AND e.id > ? ORDER BY e.id LIMIT 1024", ID, ID)
+                    .uses("e", "idx_exercice_matiere").uses("m", "PRIMARY"),
+            new Query("SolutionDAO.getSolutionsByAuteur",
+                    "SELECT s.*, u.nom as auteur_nom FROM solution s "
+                            + "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE s.auteur_id = ?", ID)
+                    .uses("s", "idx_solution_auteur").uses("u", "PRIMARY"),
+            new Query("SolutionDAO.getSolutionsByCreateur",
+                    "SELECT s.*, u.nom as auteur_nom FROM solution s JOIN exercice e ON s.exercice_id = e.id "
+                            + "LEFT JOIN utilisateur u ON s.auteur_id = u.id WHERE e.createur_id = ?", ID)
+                    .uses("e", "idx_exercice_createur").uses("s", "idx_solution_exercice").uses("u", "PRIMARY"),
+            new Query("UtilisateurDAO.deleteUserCascade",
+                    "SELECT id, exercice_id FROM solution WHERE exercice_id IN "
+                            + "(SELECT e.id FROM exercice e WHERE e.createur_id = ?) LIMIT 1000 FOR UPDATE", ID)
+                    .uses("solution", "idx_solution_exercice").uses("e", "idx_exercice_createur"),
+            new Query("StatistiqueDAO (exercices sans solution)",
+                    "SELECT titre FROM exercice WHERE createur_id = ? AND nb_solutions = 0 ORDER BY date_creation DESC", ID)
+                    .uses("exercice", "idx_exercice_createur"),
+            new Query("StatistiqueDAO (solutions par jour)",
+                    "SELECT s.jour, SUM(s.nb_solutions) FROM stat_jour s JOIN exercice e ON e.id = s.exercice_id "
+                            + "WHERE e.createur_id = ? AND s.jour >= ? GROUP BY s.jour", ID, DAY)
+                    .uses("e", "idx_exercice_createur").uses("s", "PRIMARY"),
+            new Query("StatistiqueDAO (meilleurs contributeurs)",
+                    "SELECT c.auteur_id, u.nom, c.nb_solutions FROM stat_contributeur c "
+                            + "LEFT JOIN utilisateur u ON u.id = c.auteur_id "
+                            + "WHERE c.createur_id = ? ORDER BY c.nb_solutions DESC LIMIT 10", ID)
+                    .uses("c", "PRIMARY").uses("u", "PRIMARY"),
+            new Query("StatistiqueDAO (auteurs distincts)",
+                    "SELECT h.registre, MAX(h.rang) FROM stat_auteurs_hll h "
+                            + "JOIN exercice e ON e.id = h.exercice_id WHERE e.createur_id = ? GROUP BY h.registre", ID)
+                    .uses("e", "idx_exercice_createur").uses("h", "PRIMARY"),
+    };
+
+    private QueryPlanCheck() {
+    }
+
+    public static void main(String[] args) {
+        int regressions = 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (Query query : QUERIES) {
+                regressions += check(conn, query);
+            }
+        } catch (SQLException e) {
+            System.err.println("Query plan check could not run: " + e.getMessage());
+            DatabaseConnection.closeConnection();
+            System.exit(2);
+        }
+        DatabaseConnection.closeConnection();
+        if (regressions > 0) {
+            System.err.println(regressions + " table read(s) do not use the expected index");
+            System.exit(1);
+        }
+        System.out.println("All " + QUERIES.length + " query plans use their index");
+    }
+
+    /**
+     * @return the number of tables the plan reads with a full scan or with an unexpected index
+     */
+    private static int check(Connection conn, Query query) throws SQLException {
+        int regressions = 0;
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + query.sql)) {
+            for (int i = 0; i < query.parameters.length; i++) {
+                stmt.setObject(i + 1, query.parameters[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    if (table == null || table.startsWith("<")) {
+                        continue; // No table read (impossible WHERE), or a derived/materialized one
+                    }
+                    String type = rs.getString("type");
+                    String key = rs.getString("key");
+                    String expected = query.expectedKeys.get(table);
+                    boolean regression = "ALL".equals(type) || "index".equals(type) || key == null
+                            || (expected != null && !expected.equals(key));
+                    if (regression) {
+                        regressions++;
+                    }
+                    System.out.printf("%-4s %-45s %-12s %-8s %-28s %s rows%n", regression ? "FAIL" : "ok",
+                            query.name, table, type, (key == null ? "-" : key)
+                                    + (expected != null && !expected.equals(key) ? " (want " + expected + ")" : ""),
+                            rs.getString("rows"));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    private static final class Query {
+        final String name;
+        final String sql;
+        final Object[] parameters;
+        final Map<String, String> expectedKeys = new HashMap<>();
+
+        Query(String name, String sql, Object... parameters) {
+            this.name = name;
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        /**
+         * The plan must read this table (name or alias, as EXPLAIN shows it) through this index.
+         */
+        Query uses(String table, String key) {
+            expectedKeys.put(table, key);
+            return this;
+        }
+    }
+}
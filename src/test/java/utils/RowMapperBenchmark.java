@@ -0,0 +1,151 @@
+package utils;
+
+import dao.RowMapper;
+import dao.RowMappers;
+import models.Exercice;
+import models.Solution;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Compares the per-row cost of name-based column lookups (the DAO code before
+ * {@link RowMappers}) with the index-based row mappers.
+ *
+ * Each query result is read once into a scrollable in-memory ResultSet, then mapped again
+ * and again until the target number of rows (1M by default) is reached, so the timings cover
+ * the mapping only, not the network. Each variant gets warm-up rounds before the measured ones.
+ *
+ * Run with {@code mvn -P bench -Dbench.main=utils.RowMapperBenchmark}.
+ * Optional argument: the number of rows to map per round
+ * ({@code -Dexec.args="-classpath %classpath utils.RowMapperBenchmark 200000"}).
+ */
+public final class RowMapperBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /** Written after each round so the mapping work cannot be optimized away. */
+    private static volatile long sink;
+
+    private static final String EXERCICES = "SELECT e.*, m.nom as matiere_nom FROM exercice e "
+            + "JOIN matiere m ON e.matiere_id = m.id";
+    private static final String SOLUTIONS = "SELECT s.*, u.nom as auteur_nom FROM solution s "
+            + "LEFT JOIN utilisateur u ON s.auteur_id = u.id";
+
+    /** A way of turning every row of a result into objects; returns a value so the work is not eliminated. */
+    private interface Scan {
+        long run(ResultSet rs) throws SQLException;
+    }
+
+    private RowMapperBenchmark() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        long targetRows = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            compare(conn, "exercice", EXERCICES, targetRows, RowMapperBenchmark::exercicesByName, rs -> {
+                RowMapper<Exercice> mapper = RowMappers.exercice(rs);
+                long checksum = 0;
+                while (rs.next()) {
+                    checksum += mapper.map(rs).getId();
+                }
+                return checksum;
+            });
+            compare(conn, "solution", SOLUTIONS, targetRows, RowMapperBenchmark::solutionsByName, rs -> {
+                RowMapper<Solution> mapper = RowMappers.solution(rs);
+                long checksum = 0;
+                while (rs.next()) {
+                    checksum += mapper.map(rs).getId();
+                }
+                return checksum;
+            });
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    private static void compare(Connection conn, String table, String sql, long targetRows,
+                                Scan byName, Scan byIndex) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = stmt.executeQuery()) {
+            int rows = rs.last() ? rs.getRow() : 0;
+            if (rows == 0) {
+                System.out.println(table + ": no rows, skipped");
+                return;
+            }
+            long passes = Math.max(1, (targetRows + rows - 1) / rows);
+            double nameNanos = measure(rs, passes, byName);
+            double indexNanos = measure(rs, passes, byIndex);
+            long mapped = passes * rows;
+            System.out.printf("%-9s %,d rows x %d passes: by name %.1f ns/row, by index %.1f ns/row (%.0f%% less)%n",
+                    table, rows, passes, nameNanos / mapped, indexNanos / mapped,
+                    100 * (1 - indexNanos / nameNanos));
+        }
+    }
+
+    /**
+     * @return the median time of a round, in nanoseconds
+     */
+    private static double measure(ResultSet rs, long passes, Scan scan) throws SQLException {
+        long[] times = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (long pass = 0; pass < passes; pass++) {
+                rs.beforeFirst();
+                checksum += scan.run(rs);
+            }
+            sink = checksum;
+            if (round >= WARMUP_ROUNDS) {
+                times[round - WARMUP_ROUNDS] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        return times[MEASURED_ROUNDS / 2];
+    }
+
+    // Name-based mapping, as every DAO method did it before the row mappers
+
+    private static long exercicesByName(ResultSet rs) throws SQLException {
+        long checksum = 0;
+        while (rs.next()) {
+            Timestamp timestamp = rs.getTimestamp("date_creation");
+            LocalDateTime dateCreation = timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now();
+            Exercice exercice = new Exercice(
+                    rs.getInt("id"),
+                    rs.getString("titre"),
+                    rs.getString("description"),
+                    dateCreation,
+                    rs.getInt("matiere_id"),
+                    rs.getInt("createur_id")
+            );
+            exercice.setMatiereNom(rs.getString("matiere_nom"));
+            exercice.setNbSolutions(rs.getInt("nb_solutions"));
+            checksum += exercice.getId();
+        }
+        return checksum;
+    }
+
+    private static long solutionsByName(ResultSet rs) throws SQLException {
+        long checksum = 0;
+        while (rs.next()) {
+            Solution solution = new Solution(
+                    rs.getInt("id"),
+                    rs.getString("contenu"),
+                    rs.getTimestamp("date_creation").toLocalDateTime(),
+                    rs.getInt("exercice_id"),
+                    rs.getInt("auteur_id")
+            );
+            String nom = rs.getString("auteur_nom");
+            solution.setAuteurNom((nom != null && !nom.isEmpty()) ? nom : "Utilisateur " + solution.getAuteurId());
+            checksum += solution.getId();
+        }
+        return checksum;
+    }
+}